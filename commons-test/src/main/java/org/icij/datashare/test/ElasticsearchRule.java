@@ -3,7 +3,7 @@ package org.icij.datashare.test;
 import org.apache.http.HttpHost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NStringEntity;
-import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.client.*;
 import org.elasticsearch.client.indices.CreateIndexRequest;
 import org.elasticsearch.client.indices.GetIndexRequest;
@@ -53,18 +53,24 @@ public class ElasticsearchRule extends ExternalResource {
     @Override
     protected void after() {
         try {
-            client.indices().delete(new DeleteIndexRequest(indexesNames), RequestOptions.DEFAULT);
+            delete(indexesNames);
             client.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * deletes the indices, or the indices behind them if they are aliases
+     */
     public void delete(String... indices) throws IOException {
         for (String index: indices) {
-            Request request = new Request("DELETE", index);
-            request.addParameter("ignore_unavailable", "true");
-            client.getLowLevelClient().performRequest(request);
+            GetIndexRequest getRequest = new GetIndexRequest(index).indicesOptions(IndicesOptions.lenientExpandOpen());
+            for (String concreteIndex : client.indices().get(getRequest, RequestOptions.DEFAULT).getIndices()) {
+                Request request = new Request("DELETE", concreteIndex);
+                request.addParameter("ignore_unavailable", "true");
+                client.getLowLevelClient().performRequest(request);
+            }
         }
     }
 
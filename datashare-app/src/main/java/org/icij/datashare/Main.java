@@ -20,6 +20,8 @@ public class Main {
             BatchSearchApp.start(cli.properties);
         } else if (cli.mode() == Mode.BATCH_DOWNLOAD) {
             BatchDownloadApp.start(cli.properties);
+        } else if (cli.mode() == Mode.TASK_WORKER) {
+            TaskWorkerApp.start(cli.properties);
         } else {
             CliApp.start(cli.properties);
         }
@@ -0,0 +1,21 @@
+package org.icij.datashare;
+
+import com.google.inject.Injector;
+import org.icij.datashare.mode.CommonMode;
+import org.icij.datashare.tasks.TaskWorkerLoop;
+import org.icij.datashare.text.indexing.Indexer;
+
+import java.util.Properties;
+
+import static com.google.inject.Guice.createInjector;
+
+public class TaskWorkerApp {
+    public static void start(Properties properties) throws Exception {
+        Injector injector = createInjector(CommonMode.create(properties));
+        TaskWorkerLoop taskWorkerLoop = injector.getInstance(TaskWorkerLoop.class);
+        Runtime.getRuntime().addShutdownHook(new Thread(taskWorkerLoop::exit));
+        taskWorkerLoop.run();
+        taskWorkerLoop.close();
+        injector.getInstance(Indexer.class).close(); // to avoid being blocked
+    }
+}
@@ -0,0 +1,31 @@
+package org.icij.datashare.extract;
+
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+import org.redisson.api.RReadWriteLock;
+import org.redisson.api.RedissonClient;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Read/write lock shared by the datashare nodes. The locks are held by a thread, and those of a lost
+ * node are released by redis after the lock watchdog timeout (30s) because the node doesn't renew them.
+ */
+public class RedisReadWriteLock implements ReadWriteLock {
+    private final RReadWriteLock lock;
+
+    /**
+     * @param redissonClient the redis client of the process, that renews the locks while they are held
+     */
+    @Inject
+    public RedisReadWriteLock(RedissonClient redissonClient, @Assisted String lockName) {
+        this.lock = redissonClient.getReadWriteLock(lockName);
+    }
+
+    @Override
+    public Lock readLock() { return lock.readLock();}
+
+    @Override
+    public Lock writeLock() { return lock.writeLock();}
+}
@@ -2,6 +2,8 @@ package org.icij.datashare.mode;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import net.codestory.http.Configuration;
@@ -25,6 +27,7 @@ import org.icij.datashare.db.RepositoryFactoryImpl;
 import org.icij.datashare.extension.ExtensionLoader;
 import org.icij.datashare.extension.PipelineRegistry;
 import org.icij.datashare.extract.RedisUserDocumentQueue;
+import org.icij.datashare.extract.RedisReadWriteLock;
 import org.icij.datashare.extract.RedisUserReportMap;
 import org.icij.datashare.nlp.EmailPipeline;
 import org.icij.datashare.nlp.OptimaizeLanguageGuesser;
@@ -41,7 +44,10 @@ import org.icij.datashare.web.RootResource;
 import org.icij.datashare.web.SettingsResource;
 import org.icij.datashare.web.StatusResource;
 import org.icij.extract.queue.DocumentQueue;
+import org.icij.extract.redis.RedissonClientFactory;
 import org.icij.extract.report.ReportMap;
+import org.icij.task.Options;
+import org.redisson.api.RedissonClient;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
@@ -51,6 +57,7 @@ import java.nio.file.Paths;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.function.Consumer;
 
 import static com.fasterxml.jackson.databind.DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT;
@@ -85,6 +92,8 @@ public class CommonMode extends AbstractModule {
                 return new CliMode(properties);
             case BATCH_DOWNLOAD:
                 return new BatchDownloadMode(properties);
+            case TASK_WORKER:
+                return new TaskWorkerMode(properties);
             default:
                 throw new IllegalStateException("unknown mode : " + properties.getProperty("mode"));
         }
@@ -110,9 +119,13 @@ public class CommonMode extends AbstractModule {
         if ("memory".equals(propertiesProvider.getProperties().get("queueType"))) {
             bind(DocumentCollectionFactory.class).to(MemoryDocumentCollectionFactory.class).asEagerSingleton();
         } else {
+            // one redis client for the locks of the process, created with the first lock
+            bind(RedissonClient.class).toProvider((Provider<RedissonClient>) () ->
+                    new RedissonClientFactory().withOptions(Options.from(propertiesProvider.getProperties())).create()).in(Singleton.class);
             install(new FactoryModuleBuilder().
                     implement(DocumentQueue.class, RedisUserDocumentQueue.class).
                     implement(ReportMap.class, RedisUserReportMap.class).
+                    implement(ReadWriteLock.class, RedisReadWriteLock.class).
                     build(DocumentCollectionFactory.class));
         }
         DataBus dataBus;
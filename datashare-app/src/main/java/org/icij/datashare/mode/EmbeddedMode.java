@@ -1,11 +1,19 @@
 package org.icij.datashare.mode;
 
+import org.elasticsearch.common.settings.Settings;
 import org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration;
+import org.icij.datashare.text.indexing.elasticsearch.EsChildProcess;
 import org.icij.datashare.text.indexing.elasticsearch.EsEmbeddedServer;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
 import java.util.Properties;
 
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.ES_HEAP_SIZE_PROP;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.ES_PROCESS_PROP;
+
 public class EmbeddedMode extends LocalMode {
     EmbeddedMode(Properties properties) { super(properties);}
     public EmbeddedMode(Map<String, String> properties) { super(properties);}
@@ -13,7 +21,24 @@ public class EmbeddedMode extends LocalMode {
     @Override
     protected void configure() {
         String elasticsearchDataPath = propertiesProvider.get("elasticsearchDataPath").orElse("/home/datashare/es");
-        new EsEmbeddedServer(ElasticsearchConfiguration.ES_CLUSTER_NAME, elasticsearchDataPath, elasticsearchDataPath, "9200").start();
+        Settings tuningSettings = EsEmbeddedServer.tuningSettings(propertiesProvider);
+        if (propertiesProvider.get(ES_PROCESS_PROP).map(Boolean::parseBoolean).orElse(false)) {
+            try {
+                new EsChildProcess(ElasticsearchConfiguration.ES_CLUSTER_NAME, elasticsearchDataPath, elasticsearchDataPath, "9200",
+                        tuningSettings, propertiesProvider.get(ES_HEAP_SIZE_PROP).orElse(null)).start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            // started in background: pages are served by the IndexWaiterFilter until elasticsearch is up
+            new Thread(() -> {
+                try {
+                    new EsEmbeddedServer(ElasticsearchConfiguration.ES_CLUSTER_NAME, elasticsearchDataPath, elasticsearchDataPath, "9200", tuningSettings).start();
+                } catch (RuntimeException e) {
+                    LoggerFactory.getLogger(getClass()).error("cannot start embedded elasticsearch", e);
+                }
+            }, "es-embedded-start").start();
+        }
         Properties properties = new Properties();
         properties.put(ElasticsearchConfiguration.INDEX_ADDRESS_PROP, "http://localhost:9200");
         propertiesProvider.overrideWith(properties);
@@ -0,0 +1,23 @@
+package org.icij.datashare.mode;
+
+import org.icij.datashare.tasks.TaskManager;
+import org.icij.datashare.tasks.TaskManagerRedis;
+
+import java.util.Properties;
+
+public class TaskWorkerMode extends CommonMode {
+    TaskWorkerMode(Properties properties) {
+        super(properties);
+    }
+
+    @Override
+    protected void configure() {
+        super.configure();
+
+        String batchQueueType = propertiesProvider.get("batchQueueType").orElse("org.icij.datashare.extract.MemoryBlockingQueue");
+        TaskManagerRedis taskManager = new TaskManagerRedis(propertiesProvider, getBlockingQueue(propertiesProvider, batchQueueType, "ds:batchdownload:queue"));
+        bind(TaskManager.class).toInstance(taskManager);
+        bind(TaskManagerRedis.class).toInstance(taskManager);
+        configurePersistence();
+    }
+}
@@ -10,6 +10,10 @@ import org.icij.datashare.com.DataBus;
 import org.icij.datashare.com.Message;
 import org.icij.datashare.com.ShutdownMessage;
 import org.icij.datashare.monitoring.Monitorable;
+import org.icij.datashare.tasks.LaneTask;
+import org.icij.datashare.tasks.RemoteTask;
+import org.icij.datashare.tasks.TaskLane;
+import org.icij.datashare.tasks.TaskRequest;
 import org.icij.datashare.text.indexing.Indexer;
 import org.icij.datashare.text.nlp.AbstractPipeline;
 import org.icij.datashare.text.nlp.Pipeline;
@@ -26,13 +30,14 @@ import java.util.concurrent.LinkedBlockingQueue;
 
 import static java.lang.Integer.parseInt;
 import static java.lang.Integer.toHexString;
+import static java.util.Collections.singletonMap;
 import static java.util.Optional.ofNullable;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Stream.generate;
 import static org.icij.datashare.cli.DatashareCliOptions.NLP_PARALLELISM_OPT;
 
-public class NlpApp implements Runnable, Monitorable, UserTask {
+public class NlpApp implements Runnable, Monitorable, UserTask, LaneTask, RemoteTask {
     private static final long DEFAULT_TIMEOUT_MILLIS = 30 * 60 * 1000;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final Pipeline pipeline;
@@ -65,7 +70,7 @@ public class NlpApp implements Runnable, Monitorable, UserTask {
         this.queue = new LinkedBlockingQueue<>();
         this.user = user;
 
-        parallelism = parseInt(ofNullable(properties.getProperty(NLP_PARALLELISM_OPT)).orElse("1"));
+        parallelism = parallelism(properties);
         forwarder = new NlpForwarder(dataBus, queue, subscribedCb);
     }
 
@@ -150,4 +155,29 @@ public class NlpApp implements Runnable, Monitorable, UserTask {
             NlpApp createNlpApp(AbstractPipeline pipeline);
         }
     }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.NLP;}
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return request(name, user, pipeline.getType(), parallelism);
+    }
+
+    /**
+     * @return the request of the NLP app created by the TaskFactory with these arguments
+     */
+    public static TaskRequest request(String name, User user, Pipeline.Type pipelineType, Properties properties) {
+        return request(name, user, pipelineType, parallelism(properties));
+    }
+
+    private static TaskRequest request(String name, User user, Pipeline.Type pipelineType, int parallelism) {
+        Properties properties = new Properties();
+        properties.setProperty(NLP_PARALLELISM_OPT, String.valueOf(parallelism));
+        return new TaskRequest(name, TaskRequest.Type.NLP, user, singletonMap("pipeline", pipelineType.name()), properties);
+    }
+
+    private static int parallelism(Properties properties) {
+        return parseInt(ofNullable(properties.getProperty(NLP_PARALLELISM_OPT)).orElse("1"));
+    }
 }
@@ -1,5 +1,6 @@
 package org.icij.datashare.nlp;
 
+import com.google.common.base.Optional;
 import com.optimaize.langdetect.LanguageDetector;
 import com.optimaize.langdetect.LanguageDetectorBuilder;
 import com.optimaize.langdetect.i18n.LdLocale;
@@ -11,9 +12,17 @@ import org.icij.datashare.text.Language;
 import org.icij.datashare.text.indexing.LanguageGuesser;
 
 import java.io.IOException;
+import java.util.List;
+
+import static org.icij.datashare.text.indexing.TextSampler.DEFAULT_NB_SLICES;
+import static org.icij.datashare.text.indexing.TextSampler.DEFAULT_SAMPLE_LENGTH;
+import static org.icij.datashare.text.indexing.TextSampler.slices;
 
 public class OptimaizeLanguageGuesser implements LanguageGuesser {
+    private static final LdLocale DEFAULT_LOCALE = LdLocale.fromString("en");
     private final LanguageDetector languageDetector;
+    // text object factories hold mutable filters, so each thread has its own instead of creating one per call
+    private final ThreadLocal<TextObjectFactory> textObjectFactory = ThreadLocal.withInitial(CommonTextObjectFactories::forDetectingOnLargeText);
 
     public OptimaizeLanguageGuesser() throws IOException {
         this.languageDetector = LanguageDetectorBuilder.create(NgramExtractors.standard())
@@ -21,9 +30,23 @@ public class OptimaizeLanguageGuesser implements LanguageGuesser {
                         .build();
     }
 
+    /**
+     * guesses the language on a sample of the text. If the first slice of the sample
+     * is enough for the detector to be confident, the other slices are not read.
+     */
     @Override
     public Language guess(String text) {
-        TextObjectFactory textObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
-        return Language.parse(languageDetector.detect(textObjectFactory.forText(text)).or(LdLocale.fromString("en")).getLanguage());
+        List<String> slices = slices(text, DEFAULT_SAMPLE_LENGTH, DEFAULT_NB_SLICES);
+        if (slices.size() > 1) {
+            Optional<LdLocale> firstSliceLocale = detect(slices.get(0));
+            if (firstSliceLocale.isPresent()) {
+                return Language.parse(firstSliceLocale.get().getLanguage());
+            }
+        }
+        return Language.parse(detect(String.join(" ", slices)).or(DEFAULT_LOCALE).getLanguage());
+    }
+
+    private Optional<LdLocale> detect(String text) {
+        return languageDetector.detect(textObjectFactory.get().forText(text));
     }
 }
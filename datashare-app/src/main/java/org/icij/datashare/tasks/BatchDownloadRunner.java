@@ -17,6 +17,7 @@ import org.icij.datashare.monitoring.Monitorable;
 import org.icij.datashare.text.Document;
 import org.icij.datashare.text.Project;
 import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.text.indexing.PrefetchingScroll;
 import org.icij.datashare.text.indexing.elasticsearch.ExtractException;
 import org.icij.datashare.text.indexing.elasticsearch.SourceExtractor;
 import org.icij.datashare.user.User;
@@ -34,7 +35,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
@@ -46,7 +47,7 @@ import static java.lang.String.valueOf;
 import static java.util.stream.Collectors.toList;
 import static org.icij.datashare.cli.DatashareCliOptions.*;
 
-public class BatchDownloadRunner implements Callable<File>, Monitorable, UserTask {
+public class BatchDownloadRunner implements Callable<File>, Monitorable, UserTask, LaneTask {
     private final static Logger logger = LoggerFactory.getLogger(BatchDownloadRunner.class);
     static final int MAX_SCROLL_SIZE = 3500;
     static final int MAX_BATCH_RESULT_SIZE = 10000;
@@ -88,24 +89,23 @@ public class BatchDownloadRunner implements Callable<File>, Monitorable, UserTas
         } else {
             searcher.with(batchDownload.query);
         }
-        List<? extends Entity> docsToProcess = searcher.scroll().collect(toList());
-        if (docsToProcess.size() == 0) {
-            logger.warn("no results for batchDownload {}", batchDownload.uuid);
-            return null;
-        }
-        docsToProcessSize = searcher.totalHits();
-        if (docsToProcessSize > maxResultSize) {
-            logger.warn("number of results for batch download > {} for {}/{} (nb zip entries will be limited)",
-                    maxResultSize, batchDownload.uuid, batchDownload.user);
-        }
+        try (PrefetchingScroll scroll = new PrefetchingScroll(searcher)) {
+            docsToProcessSize = scroll.totalHits();
+            Iterator<? extends Entity> docsToProcess = scroll.stream().iterator();
+            if (!docsToProcess.hasNext()) {
+                logger.warn("no results for batchDownload {}", batchDownload.uuid);
+                return null;
+            }
+            if (docsToProcessSize > maxResultSize) {
+                logger.warn("number of results for batch download > {} for {}/{} (nb zip entries will be limited)",
+                        maxResultSize, batchDownload.uuid, batchDownload.user);
+            }
 
-        try (Zipper zipper = createZipper(batchDownload, propertiesProvider, mailSenderSupplier)) {
-            HashMap<String, Object> taskProperties = new HashMap<>();
-            taskProperties.put("batchDownload", batchDownload);
-            while (docsToProcess.size() != 0) {
-                for (int i = 0; i < docsToProcess.size() && numberOfResults.get() < maxResultSize && zippedFilesSize <= maxZipSizeBytes; i++) {
-                    Entity doc = docsToProcess.get(i);
-                    int addedBytes = zipper.add((Document) doc);
+            try (Zipper zipper = createZipper(batchDownload, propertiesProvider, mailSenderSupplier)) {
+                HashMap<String, Object> taskProperties = new HashMap<>();
+                taskProperties.put("batchDownload", batchDownload);
+                while (docsToProcess.hasNext() && numberOfResults.get() < maxResultSize && zippedFilesSize <= maxZipSizeBytes) {
+                    int addedBytes = zipper.add((Document) docsToProcess.next());
                     if (addedBytes > 0) {
                         zippedFilesSize += addedBytes;
                         numberOfResults.incrementAndGet();
@@ -113,7 +113,6 @@ public class BatchDownloadRunner implements Callable<File>, Monitorable, UserTas
                         updateCallback.apply(new TaskView<>(new MonitorableFutureTask<>(this, taskProperties)));
                     }
                 }
-                docsToProcess = searcher.scroll().collect(toList());
             }
         }
         logger.info("created batch download file {} ({} bytes/{} entries) for user {}",
@@ -223,4 +222,7 @@ public class BatchDownloadRunner implements Callable<File>, Monitorable, UserTas
             }
         }
     }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.BATCH;}
 }
@@ -6,12 +6,14 @@ import org.icij.datashare.batch.BatchSearchRecord;
 import org.icij.datashare.batch.BatchSearchRepository;
 import org.icij.datashare.batch.SearchException;
 import org.icij.datashare.db.JooqBatchSearchRepository;
+import org.icij.datashare.user.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sun.misc.Signal;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -20,7 +22,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Optional.ofNullable;
 
-public class BatchSearchLoop {
+public class BatchSearchLoop implements Runnable, LaneTask, RemoteTask {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     final BlockingQueue<String> batchSearchQueue;
     private final TaskFactory factory;
@@ -48,6 +50,7 @@ public class BatchSearchLoop {
         });
     }
 
+    @Override
     public void run() {
         logger.info("Datashare running in batch mode. Waiting batch from ds:batchsearch.queue ({})", batchSearchQueue.getClass());
         String currentBatchId = null;
@@ -101,4 +104,12 @@ public class BatchSearchLoop {
         }
         repository.close();
     }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.BATCH;}
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return new TaskRequest(name, TaskRequest.Type.BATCH_SEARCH, User.nullUser(), new HashMap<>());
+    }
 }
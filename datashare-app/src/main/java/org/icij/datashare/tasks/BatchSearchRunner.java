@@ -14,6 +14,7 @@ import org.icij.datashare.monitoring.Monitorable;
 import org.icij.datashare.text.Document;
 import org.icij.datashare.text.Project;
 import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.text.indexing.PrefetchingScroll;
 import org.icij.datashare.time.DatashareTime;
 import org.icij.datashare.user.User;
 import org.icij.datashare.user.UserTask;
@@ -21,7 +22,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -92,23 +95,24 @@ public class BatchSearchRunner implements Callable<Integer>, Monitorable, UserTa
                         withFieldValues("contentType", batchSearch.fileTypes.toArray(new String[]{})).
                         withPrefixQuery("dirname", batchSearch.paths.toArray(new String[]{})).
                         withoutSource("content").limit(scrollSize);
-                List<? extends Entity> docsToProcess = searcher.scroll().collect(toList());
+                try (PrefetchingScroll scroll = new PrefetchingScroll(searcher)) {
+                    Iterator<List<? extends Entity>> pages = scroll.pages().iterator();
 
-                long beforeScrollLoop = DatashareTime.getInstance().currentTimeMillis();
-                while (docsToProcess.size() != 0 && numberOfResults < MAX_BATCH_RESULT_SIZE - MAX_SCROLL_SIZE) {
-                    if (cancelAsked) {
-                        throw new CancelException();
+                    long beforeScrollLoop = DatashareTime.getInstance().currentTimeMillis();
+                    while (numberOfResults < MAX_BATCH_RESULT_SIZE - MAX_SCROLL_SIZE && pages.hasNext()) {
+                        List<? extends Entity> docsToProcess = pages.next();
+                        if (cancelAsked) {
+                            throw new CancelException();
+                        }
+                        resultConsumer.apply(batchSearch.uuid, query, (List<Document>) docsToProcess);
+                        if (DatashareTime.getInstance().currentTimeMillis() - beforeScrollLoop < maxTimeSeconds * 1000) {
+                            DatashareTime.getInstance().sleep(throttleMs);
+                        } else {
+                            throw new SearchException(query, new TimeoutException("Batch timed out after " + maxTimeSeconds + "s"));
+                        }
+                        numberOfResults += docsToProcess.size();
                     }
-                    resultConsumer.apply(batchSearch.uuid, query, (List<Document>) docsToProcess);
-                    if (DatashareTime.getInstance().currentTimeMillis() - beforeScrollLoop < maxTimeSeconds * 1000) {
-                        DatashareTime.getInstance().sleep(throttleMs);
-                    } else {
-                        throw new SearchException(query, new TimeoutException("Batch timed out after " + maxTimeSeconds + "s"));
-                    }
-                    numberOfResults += docsToProcess.size();
-                    docsToProcess = searcher.scroll().collect(toList());
                 }
-                searcher.clearScroll();
                 totalProcessed += 1;
             }
         } catch (ElasticsearchStatusException esEx) {
@@ -116,6 +120,8 @@ public class BatchSearchRunner implements Callable<Integer>, Monitorable, UserTa
                     stream(esEx.getSuppressed()).filter(t -> t instanceof ResponseException).findFirst().orElse(esEx));
         } catch (IOException|InterruptedException ex) {
             throw new SearchException(query, ex);
+        } catch (UncheckedIOException ex) {
+            throw new SearchException(query, ex.getCause());
         }
         logger.info("done batch search {} with success", batchSearch.uuid);
         return numberOfResults;
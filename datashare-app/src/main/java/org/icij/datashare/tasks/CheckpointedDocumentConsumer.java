@@ -0,0 +1,96 @@
+package org.icij.datashare.tasks;
+
+import org.icij.datashare.text.indexing.elasticsearch.ElasticsearchSpewer;
+import org.icij.extract.extractor.DocumentConsumer;
+import org.icij.extract.extractor.ExtractionStatus;
+import org.icij.extract.extractor.Extractor;
+import org.icij.extract.queue.DocumentQueue;
+import org.icij.extract.report.Reporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * DocumentConsumer that keeps the paths being indexed in a processing queue: a path is added to it when
+ * it is taken from the document queue, and removed when all the documents extracted from it have been
+ * indexed (see {@link ElasticsearchSpewer#whenIndexed(Path, Consumer)}).
+ *
+ * The paths left in the processing queue by an index task that has been stopped are extracted again by
+ * {@link #resume()}, without checking the report map, because they may have been reported before their
+ * documents were indexed.
+ *
+ * A path with documents that could not be indexed is also removed from the processing queue, so that it
+ * is not extracted again by every index task: it is saved as FAILURE_NOT_SAVED in the report map.
+ */
+class CheckpointedDocumentConsumer extends DocumentConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointedDocumentConsumer.class);
+    private final ElasticsearchSpewer elasticsearchSpewer;
+    private final DocumentQueue processing;
+
+    CheckpointedDocumentConsumer(ElasticsearchSpewer spewer, Extractor extractor, int poolSize, DocumentQueue processing) {
+        super(spewer, extractor, poolSize);
+        this.elasticsearchSpewer = spewer;
+        this.processing = processing;
+    }
+
+    @Override
+    public void accept(Path path) {
+        processing.add(path);
+        executor.execute(() -> {
+            Reporter reporter = getReporter();
+            try {
+                if (reporter != null) {
+                    extractor.extract(path, spewer, reporter);
+                } else {
+                    extractor.extract(path, spewer);
+                }
+            } catch (Exception e) {
+                logger.error(String.format("Exception while consuming file: \"%s\".", path), e);
+            }
+            acknowledgeWhenIndexed(path);
+        });
+    }
+
+    /**
+     * @return the number of paths of the processing queue extracted again
+     */
+    int resume() {
+        List<Path> paths = new ArrayList<>(processing);
+        if (!paths.isEmpty()) {
+            logger.info("resuming {} path(s) that were being indexed", paths.size());
+        }
+        paths.forEach(path -> executor.execute(() -> {
+            Reporter reporter = getReporter();
+            try {
+                extractor.extract(path, spewer);
+                if (reporter != null) {
+                    reporter.save(path, ExtractionStatus.SUCCESS);
+                }
+            } catch (Exception e) {
+                logger.error(String.format("Exception while consuming file: \"%s\".", path), e);
+                if (reporter != null) {
+                    reporter.save(path, ExtractionStatus.FAILURE_UNKNOWN, e);
+                }
+            }
+            acknowledgeWhenIndexed(path);
+        }));
+        return paths.size();
+    }
+
+    private void acknowledgeWhenIndexed(Path path) {
+        elasticsearchSpewer.whenIndexed(path, indexed -> {
+            if (!indexed) {
+                logger.error("documents of \"{}\" could not be indexed", path);
+                Reporter reporter = getReporter();
+                if (reporter != null) {
+                    reporter.save(path, ExtractionStatus.FAILURE_NOT_SAVED);
+                }
+            }
+            processing.remove(path);
+        });
+    }
+}
@@ -8,10 +8,12 @@ import org.icij.datashare.user.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static java.util.Collections.singletonMap;
+
 /**
  * filters the document queue with extracted docs
  */
-public class DeduplicateTask extends PipelineTask {
+public class DeduplicateTask extends PipelineTask implements RemoteTask {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Inject
@@ -27,4 +29,9 @@ public class DeduplicateTask extends PipelineTask {
         queue.close();
         return (long)duplicates;
     }
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return new TaskRequest(name, TaskRequest.Type.DEDUPLICATE, user, singletonMap("queueName", queueName));
+    }
 }
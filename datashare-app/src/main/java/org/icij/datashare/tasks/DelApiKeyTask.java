@@ -9,7 +9,7 @@ import org.icij.task.DefaultTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DelApiKeyTask extends DefaultTask<Boolean> implements UserTask {
+public class DelApiKeyTask extends DefaultTask<Boolean> implements UserTask, LaneTask {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final ApiKeyRepository apiKeyRepository;
     private final User user;
@@ -36,4 +36,10 @@ public class DelApiKeyTask extends DefaultTask<Boolean> implements UserTask {
     public User getUser() {
         return user;
     }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.MAINTENANCE;}
+
+    @Override
+    public int getPriority() { return INTERACTIVE_PRIORITY;}
 }
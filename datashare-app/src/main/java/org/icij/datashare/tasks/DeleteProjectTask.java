@@ -0,0 +1,71 @@
+package org.icij.datashare.tasks;
+
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+import org.icij.datashare.Repository;
+import org.icij.datashare.monitoring.Monitorable;
+import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.user.User;
+import org.icij.datashare.user.UserTask;
+import org.icij.task.DefaultTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Collections.singletonMap;
+
+/**
+ * deletes the documents of a project from the index (the index is replaced by a new empty version)
+ * then the project data from the database (tags, stars, recommendations, history).
+ * The database is not cleaned if the index cannot be deleted.
+ */
+public class DeleteProjectTask extends DefaultTask<Boolean> implements UserTask, Monitorable, LaneTask, RemoteTask {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Repository repository;
+    private final Indexer indexer;
+    private final User user;
+    private final String projectId;
+    private volatile double progress = 0;
+
+    @Inject
+    public DeleteProjectTask(Repository repository, Indexer indexer, @Assisted User user, @Assisted String projectId) {
+        this.repository = repository;
+        this.indexer = indexer;
+        this.user = user;
+        this.projectId = projectId;
+    }
+
+    /**
+     * @return true if something has been deleted (index and/or database)
+     */
+    @Override
+    public Boolean call() throws Exception {
+        logger.info("deleting project {}", projectId);
+        boolean indexDeleted = indexer.deleteAll(projectId);
+        progress = 0.5;
+        boolean dbDeleted = repository.deleteAll(projectId);
+        progress = 1;
+        logger.info("project {} deleted (index: {}, database: {})", projectId, indexDeleted, dbDeleted);
+        return indexDeleted || dbDeleted;
+    }
+
+    @Override
+    public double getProgressRate() {
+        return progress;
+    }
+
+    @Override
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.MAINTENANCE;}
+
+    @Override
+    public int getPriority() { return INTERACTIVE_PRIORITY;}
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return new TaskRequest(name, TaskRequest.Type.DELETE_PROJECT, user, singletonMap("projectId", projectId));
+    }
+}
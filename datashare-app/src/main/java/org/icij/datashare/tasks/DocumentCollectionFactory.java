@@ -4,7 +4,10 @@ import org.icij.datashare.PropertiesProvider;
 import org.icij.extract.queue.DocumentQueue;
 import org.icij.extract.report.ReportMap;
 
+import java.util.concurrent.locks.ReadWriteLock;
+
 public interface DocumentCollectionFactory {
     DocumentQueue createQueue(PropertiesProvider propertiesProvider, String queueName);
     ReportMap createMap(PropertiesProvider propertiesProvider, String mapName);
+    ReadWriteLock createLock(PropertiesProvider propertiesProvider, String lockName);
 }
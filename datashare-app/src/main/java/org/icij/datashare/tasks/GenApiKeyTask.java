@@ -12,7 +12,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.crypto.SecretKey;
 
-public class GenApiKeyTask extends DefaultTask<String> implements UserTask {
+public class GenApiKeyTask extends DefaultTask<String> implements UserTask, LaneTask {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final ApiKeyRepository apiKeyRepository;
     private final User user;
@@ -34,4 +34,10 @@ public class GenApiKeyTask extends DefaultTask<String> implements UserTask {
     public User getUser() {
         return user;
     }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.MAINTENANCE;}
+
+    @Override
+    public int getPriority() { return INTERACTIVE_PRIORITY;}
 }
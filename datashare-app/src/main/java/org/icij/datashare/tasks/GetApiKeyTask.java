@@ -11,7 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 
-public class GetApiKeyTask extends DefaultTask<String> implements UserTask  {
+public class GetApiKeyTask extends DefaultTask<String> implements UserTask, LaneTask {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final ApiKeyRepository apiKeyRepository;
     private final User user;
@@ -32,4 +32,10 @@ public class GetApiKeyTask extends DefaultTask<String> implements UserTask  {
     public User getUser() {
         return user;
     }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.MAINTENANCE;}
+
+    @Override
+    public int getPriority() { return INTERACTIVE_PRIORITY;}
 }
@@ -14,9 +14,9 @@ import org.icij.datashare.text.indexing.elasticsearch.ElasticsearchSpewer;
 import org.icij.datashare.user.User;
 import org.icij.extract.document.DigestIdentifier;
 import org.icij.extract.document.DocumentFactory;
-import org.icij.extract.extractor.DocumentConsumer;
 import org.icij.extract.extractor.Extractor;
 import org.icij.extract.extractor.UpdatableDigester;
+import org.icij.extract.queue.DocumentQueue;
 import org.icij.extract.queue.DocumentQueueDrainer;
 import org.icij.extract.report.Reporter;
 import org.icij.task.Options;
@@ -26,35 +26,54 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.charset.Charset;
 import java.util.Properties;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import static java.lang.Math.max;
 import static java.lang.String.valueOf;
+import static java.util.Collections.singletonMap;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.icij.datashare.PropertiesProvider.MAP_NAME_OPTION;
 import static org.icij.datashare.com.Message.Field.VALUE;
 import static org.icij.datashare.com.Message.Type.INIT_MONITORING;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.getReplicas;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.getShards;
 
+/**
+ * Extracts and indexes the paths of the queue. The paths being indexed are kept in the queueName:processing
+ * queue until their documents are indexed, so that when an index task is stopped (or its process is killed)
+ * the next index task of the queue indexes them again first, without scanning again.
+ *
+ * The processing queue is shared by the index tasks of the queue, so the running tasks hold the read lock
+ * of queueName:processing:lock, and a task only resumes the processing queue if it gets the write lock,
+ * i.e. when no other index task of the queue is running.
+ */
 @OptionsClass(Extractor.class)
 @OptionsClass(DocumentQueueDrainer.class)
-public class IndexTask extends PipelineTask implements Monitorable{
+public class IndexTask extends PipelineTask implements Monitorable, RemoteTask {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final DocumentQueueDrainer drainer;
-    private final DocumentConsumer consumer;
+    private final CheckpointedDocumentConsumer consumer;
+    private final DocumentQueue processing;
+    private final ReadWriteLock processingLock;
+    private final ElasticsearchSpewer spewer;
     private final Publisher publisher;
     private long totalToProcess;
     private final Integer parallelism;
+    private final Properties properties;
 
     @Inject
     public IndexTask(final ElasticsearchSpewer spewer, final Publisher publisher, final DocumentCollectionFactory factory, @Assisted User user, @Assisted String queueName,
                      @Assisted final Properties properties) {
         super(DatashareCli.Stage.INDEX, user, queueName, factory, new PropertiesProvider(properties));
+        this.properties = properties;
         PropertiesProvider propertiesProvider = new PropertiesProvider(properties);
         parallelism = propertiesProvider.get("parallelism").map(Integer::parseInt).orElse(Runtime.getRuntime().availableProcessors());
         this.publisher = publisher;
+        this.spewer = spewer;
         String indexName = propertiesProvider.get("defaultProject").orElse("local-datashare");
         spewer.withIndex(indexName); // TODO: remove this
-        spewer.createIndex();
+        spewer.createIndex(getShards(propertiesProvider), getReplicas(propertiesProvider));
 
         Options<String> allTaskOptions = options().createFrom(Options.from(properties));
         Extractor extractor = new Extractor(new DocumentFactory().withIdentifier(new DigestIdentifier(Entity.HASHER.toString(), Charset.defaultCharset())));
@@ -65,7 +84,9 @@ public class IndexTask extends PipelineTask implements Monitorable{
             logger.info("disable OCR");
             extractor.disableOcr();
         }
-        consumer = new DocumentConsumer(spewer, extractor, this.parallelism);
+        processing = factory.createQueue(propertiesProvider, queueName + ":processing");
+        processingLock = factory.createLock(propertiesProvider, queueName + ":processing:lock");
+        consumer = new CheckpointedDocumentConsumer(spewer, extractor, this.parallelism, processing);
         if (propertiesProvider.getProperties().get(MAP_NAME_OPTION) != null) {
             logger.info("report map enabled with name set to {}", propertiesProvider.getProperties().get(MAP_NAME_OPTION));
             consumer.setReporter(new Reporter(factory.createMap(propertiesProvider, propertiesProvider.getProperties().get(MAP_NAME_OPTION).toString())));
@@ -76,24 +97,51 @@ public class IndexTask extends PipelineTask implements Monitorable{
     @Override
     public Long call() throws Exception {
         logger.info("Processing up to {} file(s) in parallel", parallelism);
-        totalToProcess = drainer.drain(POISON).get();
-        drainer.shutdown();
-        drainer.awaitTermination(10, SECONDS); // drain is finished
-        logger.info("drained {} documents. Waiting for consumer to shutdown", totalToProcess);
-        publisher.publish(Channel.NLP, new Message(INIT_MONITORING).add(VALUE, valueOf(totalToProcess)));
-
-        consumer.shutdown();
-        // documents could be currently processed
+        spewer.applyIngestSettings();
+        boolean running = false;
         try {
-            while (!consumer.awaitTermination(30, MINUTES)) {
-                logger.info("Consumer has not terminated yet.");
+            boolean resuming = processingLock.writeLock().tryLock();
+            processingLock.readLock().lock();
+            running = true;
+            long resumed = 0;
+            if (resuming) {
+                try {
+                    resumed = consumer.resume();
+                } finally {
+                    processingLock.writeLock().unlock();
+                }
+            } else {
+                logger.info("other index tasks of {} are running, their paths being indexed are not resumed", queueName);
+            }
+            totalToProcess = drainer.drain(POISON).get() + resumed;
+            drainer.shutdown();
+            drainer.awaitTermination(10, SECONDS); // drain is finished
+            logger.info("drained {} documents. Waiting for consumer to shutdown", totalToProcess);
+            publisher.publish(Channel.NLP, new Message(INIT_MONITORING).add(VALUE, valueOf(totalToProcess)));
+
+            consumer.shutdown();
+            // documents could be currently processed
+            try {
+                while (!consumer.awaitTermination(30, MINUTES)) {
+                    logger.info("Consumer has not terminated yet.");
+                }
+            } catch (InterruptedException iex) {
+                logger.info("Got InterruptedException while waiting for the consumer shutdown.");
+            }
+            spewer.close(); // flushes pending bulk requests before NLP is told to shut down
+        } finally {
+            spewer.restoreIndexSettings();
+            if (running) {
+                processingLock.readLock().unlock();
             }
-        } catch (InterruptedException iex) {
-            logger.info("Got InterruptedException while waiting for the consumer shutdown.");
         }
         publisher.publish(Channel.NLP, new ShutdownMessage());
 
         if (consumer.getReporter() != null) consumer.getReporter().close();
+        if (!processing.isEmpty()) {
+            logger.warn("{} path(s) have not been indexed, they will be indexed again by the next index task", processing.size());
+        }
+        processing.close();
         queue.close();
         logger.info("exiting");
         return totalToProcess;
@@ -104,4 +152,16 @@ public class IndexTask extends PipelineTask implements Monitorable{
         totalToProcess = max(queue.size(), totalToProcess);
         return (double)(totalToProcess - queue.size()) / totalToProcess;
     }
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return request(name, user, queueName, properties);
+    }
+
+    /**
+     * @return the request of the index task created by the TaskFactory with these arguments
+     */
+    public static TaskRequest request(String name, User user, String queueName, Properties properties) {
+        return new TaskRequest(name, TaskRequest.Type.INDEX, user, singletonMap("queueName", queueName), properties);
+    }
 }
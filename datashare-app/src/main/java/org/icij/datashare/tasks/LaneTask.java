@@ -0,0 +1,16 @@
+package org.icij.datashare.tasks;
+
+/**
+ * Task run in a given {@link TaskLane}. When the threads of the lane are busy, queued tasks
+ * are started by decreasing priority, then in the order they have been queued.
+ */
+public interface LaneTask {
+    int DEFAULT_PRIORITY = 0;
+    int INTERACTIVE_PRIORITY = 10;
+
+    TaskLane getLane();
+
+    default int getPriority() {
+        return DEFAULT_PRIORITY;
+    }
+}
@@ -8,10 +8,13 @@ import org.icij.extract.report.ReportMap;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class MemoryDocumentCollectionFactory implements DocumentCollectionFactory {
     final Map<String, DocumentQueue> queues = new ConcurrentHashMap<>();
     final Map<String, ReportMap> maps = new ConcurrentHashMap<>();
+    final Map<String, ReadWriteLock> locks = new ConcurrentHashMap<>();
 
     @Override
     public DocumentQueue createQueue(PropertiesProvider propertiesProvider, String queueName) {
@@ -32,4 +35,9 @@ public class MemoryDocumentCollectionFactory implements DocumentCollectionFactor
         }
         return maps.get(mapName);
     }
+
+    @Override
+    public ReadWriteLock createLock(PropertiesProvider propertiesProvider, String lockName) {
+        return locks.computeIfAbsent(lockName, name -> new ReentrantReadWriteLock());
+    }
 }
@@ -12,6 +12,7 @@ import java.util.concurrent.FutureTask;
 public class MonitorableFutureTask<V> extends FutureTask<V> implements Monitorable, UserTask {
     private final Object runnableOrCallable;
     public final Map<String, Object> properties = new HashMap<>();
+    private volatile boolean started = false;
 
     public MonitorableFutureTask(Callable<V> callable) {
         super(callable);
@@ -36,6 +37,27 @@ public class MonitorableFutureTask<V> extends FutureTask<V> implements Monitorab
         return () -> -2;
     }
 
+    @Override
+    public void run() {
+        started = true;
+        super.run();
+    }
+
+    /**
+     * @return true if a thread has picked up the task, false while it is queued
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    public TaskLane getLane() {
+        return TaskLane.of(runnableOrCallable);
+    }
+
+    public int getPriority() {
+        return TaskLane.priorityOf(runnableOrCallable);
+    }
+
     @Override
     public double getProgressRate() {
         return getMonitorable(runnableOrCallable).getProgressRate();
@@ -14,10 +14,11 @@ import java.util.function.Predicate;
 
 import static org.icij.datashare.PropertiesProvider.QUEUE_NAME_OPTION;
 
-public abstract class PipelineTask extends DefaultTask<Long> implements UserTask {
+public abstract class PipelineTask extends DefaultTask<Long> implements UserTask, LaneTask {
     private final DatashareCli.Stage stage;
     protected final DocumentQueue queue;
     protected final User user;
+    protected final String queueName;
     private final PropertiesProvider propertiesProvider;
     public static Path POISON = Paths.get("POISON");
     private final DocumentCollectionFactory factory;
@@ -28,6 +29,7 @@ public abstract class PipelineTask extends DefaultTask<Long> implements UserTask
         this.propertiesProvider = propertiesProvider;
         this.stage = stage;
         this.user = user;
+        this.queueName = queueName;
     }
 
     public PipelineTask(DatashareCli.Stage stage, User user, DocumentCollectionFactory factory, final PropertiesProvider propertiesProvider) {
@@ -58,4 +60,7 @@ public abstract class PipelineTask extends DefaultTask<Long> implements UserTask
 
     @Override
     public User getUser() { return user;}
+
+    @Override
+    public TaskLane getLane() { return TaskLane.INGEST;}
 }
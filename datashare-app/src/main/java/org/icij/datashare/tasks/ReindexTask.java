@@ -0,0 +1,60 @@
+package org.icij.datashare.tasks;
+
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.monitoring.Monitorable;
+import org.icij.datashare.text.indexing.elasticsearch.Reindexer;
+import org.icij.datashare.user.User;
+import org.icij.datashare.user.UserTask;
+import org.icij.task.DefaultTask;
+
+import static java.util.Collections.singletonMap;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.REINDEX_SLICES_PROP;
+
+/**
+ * copies a project index into a new version of it with the current mapping and settings,
+ * then serves the project with the new version (see {@link Reindexer}).
+ * The project cannot be indexed while it is reindexed.
+ */
+public class ReindexTask extends DefaultTask<String> implements UserTask, Monitorable, LaneTask, RemoteTask {
+    private final Reindexer reindexer;
+    private final User user;
+    private final String indexName;
+    private final int slices;
+    private volatile double progress = 0;
+
+    @Inject
+    public ReindexTask(Reindexer reindexer, PropertiesProvider propertiesProvider, @Assisted User user, @Assisted String indexName) {
+        this.reindexer = reindexer;
+        this.user = user;
+        this.indexName = indexName;
+        this.slices = propertiesProvider.get(REINDEX_SLICES_PROP).map(Integer::parseInt).orElse(0);
+    }
+
+    /**
+     * @return the name of the new version of the index
+     */
+    @Override
+    public String call() throws Exception {
+        return reindexer.reindex(indexName, slices, rate -> progress = rate);
+    }
+
+    @Override
+    public double getProgressRate() {
+        return progress;
+    }
+
+    @Override
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.INGEST;}
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return new TaskRequest(name, TaskRequest.Type.REINDEX, user, singletonMap("indexName", indexName));
+    }
+}
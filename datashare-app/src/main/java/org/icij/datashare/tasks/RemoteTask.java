@@ -0,0 +1,12 @@
+package org.icij.datashare.tasks;
+
+/**
+ * Task that can be run by any worker of the cluster with {@link TaskManagerRedis}.
+ */
+public interface RemoteTask {
+    /**
+     * @param name the name of the task view
+     * @return the request for creating the task again on a worker
+     */
+    TaskRequest toRequest(String name);
+}
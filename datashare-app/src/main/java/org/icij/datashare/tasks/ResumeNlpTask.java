@@ -2,7 +2,6 @@ package org.icij.datashare.tasks;
 
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
-import org.icij.datashare.Entity;
 import org.icij.datashare.PropertiesProvider;
 import org.icij.datashare.com.Channel;
 import org.icij.datashare.com.Message;
@@ -10,6 +9,7 @@ import org.icij.datashare.com.Publisher;
 import org.icij.datashare.com.ShutdownMessage;
 import org.icij.datashare.text.Document;
 import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.text.indexing.PrefetchingScroll;
 import org.icij.datashare.text.nlp.Pipeline;
 import org.icij.datashare.user.User;
 import org.icij.datashare.user.UserTask;
@@ -17,15 +17,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.List;
+import java.io.UncheckedIOException;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
 import static java.lang.String.valueOf;
 import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.toList;
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.joining;
 
-public class ResumeNlpTask implements Callable<Long>, UserTask {
+public class ResumeNlpTask implements Callable<Long>, UserTask, LaneTask, RemoteTask {
     Logger logger = LoggerFactory.getLogger(getClass());
     private final Set<Pipeline.Type> nlpPipelines;
     private final User user;
@@ -47,21 +48,20 @@ public class ResumeNlpTask implements Callable<Long>, UserTask {
     public Long call() throws IOException {
         Indexer.Searcher searcher = indexer.search(singletonList(projectName), Document.class).withSource("rootDocument").without(nlpPipelines.toArray(new Pipeline.Type[] {}));
         logger.info("resuming NLP name finding for index {} and {} : {} documents found", projectName, nlpPipelines, searcher.totalHits());
-        List<? extends Entity> docsToProcess = searcher.scroll().collect(toList());
-        long totalHits = searcher.totalHits();
-        this.publisher.publish(Channel.NLP, new Message(Message.Type.INIT_MONITORING).add(Message.Field.VALUE, valueOf(totalHits)));
+        long totalHits;
+        try (PrefetchingScroll scroll = new PrefetchingScroll(searcher)) {
+            totalHits = scroll.totalHits();
+            this.publisher.publish(Channel.NLP, new Message(Message.Type.INIT_MONITORING).add(Message.Field.VALUE, valueOf(totalHits)));
 
-        do {
-            docsToProcess.forEach(doc -> this.publisher.publish(Channel.NLP,
+            scroll.stream().forEach(doc -> this.publisher.publish(Channel.NLP,
                     new Message(Message.Type.EXTRACT_NLP)
                             .add(Message.Field.INDEX_NAME, projectName)
                             .add(Message.Field.DOC_ID, doc.getId())
                             .add(Message.Field.R_ID, ((Document) doc).getRootDocument())));
-            docsToProcess = searcher.scroll().collect(toList());
-        } while (docsToProcess.size() != 0);
-        logger.info("sent {} message for {} files without {} pipeline tags", Message.Type.EXTRACT_NLP, totalHits, nlpPipelines);
-
-        searcher.clearScroll();
+            logger.info("sent {} message for {} files without {} pipeline tags", Message.Type.EXTRACT_NLP, totalHits, nlpPipelines);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
         this.publisher.publish(Channel.NLP, new ShutdownMessage());
 
         return totalHits;
@@ -69,4 +69,20 @@ public class ResumeNlpTask implements Callable<Long>, UserTask {
 
     @Override
     public User getUser() { return user;}
+
+    @Override
+    public TaskLane getLane() { return TaskLane.INTERACTIVE;}
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return request(name, user, nlpPipelines);
+    }
+
+    /**
+     * @return the request of the resume NLP task created by the TaskFactory with these arguments
+     */
+    public static TaskRequest request(String name, User user, Set<Pipeline.Type> nlpPipelines) {
+        return new TaskRequest(name, TaskRequest.Type.RESUME_NLP, user,
+                singletonMap("pipelines", nlpPipelines.stream().map(Pipeline.Type::name).collect(joining(","))));
+    }
 }
@@ -6,6 +6,7 @@ import org.icij.datashare.Entity;
 import org.icij.datashare.PropertiesProvider;
 import org.icij.datashare.text.Document;
 import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.text.indexing.PrefetchingScroll;
 import org.icij.datashare.user.User;
 import org.icij.datashare.user.UserTask;
 import org.icij.extract.extractor.ExtractionStatus;
@@ -16,18 +17,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.IntStream;
 
 import static java.lang.Integer.parseInt;
 import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.toList;
+import static java.util.Collections.singletonMap;
 import static java.util.stream.Collectors.toMap;
 import static org.icij.datashare.cli.DatashareCliOptions.SCROLL_SIZE;
 
-public class ScanIndexTask extends DefaultTask<Long> implements UserTask {
+public class ScanIndexTask extends DefaultTask<Long> implements UserTask, LaneTask, RemoteTask {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final Indexer indexer;
     private final int scrollSize;
@@ -35,6 +37,7 @@ public class ScanIndexTask extends DefaultTask<Long> implements UserTask {
     private final ReportMap reportMap;
     private final User user;
     private final int scrollSlices;
+    private final String reportName;
 
     @Inject
     public ScanIndexTask(DocumentCollectionFactory factory, final Indexer indexer, final PropertiesProvider propertiesProvider,
@@ -43,6 +46,7 @@ public class ScanIndexTask extends DefaultTask<Long> implements UserTask {
         this.scrollSize = parseInt(propertiesProvider.get(SCROLL_SIZE).orElse("1000"));
         this.scrollSlices = parseInt(propertiesProvider.get("scrollSlices").orElse("1"));
         this.projectName = propertiesProvider.get("defaultProject").orElse("local-datashare");
+        this.reportName = reportName;
         this.reportMap = factory.createMap(propertiesProvider, reportName);
         this.indexer = indexer;
     }
@@ -58,17 +62,17 @@ public class ScanIndexTask extends DefaultTask<Long> implements UserTask {
 
     private Long slicedScroll(int sliceNum) {
         Indexer.Searcher search = indexer.search(singletonList(projectName), Document.class).withSource("path").limit(scrollSize);
-        List<? extends Entity> docsToProcess = new ArrayList<>();
         long nbProcessed = 0;
-        do {
-            try {
-                docsToProcess = search.scroll(sliceNum, scrollSlices).collect(toList());
+        try (PrefetchingScroll scroll = new PrefetchingScroll(search, sliceNum, scrollSlices)) {
+            Iterator<List<? extends Entity>> pages = scroll.pages().iterator();
+            while (pages.hasNext()) {
+                List<? extends Entity> docsToProcess = pages.next();
                 reportMap.putAll(docsToProcess.stream().map(d -> ((Document) d).getPath()).collect(toMap(p -> p, p -> new Report(ExtractionStatus.SUCCESS), (a, b) -> b)));
                 nbProcessed += docsToProcess.size();
-            } catch (IOException e) {
-                logger.error("error in slice {}", sliceNum, e);
             }
-        } while (docsToProcess.size() != 0);
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("error in slice {}", sliceNum, e);
+        }
         return nbProcessed;
     }
 
@@ -76,4 +80,12 @@ public class ScanIndexTask extends DefaultTask<Long> implements UserTask {
     public User getUser() {
         return user;
     }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.INGEST;}
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return new TaskRequest(name, TaskRequest.Type.SCAN_INDEX, user, singletonMap("reportName", reportName));
+    }
 }
@@ -11,17 +11,20 @@ import org.icij.task.Options;
 import org.icij.task.annotation.OptionsClass;
 
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.Properties;
 
 @OptionsClass(Scanner.class)
-public class ScanTask extends PipelineTask {
+public class ScanTask extends PipelineTask implements RemoteTask {
     private final Scanner scanner;
     private final Path path;
+    private final Properties properties;
 
     @Inject
     public ScanTask(final DocumentCollectionFactory factory, @Assisted User user, @Assisted String queueName, @Assisted Path path, @Assisted final Properties properties) {
         super(DatashareCli.Stage.SCAN, user, queueName, factory, new PropertiesProvider(properties));
         this.path = path;
+        this.properties = properties;
         Options<String> allOptions = options().createFrom(Options.from(properties));
         scanner = new Scanner(queue).configure(allOptions);
     }
@@ -34,4 +37,22 @@ public class ScanTask extends PipelineTask {
         queue.close();
         return scanned;
     }
+
+    @Override
+    public TaskLane getLane() { return TaskLane.INTERACTIVE;}
+
+    @Override
+    public TaskRequest toRequest(String name) {
+        return request(name, user, queueName, path, properties);
+    }
+
+    /**
+     * @return the request of the scan task created by the TaskFactory with these arguments
+     */
+    public static TaskRequest request(String name, User user, String queueName, Path path, Properties properties) {
+        return new TaskRequest(name, TaskRequest.Type.SCAN, user, new HashMap<String, String>() {{
+            put("queueName", queueName);
+            put("path", path.toString());
+        }}, properties);
+    }
 }
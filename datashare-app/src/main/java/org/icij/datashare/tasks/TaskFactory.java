@@ -32,4 +32,6 @@ public interface TaskFactory {
     IndexTask createIndexTask(final User user, String queueName, final Properties properties);
 
     DeduplicateTask createDeduplicateTask(User user, String queueName);
+    DeleteProjectTask createDeleteProjectTask(User user, String projectId);
+    ReindexTask createReindexTask(User user, String indexName);
 }
@@ -0,0 +1,28 @@
+package org.icij.datashare.tasks;
+
+/**
+ * Lanes of {@link TaskManagerMemory}. Each lane has its own threads and queue, so that long
+ * extractions don't delay NLP, batch searches/downloads or short maintenance tasks
+ * (api keys, project deletion). The interactive lane runs the short tasks that feed the long
+ * ones (scan, resume NLP), so that they aren't queued behind the tasks waiting for them.
+ * Tasks declare their lane with {@link LaneTask}, the other ones are run in the maintenance lane.
+ */
+public enum TaskLane {
+    INGEST, NLP, BATCH, INTERACTIVE, MAINTENANCE;
+
+    /**
+     * @return the property with the number of threads of the lane, for example taskIngestThreads
+     */
+    public String threadsProperty() {
+        return "task" + name().charAt(0) + name().substring(1).toLowerCase() + "Threads";
+    }
+
+    static TaskLane of(Object task) {
+        TaskLane lane = task instanceof LaneTask ? ((LaneTask) task).getLane() : null;
+        return lane == null ? MAINTENANCE : lane;
+    }
+
+    static int priorityOf(Object task) {
+        return task instanceof LaneTask ? ((LaneTask) task).getPriority() : LaneTask.DEFAULT_PRIORITY;
+    }
+}
@@ -3,12 +3,24 @@ package org.icij.datashare.tasks;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public interface TaskManager extends TaskRepository {
     TaskView<Void> startTask(Runnable task);
     <V> TaskView<V> startTask(Callable<V> task, Runnable callback);
     <V> TaskView<V> startTask(Callable<V> task, Map<String, Object> properties);
     <V> TaskView<V> startTask(Callable<V> task);
+
+    /**
+     * starts the Callable or Runnable task given by the supplier. The task managers running the tasks in
+     * other processes send the request instead, without creating the task on this node.
+     */
+    @SuppressWarnings("unchecked")
+    default <V> TaskView<V> startTask(TaskRequest request, Supplier<?> task) {
+        Object created = task.get();
+        return created instanceof Callable ? startTask((Callable<V>) created) : (TaskView<V>) startTask((Runnable) created);
+    }
+
     boolean stopTask(String taskName);
     <V> TaskView<?> clearTask(String taskName);
     boolean shutdownAndAwaitTermination(int timeout, TimeUnit timeUnit) throws InterruptedException;
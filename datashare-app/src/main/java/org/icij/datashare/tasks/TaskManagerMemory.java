@@ -1,37 +1,57 @@
 package org.icij.datashare.tasks;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.user.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
-import static java.lang.Integer.parseInt;
-import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Runs the tasks in the threads of this process. Tasks are dispatched to the {@link TaskLane}
+ * they declare, each lane having its own thread pool and priority queue:
+ * <ul>
+ *     <li>taskIngestThreads and taskNlpThreads default to parallelism (or the number of processors)</li>
+ *     <li>taskBatchThreads, taskInteractiveThreads and taskMaintenanceThreads default to 2</li>
+ *     <li>taskQueueSize is the maximum number of tasks waiting in a lane (0, the default, for no limit)</li>
+ * </ul>
+ */
 public class TaskManagerMemory implements TaskManager {
+    public static final String TASK_QUEUE_SIZE_PROP = "taskQueueSize";
+    private static final int DEFAULT_SMALL_LANE_THREADS = 2;
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final ExecutorService executor;
+    private final Map<TaskLane, Lane> lanes = new EnumMap<>(TaskLane.class);
     private final ConcurrentMap<String, TaskView<?>> tasks = new ConcurrentHashMap<>();
+    private final Map<String, Long> taskSequences = new ConcurrentHashMap<>();
+    private final AtomicLong taskSequence = new AtomicLong();
 
     @Inject
     public TaskManagerMemory(final PropertiesProvider provider) {
-        Optional<String> parallelism = provider.get("parallelism");
-        executor = parallelism.map(s -> newFixedThreadPool(parseInt(s))).
-                   orElseGet( () -> newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        int parallelism = provider.get("parallelism").map(Integer::parseInt).orElse(Runtime.getRuntime().availableProcessors());
+        int queueSize = provider.get(TASK_QUEUE_SIZE_PROP).map(Integer::parseInt).orElse(0);
+        for (TaskLane lane : TaskLane.values()) {
+            int defaultThreads = lane == TaskLane.INGEST || lane == TaskLane.NLP ? parallelism : DEFAULT_SMALL_LANE_THREADS;
+            lanes.put(lane, new Lane(lane, provider.get(lane.threadsProperty()).map(Integer::parseInt).orElse(defaultThreads), queueSize));
+        }
     }
 
     @Override
     public TaskView<Void> startTask(final Runnable task) {
         MonitorableFutureTask<Void> futureTask = new MonitorableFutureTask<>(task, null);
         TaskView<Void> taskView = new TaskView<>(futureTask);
-        executor.submit(futureTask);
+        execute(futureTask);
         save(taskView);
         return taskView;
     }
@@ -42,7 +62,7 @@ public class TaskManagerMemory implements TaskManager {
             @Override protected void done() { callback.run();}
         };
         TaskView<V> taskView = new TaskView<>(futureTask);
-        executor.submit(futureTask);
+        execute(futureTask);
         save(taskView);
         return taskView;
     }
@@ -51,7 +71,7 @@ public class TaskManagerMemory implements TaskManager {
     public <V> TaskView<V> startTask(final Callable<V> task, Map<String, Object> properties) {
         MonitorableFutureTask<V> futureTask = new MonitorableFutureTask<V>(task, properties);
         TaskView<V> taskView = new TaskView<>(futureTask);
-        executor.submit(futureTask);
+        execute(futureTask);
         save(taskView);
         return taskView;
     }
@@ -60,11 +80,15 @@ public class TaskManagerMemory implements TaskManager {
     public <V> TaskView<V> startTask(final Callable<V> task) {
         MonitorableFutureTask<V> futureTask = new MonitorableFutureTask<>(task);
         TaskView<V> taskView = new TaskView<>(futureTask);
-        executor.submit(futureTask);
+        execute(futureTask);
         save(taskView);
         return taskView;
     }
 
+    private void execute(MonitorableFutureTask<?> futureTask) {
+        lanes.get(futureTask.getLane()).execute(futureTask);
+    }
+
     public TaskView<?> get(final String taskName) {
         return tasks.get(taskName);
     }
@@ -74,19 +98,38 @@ public class TaskManagerMemory implements TaskManager {
         return new LinkedList<>(tasks.values());
     }
 
+    @Override
+    public List<TaskView<?>> get(User user, Pattern namePattern, int from, int size) {
+        return tasks.values().stream()
+                .filter(t -> user.equals(t.getUser()))
+                .filter(t -> namePattern.matcher(t.name).matches())
+                .sorted(Comparator.comparing((TaskView<?> t) -> taskSequences.getOrDefault(t.name, 0L)).reversed())
+                .skip(from)
+                .limit(size > 0 ? size : Long.MAX_VALUE)
+                .collect(toList());
+    }
+
     @Override
     public <V> Void save(TaskView<V> task) {
         tasks.put(task.name, task);
+        taskSequences.computeIfAbsent(task.name, name -> taskSequence.incrementAndGet());
         return null;
     }
 
     public List<Runnable> shutdownNow() {
-        return executor.shutdownNow();
+        List<Runnable> queued = new ArrayList<>();
+        lanes.values().forEach(lane -> queued.addAll(lane.executor.shutdownNow()));
+        return queued;
     }
 
     public boolean shutdownAndAwaitTermination(int timeout, TimeUnit timeUnit) throws InterruptedException {
-        executor.shutdown();
-        return executor.awaitTermination(timeout, timeUnit);
+        lanes.values().forEach(lane -> lane.executor.shutdown());
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        boolean terminated = true;
+        for (Lane lane : lanes.values()) {
+            terminated &= lane.executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        return terminated;
     }
 
     public List<TaskView<?>> waitTasksToBeDone(int timeout, TimeUnit timeUnit) {
@@ -100,16 +143,74 @@ public class TaskManagerMemory implements TaskManager {
     }
 
     public List<TaskView<?>> clearDoneTasks() {
-        return tasks.values().stream().filter(taskView -> taskView.getState() != TaskView.State.RUNNING).map(t -> tasks.remove(t.name)).collect(toList());
+        return tasks.values().stream().filter(taskView -> !taskView.isActive()).map(t -> clearTask(t.name)).collect(toList());
     }
 
     @Override
     public TaskView<?> clearTask(String taskName) {
+        taskSequences.remove(taskName);
         return tasks.remove(taskName);
     }
 
     public boolean stopTask(String taskName) {
+        TaskView<?> taskView = tasks.get(taskName);
+        if (taskView == null) {
+            return false;
+        }
         logger.info("cancelling task {}", taskName);
-        return tasks.get(taskName).task.cancel(true);
+        MonitorableFutureTask<?> task = taskView.task;
+        boolean cancelled = task.cancel(true);
+        lanes.get(task.getLane()).remove(task);
+        return cancelled;
+    }
+
+    private static class Lane {
+        private final TaskLane name;
+        private final int queueSize;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong sequence = new AtomicLong();
+
+        Lane(TaskLane name, int threads, int queueSize) {
+            this.name = name;
+            this.queueSize = queueSize;
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                    new ThreadFactoryBuilder().setNameFormat("task-" + name.name().toLowerCase() + "-%d").build());
+        }
+
+        /**
+         * @throws RejectedExecutionException if taskQueueSize tasks are already waiting in the lane
+         */
+        synchronized void execute(MonitorableFutureTask<?> task) {
+            if (queueSize > 0 && executor.getQueue().size() >= queueSize) {
+                throw new RejectedExecutionException(String.format("%s lane queue is full (%d tasks)", name, queueSize));
+            }
+            executor.execute(new QueuedTask(task, sequence.getAndIncrement()));
+        }
+
+        void remove(MonitorableFutureTask<?> task) {
+            executor.getQueue().removeIf(queued -> ((QueuedTask) queued).task == task);
+        }
+    }
+
+    private static class QueuedTask implements Runnable, Comparable<QueuedTask> {
+        private final MonitorableFutureTask<?> task;
+        private final int priority;
+        private final long sequence;
+
+        QueuedTask(MonitorableFutureTask<?> task, long sequence) {
+            this.task = task;
+            this.priority = task.getPriority();
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(QueuedTask other) {
+            return priority != other.priority ? Integer.compare(other.priority, priority) : Long.compare(sequence, other.sequence);
+        }
     }
 }
@@ -11,17 +11,27 @@ import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
 import org.icij.datashare.PropertiesProvider;
 import org.icij.datashare.batch.BatchDownload;
+import org.icij.datashare.user.User;
 import org.icij.extract.redis.RedissonClientFactory;
 import org.icij.task.Options;
 import org.redisson.Redisson;
 import org.redisson.RedissonMap;
+import org.redisson.api.RBlockingDeque;
+import org.redisson.api.RDeque;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RTopic;
 import org.redisson.api.RedissonClient;
 import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.StringCodec;
 import org.redisson.client.handler.State;
 import org.redisson.client.protocol.Decoder;
 import org.redisson.client.protocol.Encoder;
 import org.redisson.command.CommandSyncService;
 import org.redisson.liveobject.core.RedissonObjectBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -29,18 +39,64 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
+import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toList;
 import static org.elasticsearch.painless.api.Augmentation.asList;
 
+/**
+ * Task manager of the server mode: the task views are stored in a redis map shared by the datashare nodes.
+ *
+ * Tasks implementing {@link RemoteTask} are sent as {@link TaskRequest} (the queue holds the task names, the
+ * requests are in a map), and they are run by the {@link TaskWorkerLoop} of any node with a free thread.
+ * A worker moves the names it takes from the queue to its own processing list, until the RUNNING view of the
+ * task is saved: the processing lists of the workers that are lost (whose worker lease has expired) are queued
+ * again, so a task taken by a worker that dies before running it is not left QUEUED forever.
+ * A worker holds a lease on the tasks it runs, that it renews every taskLeaseMillis / 3. When a lease expires
+ * (the worker is lost), the task is queued again, up to taskMaxAttempts times. Queued tasks are stopped by
+ * removing them from the queue, running tasks with a message to their worker.
+ *
+ * The task names are also indexed by user (sorted by creation time) so that a page of the tasks of a user
+ * is read without decoding the other views. Finished tasks are indexed by end time, and removed after
+ * taskRetentionHours.
+ */
 public class TaskManagerRedis implements TaskManager {
+    public static final String TASK_LEASE_MILLIS_PROP = "taskLeaseMillis";
+    public static final String TASK_MAX_ATTEMPTS_PROP = "taskMaxAttempts";
+    public static final String TASK_RETENTION_HOURS_PROP = "taskRetentionHours";
+    private static final long PURGE_INTERVAL_MILLIS = 60 * 1000;
+    private static final String REQUEUE_LEASE = "requeue";
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final RedissonClient redissonClient;
     private final RedissonMap<String, TaskView<?>> tasks;
+    private final RBlockingDeque<String> taskQueue;
+    private final RMap<String, TaskRequest> requests;
+    private final RMapCache<String, String> leases;
+    private final RMapCache<String, String> workers;
+    private final RTopic cancelTopic;
+    private final RScoredSortedSet<String> finishedTasks;
+    private final String taskMapName;
     private final BlockingQueue<BatchDownload> batchDownloadQueue;
+    private final long leaseMillis;
+    private final int maxAttempts;
+    private final long retentionMillis;
+    private volatile long lastPurge = 0;
 
     @Inject
     public TaskManagerRedis(PropertiesProvider propertiesProvider, BlockingQueue<BatchDownload> batchDownloadQueue) {
@@ -48,15 +104,28 @@ public class TaskManagerRedis implements TaskManager {
     }
 
     TaskManagerRedis(PropertiesProvider propertiesProvider, String taskMapName, BlockingQueue<BatchDownload> batchDownloadQueue) {
-        RedissonClient redissonClient = new RedissonClientFactory().withOptions(Options.from(propertiesProvider.getProperties())).create();
+        this.redissonClient = new RedissonClientFactory().withOptions(Options.from(propertiesProvider.getProperties())).create();
         CommandSyncService commandSyncService = new CommandSyncService(((Redisson) redissonClient).getConnectionManager(), new RedissonObjectBuilder(redissonClient));
-        this.tasks = new RedissonMap<>(new TaskViewCodec(), commandSyncService, taskMapName, redissonClient, null, null);
+        TaskViewCodec codec = new TaskViewCodec();
+        this.tasks = new RedissonMap<>(codec, commandSyncService, taskMapName, redissonClient, null, null);
+        this.taskQueue = redissonClient.getBlockingDeque(taskMapName + ":queue", StringCodec.INSTANCE);
+        this.requests = redissonClient.getMap(taskMapName + ":requests", codec);
+        this.leases = redissonClient.getMapCache(taskMapName + ":leases", StringCodec.INSTANCE);
+        this.workers = redissonClient.getMapCache(taskMapName + ":workers", StringCodec.INSTANCE);
+        this.cancelTopic = redissonClient.getTopic(taskMapName + ":cancel", StringCodec.INSTANCE);
+        this.finishedTasks = redissonClient.getScoredSortedSet(taskMapName + ":finished", StringCodec.INSTANCE);
+        this.taskMapName = taskMapName;
         this.batchDownloadQueue = batchDownloadQueue;
+        this.leaseMillis = propertiesProvider.get(TASK_LEASE_MILLIS_PROP).map(Long::parseLong).orElse(30000L);
+        this.maxAttempts = propertiesProvider.get(TASK_MAX_ATTEMPTS_PROP).map(Integer::parseInt).orElse(3);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(propertiesProvider.get(TASK_RETENTION_HOURS_PROP).map(Long::parseLong).orElse(168L));
+        indexTasks();
     }
 
     @Override
     public <V> Void save(TaskView<V> task) {
-        tasks.put(task.name, task);
+        tasks.fastPut(task.name, task);
+        index(task);
         return null;
     }
 
@@ -70,28 +139,277 @@ public class TaskManagerRedis implements TaskManager {
         return asList(tasks.values());
     }
 
+    @Override
+    public List<TaskView<?>> get(User user, Pattern namePattern, int from, int size) {
+        purgeExpiredTasks();
+        RScoredSortedSet<String> userTasks = userTasks(user);
+        List<String> names = userTasks.valueRangeReversed(0, -1).stream()
+                .filter(name -> namePattern.matcher(name).matches())
+                .skip(from)
+                .limit(size > 0 ? size : Long.MAX_VALUE)
+                .collect(toList());
+        Map<String, TaskView<?>> views = tasks.getAll(new HashSet<>(names));
+        List<TaskView<?>> page = new ArrayList<>(names.size());
+        for (String name : names) {
+            TaskView<?> view = views.get(name);
+            if (view == null) {
+                userTasks.remove(name);
+            } else {
+                page.add(view);
+            }
+        }
+        return page;
+    }
+
     @Override
     public List<TaskView<?>> clearDoneTasks() {
-        return tasks.values().stream().filter(f -> f.getState() != TaskView.State.RUNNING).map(t -> tasks.remove(t.name)).collect(toList());
+        return finishedTasks.readAll().stream().map(this::clearTask).filter(Objects::nonNull).collect(toList());
     }
+
     @Override
     public TaskView<?> clearTask(String taskName) {
-        return tasks.remove(taskName);
+        TaskView<?> taskView = tasks.remove(taskName);
+        finishedTasks.remove(taskName);
+        if (taskView != null) {
+            userTasks(taskView.getUser()).remove(taskName);
+        }
+        return taskView;
+    }
+
+    /**
+     * removes the tasks finished for more than taskRetentionHours. It is run at most once a minute
+     * when tasks are listed.
+     * @return the names of the removed tasks
+     */
+    List<String> purgeExpiredTasks() {
+        long now = System.currentTimeMillis();
+        if (retentionMillis <= 0 || now - lastPurge < PURGE_INTERVAL_MILLIS) {
+            return new ArrayList<>();
+        }
+        lastPurge = now;
+        List<String> expired = new ArrayList<>(finishedTasks.valueRange(0, true, now - retentionMillis, true));
+        expired.forEach(this::clearTask);
+        if (!expired.isEmpty()) {
+            logger.info("removed {} task(s) finished for more than {}h", expired.size(), TimeUnit.MILLISECONDS.toHours(retentionMillis));
+        }
+        return expired;
+    }
+
+    private void index(TaskView<?> task) {
+        long now = System.currentTimeMillis();
+        userTasks(task.getUser()).tryAdd(now, task.name);
+        if (!task.isActive()) {
+            finishedTasks.tryAdd(now, task.name);
+        }
+    }
+
+    /**
+     * indexes the tasks saved before the indexes existed, once for all the nodes.
+     */
+    private void indexTasks() {
+        if (redissonClient.getBucket(taskMapName + ":indexed", StringCodec.INSTANCE).trySet("true")) {
+            tasks.values().forEach(this::index);
+        }
+    }
+
+    private RScoredSortedSet<String> userTasks(User user) {
+        return redissonClient.getScoredSortedSet(taskMapName + ":user:" + ofNullable(user).orElse(User.nullUser()).id, StringCodec.INSTANCE);
     }
 
-    @Override public TaskView<Void> startTask(Runnable task) { throw new IllegalStateException("not implemented"); }
+    @Override public TaskView<Void> startTask(Runnable task) { return startRemoteTask(task, new HashMap<>()); }
     @Override public <V> TaskView<V> startTask(Callable<V> task, Runnable callback) { throw new IllegalStateException("not implemented"); }
     @Override public <V> TaskView<V> startTask(Callable<V> task, Map<String, Object> properties) {
+        if (!properties.containsKey("batchDownload")) {
+            return startRemoteTask(task, properties);
+        }
         MonitorableFutureTask<V> futureTask = new MonitorableFutureTask<>(task, properties);
         TaskView<V> taskView = new TaskView<>(futureTask);
         save(taskView);
         batchDownloadQueue.add((BatchDownload) properties.get("batchDownload"));
         return taskView;
     }
-    @Override public <V> TaskView<V> startTask(Callable<V> task) { throw new IllegalStateException("not implemented"); }
-    @Override public boolean stopTask(String taskName) { throw new IllegalStateException("not implemented"); }
-    @Override public boolean shutdownAndAwaitTermination(int timeout, TimeUnit timeUnit) throws InterruptedException { throw new IllegalStateException("not implemented"); }
+    @Override public <V> TaskView<V> startTask(Callable<V> task) { return startRemoteTask(task, new HashMap<>()); }
+    @Override public <V> TaskView<V> startTask(TaskRequest request, Supplier<?> task) { return startRemoteTask(request, new HashMap<>()); }
+
+    /**
+     * @return true if the task was queued and has been removed from the queue, or if it is running and
+     * its worker has been asked to cancel it
+     */
+    @Override
+    public boolean stopTask(String taskName) {
+        TaskRequest request = requests.get(taskName);
+        if (request == null) {
+            return false;
+        }
+        logger.info("cancelling task {}", taskName);
+        if (taskQueue.remove(taskName)) {
+            requests.remove(taskName);
+            TaskView<?> taskView = tasks.get(taskName);
+            save(new TaskView<>(taskName, TaskView.State.CANCELLED, 0, request.user, null, taskView == null ? null : taskView.properties));
+            return true;
+        }
+        return leases.containsKey(taskName) && cancelTopic.publish(taskName) > 0;
+    }
+
+    /**
+     * waits for the queued and running tasks to be done, then closes the redis connection.
+     */
+    @Override
+    public boolean shutdownAndAwaitTermination(int timeout, TimeUnit timeUnit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeUnit.toMillis(timeout);
+        boolean done;
+        while (!(done = tasks.values().stream().noneMatch(TaskView::isActive)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(Math.min(leaseMillis / 3, 1000));
+        }
+        redissonClient.shutdown();
+        return done;
+    }
+
+    private <V> TaskView<V> startRemoteTask(Object task, Map<String, Object> properties) {
+        if (!(task instanceof RemoteTask)) {
+            throw new IllegalArgumentException(task + " cannot be run by a task worker");
+        }
+        return startRemoteTask(((RemoteTask) task).toRequest(task.toString()), properties);
+    }
+
+    private <V> TaskView<V> startRemoteTask(TaskRequest request, Map<String, Object> properties) {
+        TaskView<V> taskView = new TaskView<>(request.name, TaskView.State.QUEUED, 0, request.user, null, properties.isEmpty() ? null : properties);
+        save(taskView);
+        requests.put(request.name, request);
+        taskQueue.addFirst(request.name);
+        return taskView;
+    }
+
+    /**
+     * moves the next queued task name to the processing list of the worker (BRPOPLPUSH), where it stays
+     * until {@link #started(String, String)} is called.
+     * @return the next queued request, or null if there is none after the timeout
+     */
+    TaskRequest pollRequest(String workerId, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        String taskName = taskQueue.pollLastAndOfferFirstTo(processingName(workerId), timeout, timeUnit);
+        if (taskName == null) {
+            return null;
+        }
+        TaskRequest request = requests.get(taskName);
+        if (request == null) {
+            started(taskName, workerId);
+        }
+        return request;
+    }
+
+    /**
+     * to be called once the RUNNING (or ERROR) view of the task has been saved, and its lease taken
+     */
+    void started(String taskName, String workerId) {
+        processing(workerId).remove(taskName);
+    }
+
+    /**
+     * registers the worker as alive for taskLeaseMillis, to be renewed with the leases of its tasks
+     */
+    void register(String workerId) {
+        workers.fastPut(workerId, workerId, leaseMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void unregister(String workerId) {
+        workers.remove(workerId);
+    }
+
+    void lease(String taskName, String workerId) {
+        leases.fastPut(taskName, workerId, leaseMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * to be called once the final view of the task has been saved
+     */
+    void release(String taskName) {
+        requests.remove(taskName);
+        leases.remove(taskName);
+    }
+
+    long getLeaseMillis() { return leaseMillis;}
+
+    int addCancelListener(Consumer<String> listener) {
+        return cancelTopic.addListener(String.class, (channel, taskName) -> listener.accept(taskName));
+    }
+
+    void removeCancelListener(int listenerId) {
+        cancelTopic.removeListener(listenerId);
+    }
+
+    /**
+     * queues again the tasks taken by lost workers before they were running, and the running tasks whose
+     * lease has expired, or sets them in error after taskMaxAttempts.
+     * @return the names of these tasks
+     */
+    List<String> requeueLostTasks() {
+        List<String> lostTasks = requeueLostWorkerTasks();
+        for (String taskName : requests.keySet()) {
+            TaskView<?> taskView = tasks.get(taskName);
+            if (taskView == null || taskView.getState() != TaskView.State.RUNNING || leases.containsKey(taskName) ||
+                    leases.putIfAbsent(taskName, REQUEUE_LEASE, leaseMillis, TimeUnit.MILLISECONDS) != null) {
+                continue;
+            }
+            TaskRequest request = requests.get(taskName);
+            taskView = tasks.get(taskName);
+            if (request != null && taskView != null && taskView.getState() == TaskView.State.RUNNING) {
+                if (request.attempts + 1 < maxAttempts) {
+                    logger.warn("lease of {} has expired, queuing it again", request);
+                    TaskRequest retry = request.retry();
+                    requests.put(taskName, retry);
+                    save(new TaskView<>(taskName, TaskView.State.QUEUED, 0, request.user, null, taskView.properties));
+                    taskQueue.addFirst(taskName);
+                } else {
+                    logger.error("lease of {} has expired, giving up after {} attempts", request, maxAttempts);
+                    TaskView<?> errorView = new TaskView<>(taskName, TaskView.State.ERROR, taskView.getProgress(), request.user, null, taskView.properties);
+                    errorView.error = "task worker lost after " + maxAttempts + " attempts";
+                    save(errorView);
+                    requests.remove(taskName);
+                }
+                lostTasks.add(taskName);
+            }
+            leases.remove(taskName, REQUEUE_LEASE);
+        }
+        return lostTasks;
+    }
 
+    /**
+     * queues again the names left in the processing lists of the workers that are not registered anymore.
+     * The names are popped one by one so that each one is queued again by a single node.
+     */
+    private List<String> requeueLostWorkerTasks() {
+        List<String> lostTasks = new ArrayList<>();
+        String prefix = processingName("");
+        for (String processingName : redissonClient.getKeys().getKeysByPattern(prefix + "*")) {
+            String workerId = processingName.substring(prefix.length());
+            if (workers.containsKey(workerId)) {
+                continue;
+            }
+            RDeque<String> lostProcessing = processing(workerId);
+            for (String taskName = lostProcessing.pollLast(); taskName != null; taskName = lostProcessing.pollLast()) {
+                TaskView<?> taskView = tasks.get(taskName);
+                if (requests.containsKey(taskName) && taskView != null && taskView.getState() == TaskView.State.QUEUED) {
+                    logger.warn("worker {} has been lost before running {}, queuing it again", workerId, taskName);
+                    taskQueue.addFirst(taskName);
+                    lostTasks.add(taskName);
+                }
+            }
+        }
+        return lostTasks;
+    }
+
+    private RDeque<String> processing(String workerId) {
+        return redissonClient.getDeque(processingName(workerId), StringCodec.INSTANCE);
+    }
+
+    private String processingName(String workerId) {
+        return taskMapName + ":processing:" + workerId;
+    }
+
+    /**
+     * JSON with the class names of the values, deflated: the class names make most of the size of a view
+     * and are repeated. Values saved uncompressed by previous versions are still read.
+     */
     static class TaskViewCodec extends BaseCodec {
         private final Encoder keyEncoder;
         private final Decoder<Object> keyDecoder;
@@ -151,6 +469,11 @@ public class TaskManagerRedis implements TaskManager {
                             if (t.getRawClass() == XMLGregorianCalendar.class) {
                                 return false;
                             }
+                            // maps and paths declared with their interface (user details, batch download file)
+                            // are unmodifiable maps or UnixPath that cannot be created from their class name
+                            if (t.isInterface() && (t.isMapLikeType() || t.getRawClass() == Path.class)) {
+                                return false;
+                            }
                             return !t.isFinal(); // includes Object.class
                         default:
                             // case JAVA_LANG_OBJECT:
@@ -169,7 +492,12 @@ public class TaskManagerRedis implements TaskManager {
                 ByteBuf out = ByteBufAllocator.DEFAULT.buffer();
                 try {
                     ByteBufOutputStream os = new ByteBufOutputStream(out);
-                    mapObjectMapper.writeValue((OutputStream) os, in);
+                    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                    try (OutputStream deflated = new DeflaterOutputStream(os, deflater)) {
+                        mapObjectMapper.writeValue(deflated, in);
+                    } finally {
+                        deflater.end();
+                    }
                     return os.buffer();
                 } catch (IOException e) {
                     out.release();
@@ -191,7 +519,11 @@ public class TaskManagerRedis implements TaskManager {
         private final Decoder<Object> decoder = new Decoder<Object>() {
             @Override
             public Object decode(ByteBuf buf, State state) throws IOException {
-                return mapObjectMapper.readValue((InputStream) new ByteBufInputStream(buf), Object.class);
+                InputStream in = new ByteBufInputStream(buf);
+                if (buf.isReadable() && buf.getByte(buf.readerIndex()) != '{') {
+                    in = new InflaterInputStream(in);
+                }
+                return mapObjectMapper.readValue(in, Object.class);
             }
         };
 
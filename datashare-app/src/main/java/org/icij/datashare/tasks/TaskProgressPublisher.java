@@ -0,0 +1,175 @@
+package org.icij.datashare.tasks;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.user.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Pushes the changes of the tasks to their users. A single thread reads the tasks of the subscribed
+ * users every taskProgressIntervalMillis (default 1000), whatever the number of subscribers, so the
+ * progress of a task (a redis call for an index task) is computed once per interval. Subscribers
+ * receive the views of the tasks whose state or progress has changed, coalesced by task: a slow
+ * subscriber only gets the last view of each task.
+ */
+@Singleton
+public class TaskProgressPublisher {
+    public static final String TASK_PROGRESS_INTERVAL_MILLIS_PROP = "taskProgressIntervalMillis";
+    static final long KEEP_ALIVE_MILLIS = 15 * 1000;
+    private static final Pattern ALL_TASKS = Pattern.compile(".*");
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final TaskManager taskManager;
+    private final long intervalMillis;
+    private final long keepAliveMillis;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Map<String, TaskView<?>> lastViews = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("task-progress-%d").setDaemon(true).build());
+    private ScheduledFuture<?> publishing;
+
+    @Inject
+    public TaskProgressPublisher(TaskManager taskManager, PropertiesProvider propertiesProvider) {
+        this(taskManager, propertiesProvider.get(TASK_PROGRESS_INTERVAL_MILLIS_PROP).map(Long::parseLong).orElse(1000L), KEEP_ALIVE_MILLIS);
+    }
+
+    TaskProgressPublisher(TaskManager taskManager, long intervalMillis, long keepAliveMillis) {
+        this.taskManager = taskManager;
+        this.intervalMillis = intervalMillis;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * @return a subscription that first gives the current views of the user tasks, then their changes.
+     * It must be closed (closing its stream closes it).
+     */
+    public Subscription subscribe(User user) {
+        Subscription subscription = new Subscription(user);
+        subscription.offer(taskManager.get(user, ALL_TASKS, 0, 0).stream()
+                .map(view -> lastViews.computeIfAbsent(view.name, name -> view.snapshot())).collect(toList()));
+        subscriptions.add(subscription);
+        startPublishing();
+        return subscription;
+    }
+
+    int getSubscriptionCount() { return subscriptions.size();}
+
+    void publish() {
+        try {
+            Set<String> taskNames = new HashSet<>();
+            for (User user : subscriptions.stream().map(s -> s.user).collect(toSet())) {
+                List<TaskView<?>> changes = new ArrayList<>();
+                for (TaskView<?> view : taskManager.get(user, ALL_TASKS, 0, 0)) {
+                    taskNames.add(view.name);
+                    TaskView<?> lastView = lastViews.get(view.name);
+                    if (lastView != null && !lastView.isActive()) {
+                        continue;
+                    }
+                    TaskView<?> currentView = view.snapshot();
+                    if (lastView == null || lastView.getState() != currentView.getState() || lastView.getProgress() != currentView.getProgress()) {
+                        lastViews.put(view.name, currentView);
+                        changes.add(currentView);
+                    }
+                }
+                if (!changes.isEmpty()) {
+                    subscriptions.stream().filter(s -> s.user.equals(user)).forEach(s -> s.offer(changes));
+                }
+            }
+            lastViews.keySet().retainAll(taskNames);
+        } catch (RuntimeException e) {
+            logger.error("cannot publish the task changes", e);
+        }
+    }
+
+    private synchronized void startPublishing() {
+        if (publishing == null) {
+            publishing = executor.scheduleAtFixedRate(this::publish, intervalMillis, intervalMillis, MILLISECONDS);
+        }
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+        if (subscriptions.isEmpty() && publishing != null) {
+            publishing.cancel(false);
+            publishing = null;
+            lastViews.clear();
+        }
+    }
+
+    /**
+     * Iterator over the changes of the tasks of a user. {@link #next()} blocks until there are changes
+     * and returns an empty list every keep alive interval, so that closed connections are detected.
+     */
+    public class Subscription implements Iterator<List<TaskView<?>>>, AutoCloseable {
+        private final User user;
+        private final Map<String, TaskView<?>> pending = new LinkedHashMap<>();
+        private boolean closed = false;
+
+        private Subscription(User user) {
+            this.user = user;
+        }
+
+        synchronized void offer(Collection<TaskView<?>> views) {
+            views.forEach(view -> pending.put(view.name, view));
+            notifyAll();
+        }
+
+        @Override
+        public synchronized boolean hasNext() {
+            return !closed;
+        }
+
+        @Override
+        public synchronized List<TaskView<?>> next() {
+            long deadline = System.currentTimeMillis() + keepAliveMillis;
+            try {
+                for (long wait = keepAliveMillis; pending.isEmpty() && !closed && wait > 0; wait = deadline - System.currentTimeMillis()) {
+                    wait(wait);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+            List<TaskView<?>> views = new ArrayList<>(pending.values());
+            pending.clear();
+            return views;
+        }
+
+        public Stream<List<TaskView<?>>> stream() {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false).onClose(this::close);
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            unsubscribe(this);
+        }
+    }
+}
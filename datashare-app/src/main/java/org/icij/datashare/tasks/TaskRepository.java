@@ -1,10 +1,21 @@
 package org.icij.datashare.tasks;
 
+import org.icij.datashare.user.User;
+
 import java.util.List;
+import java.util.regex.Pattern;
 
 interface TaskRepository {
     <V> Void save(TaskView<V> task);
     TaskView<?> get(String id);
     List<TaskView<?>> get();
+
+    /**
+     * @param namePattern pattern that the task names must match
+     * @param from index of the first task returned
+     * @param size maximum number of tasks returned, 0 for all of them
+     * @return the tasks of the user, the most recent first
+     */
+    List<TaskView<?>> get(User user, Pattern namePattern, int from, int size);
     List<TaskView<?>> clearDoneTasks();
 }
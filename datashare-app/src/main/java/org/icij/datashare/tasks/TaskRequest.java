@@ -0,0 +1,104 @@
+package org.icij.datashare.tasks;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.icij.datashare.user.User;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.lang.Integer.toHexString;
+import static java.util.Optional.ofNullable;
+
+/**
+ * Description of a {@link RemoteTask} sent through redis by {@link TaskManagerRedis}: the task
+ * objects hold services (indexer, queues...) so they are created again by the worker that runs
+ * them (see {@link TaskWorkerLoop}) with the TaskFactory method matching the type, the
+ * arguments of this method and the properties of the task.
+ */
+public class TaskRequest {
+    public enum Type {SCAN, INDEX, SCAN_INDEX, DEDUPLICATE, NLP, RESUME_NLP, BATCH_SEARCH, DELETE_PROJECT, REINDEX}
+
+    public final String name;
+    public final Type type;
+    public final User user;
+    final Map<String, String> arguments;
+    final Map<String, String> properties;
+    final int attempts;
+
+    public TaskRequest(String name, Type type, User user, Map<String, String> arguments) {
+        this(name, type, user, arguments, new Properties());
+    }
+
+    public TaskRequest(String name, Type type, User user, Map<String, String> arguments, Properties properties) {
+        this(name, type, user, arguments, toMap(properties), 0);
+    }
+
+    @JsonCreator
+    TaskRequest(@JsonProperty("name") String name,
+                @JsonProperty("type") Type type,
+                @JsonProperty("user") User user,
+                @JsonProperty("arguments") Map<String, String> arguments,
+                @JsonProperty("properties") Map<String, String> properties,
+                @JsonProperty("attempts") int attempts) {
+        this.name = name;
+        this.type = type;
+        this.user = ofNullable(user).orElse(User.nullUser());
+        this.arguments = new HashMap<>(ofNullable(arguments).orElse(new HashMap<>()));
+        this.properties = new HashMap<>(ofNullable(properties).orElse(new HashMap<>()));
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return a name for a task that is not created on this node, like the names of the created tasks (class@hash)
+     */
+    public static String newName(String taskClassName) {
+        return taskClassName + "@" + toHexString(ThreadLocalRandom.current().nextInt());
+    }
+
+    /**
+     * @return the same request, for another attempt after the worker running it has been lost
+     */
+    TaskRequest retry() {
+        return new TaskRequest(name, type, user, arguments, properties, attempts + 1);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the argument is missing
+     */
+    String argument(String key) {
+        String value = arguments.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("missing argument %s for %s task %s", key, type, name));
+        }
+        return value;
+    }
+
+    Properties getProperties() {
+        Properties props = new Properties();
+        props.putAll(properties);
+        return props;
+    }
+
+    private static Map<String, String> toMap(Properties properties) {
+        Map<String, String> map = new HashMap<>();
+        ofNullable(properties).ifPresent(p -> p.stringPropertyNames().forEach(key -> map.put(key, p.getProperty(key))));
+        return map;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return name.equals(((TaskRequest) o).name);
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash(name);}
+
+    @Override
+    public String toString() { return type + " task " + name + " (attempt " + (attempts + 1) + ")";}
+}
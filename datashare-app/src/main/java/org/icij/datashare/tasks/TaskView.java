@@ -15,7 +15,7 @@ import java.util.concurrent.ExecutionException;
 public class TaskView<V> {
     final Map<String, Object> properties;
 
-    public enum State {RUNNING, ERROR, DONE, CANCELLED;}
+    public enum State {QUEUED, RUNNING, ERROR, DONE, CANCELLED;}
 
     public final String name;
 
@@ -27,7 +27,14 @@ public class TaskView<V> {
     @JsonIgnore
     final MonitorableFutureTask<V> task;
     public TaskView(MonitorableFutureTask<V> task) {
-        this.name = task.toString();
+        this(task.toString(), task);
+    }
+
+    /**
+     * view of a task created again by a worker, under the name it has been started with
+     */
+    TaskView(String name, MonitorableFutureTask<V> task) {
+        this.name = name;
         this.user = task.getUser();
         this.properties = task.properties.isEmpty() ? null: task.properties;
         this.task = task;
@@ -35,7 +42,7 @@ public class TaskView<V> {
             this.result = getResult();
         } else {
             result = null;
-            state = State.RUNNING;
+            state = task.isStarted() ? State.RUNNING : State.QUEUED;
             progress = task.getProgressRate();
         }
     }
@@ -79,6 +86,17 @@ public class TaskView<V> {
         }
     }
 
+    /**
+     * @return a copy of this view with the current state, progress and result of the task, that
+     * doesn't read the task again when it is serialized
+     */
+    TaskView<V> snapshot() {
+        V currentResult = getResult();
+        TaskView<V> copy = new TaskView<>(name, getState(), getProgress(), user, currentResult, properties);
+        copy.error = error;
+        return copy;
+    }
+
     public double getProgress() {
         if (task != null) {
             return task.isDone() ? 1 : task.getProgressRate();
@@ -89,12 +107,21 @@ public class TaskView<V> {
     public State getState() {
         if (task != null) {
             if (!task.isDone()) {
-                return State.RUNNING;
+                return task.isStarted() ? State.RUNNING : State.QUEUED;
             }
             getResult();
         }
         return state;
     }
 
+    /**
+     * @return true if the task is queued or running
+     */
+    @JsonIgnore
+    public boolean isActive() {
+        State currentState = getState();
+        return currentState == State.QUEUED || currentState == State.RUNNING;
+    }
+
     public User getUser() { return user;}
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+package org.icij.datashare.tasks;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.extension.PipelineRegistry;
+import org.icij.datashare.text.nlp.Pipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Integer.toHexString;
+import static java.util.Arrays.stream;
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Runs the tasks queued by {@link TaskManagerRedis} on this node. A request is only taken from the
+ * queue when one of the taskWorkerThreads threads (default: parallelism) is free, so the tasks go to
+ * the nodes that have capacity.
+ *
+ * The task views are saved when the task starts, at each heartbeat (with the progress) and when it
+ * is done, under the name they have been started with.
+ */
+public class TaskWorkerLoop implements Runnable {
+    public static final String TASK_WORKER_THREADS_PROP = "taskWorkerThreads";
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final TaskManagerRedis manager;
+    private final TaskFactory factory;
+    private final PipelineRegistry pipelineRegistry;
+    private final String workerId;
+    private final Semaphore capacity;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("task-heartbeat-%d").build());
+    private final Map<String, MonitorableFutureTask<?>> running = new ConcurrentHashMap<>();
+    private volatile boolean exitAsked = false;
+
+    @Inject
+    public TaskWorkerLoop(TaskManagerRedis manager, TaskFactory factory, PipelineRegistry pipelineRegistry, PropertiesProvider propertiesProvider) {
+        this.manager = manager;
+        this.factory = factory;
+        this.pipelineRegistry = pipelineRegistry;
+        int threads = propertiesProvider.get(TASK_WORKER_THREADS_PROP).map(Integer::parseInt).orElse(
+                propertiesProvider.get("parallelism").map(Integer::parseInt).orElse(Runtime.getRuntime().availableProcessors()));
+        this.capacity = new Semaphore(threads);
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("task-worker-%d").build());
+        this.workerId = ManagementFactory.getRuntimeMXBean().getName() + "-" + toHexString(hashCode());
+    }
+
+    @Override
+    public void run() {
+        logger.info("task worker {} waiting for tasks with {} thread(s)", workerId, capacity.availablePermits());
+        manager.register(workerId);
+        int cancelListener = manager.addCancelListener(this::cancel);
+        long heartbeatMillis = manager.getLeaseMillis() / 3;
+        ScheduledFuture<?> beat = heartbeat.scheduleAtFixedRate(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        try {
+            while (!exitAsked) {
+                capacity.acquire();
+                TaskRequest request = manager.pollRequest(workerId, 1, TimeUnit.SECONDS);
+                if (request == null) {
+                    capacity.release();
+                } else {
+                    manager.lease(request.name, workerId);
+                    executor.execute(() -> execute(request));
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.info("task worker {} interrupted", workerId);
+            Thread.currentThread().interrupt();
+        } finally {
+            beat.cancel(false);
+            manager.removeCancelListener(cancelListener);
+            manager.unregister(workerId);
+        }
+    }
+
+    /**
+     * stops taking new tasks, the running tasks are finished before {@link #close()} returns.
+     */
+    public void exit() {
+        exitAsked = true;
+    }
+
+    public void close() throws InterruptedException {
+        exit();
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        heartbeat.shutdownNow();
+    }
+
+    void execute(TaskRequest request) {
+        try {
+            MonitorableFutureTask<?> task;
+            try {
+                task = createTask(request);
+            } catch (RuntimeException e) {
+                logger.error("cannot create " + request, e);
+                TaskView<?> errorView = new TaskView<>(request.name, TaskView.State.ERROR, 0, request.user, null, null);
+                errorView.error = e.toString();
+                manager.save(errorView);
+                manager.started(request.name, workerId);
+                return;
+            }
+            running.put(request.name, task);
+            logger.info("running {}", request);
+            manager.save(new TaskView<>(request.name, TaskView.State.RUNNING, 0, request.user, null, null));
+            manager.started(request.name, workerId);
+            task.run();
+            synchronized (task) {
+                manager.save(new TaskView<>(request.name, task));
+            }
+        } finally {
+            running.remove(request.name);
+            manager.release(request.name);
+            capacity.release();
+        }
+    }
+
+    void heartbeat() {
+        try {
+            manager.register(workerId);
+            running.forEach((name, task) -> {
+                manager.lease(name, workerId);
+                synchronized (task) {
+                    if (task.isStarted() && !task.isDone()) {
+                        manager.save(new TaskView<>(name, task));
+                    }
+                }
+            });
+            manager.requeueLostTasks();
+        } catch (RuntimeException e) {
+            logger.error("task worker heartbeat failed", e);
+        }
+    }
+
+    boolean cancel(String taskName) {
+        return ofNullable(running.get(taskName)).map(task -> {
+            logger.info("cancelling task {}", taskName);
+            return task.cancel(true);
+        }).orElse(false);
+    }
+
+    MonitorableFutureTask<?> createTask(TaskRequest request) {
+        switch (request.type) {
+            case SCAN:
+                return new MonitorableFutureTask<>(factory.createScanTask(request.user, request.argument("queueName"),
+                        Paths.get(request.argument("path")), request.getProperties()));
+            case INDEX:
+                return new MonitorableFutureTask<>(factory.createIndexTask(request.user, request.argument("queueName"), request.getProperties()));
+            case SCAN_INDEX:
+                return new MonitorableFutureTask<>(factory.createScanIndexTask(request.user, request.argument("reportName")));
+            case DEDUPLICATE:
+                return new MonitorableFutureTask<>(factory.createDeduplicateTask(request.user, request.argument("queueName")));
+            case NLP:
+                Pipeline pipeline = pipelineRegistry.get(Pipeline.Type.parse(request.argument("pipeline")));
+                return new MonitorableFutureTask<>(factory.createNlpTask(request.user, pipeline, request.getProperties(), () -> {}), null);
+            case RESUME_NLP:
+                Set<Pipeline.Type> pipelines = stream(request.argument("pipelines").split(",")).map(Pipeline.Type::parse).collect(toSet());
+                return new MonitorableFutureTask<>(factory.createResumeNlpTask(request.user, pipelines));
+            case BATCH_SEARCH:
+                return new MonitorableFutureTask<>(factory.createBatchSearchLoop(), null);
+            case DELETE_PROJECT:
+                return new MonitorableFutureTask<>(factory.createDeleteProjectTask(request.user, request.argument("projectId")));
+            case REINDEX:
+                return new MonitorableFutureTask<>(factory.createReindexTask(request.user, request.argument("indexName")));
+            default:
+                throw new IllegalArgumentException("unknown task type " + request.type);
+        }
+    }
+}
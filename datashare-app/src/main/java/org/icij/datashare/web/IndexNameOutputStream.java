@@ -0,0 +1,105 @@
+package org.icij.datashare.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.VERSION_SEPARATOR;
+
+/**
+ * Replaces the versioned index names (index-vN) of the "_index" fields of elasticsearch responses
+ * with the names of the indices serving them, so that the web client sees the project names.
+ *
+ * The bytes are written as they come, except the end of the buffer that may hold an incomplete
+ * "_index" field. The responses are read as ISO-8859-1 so that the bytes are kept as they are.
+ */
+class IndexNameOutputStream extends FilterOutputStream {
+    private static final String INDEX_FIELD = "\"_index\":\"";
+    private final Pattern versionedIndex; // null when there is no index name to replace
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /**
+     * @param indexNames the names of the indices that can be served by a versioned index
+     */
+    IndexNameOutputStream(OutputStream out, Collection<String> indexNames) {
+        super(out);
+        this.versionedIndex = indexNames.isEmpty() ? null : Pattern.compile(Pattern.quote(INDEX_FIELD) + "(" + indexNames.stream()
+                .map(name -> Pattern.quote(new String(name.getBytes(UTF_8), ISO_8859_1))).collect(joining("|")) + ")" +
+                Pattern.quote(VERSION_SEPARATOR) + "\\d+\"");
+    }
+
+    static byte[] replace(byte[] response, Collection<String> indexNames) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(response.length);
+        try (IndexNameOutputStream stream = new IndexNameOutputStream(output, indexNames)) {
+            stream.write(response);
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        pending.write(b);
+        writeComplete(false);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        pending.write(b, off, len);
+        writeComplete(false);
+    }
+
+    /**
+     * writes the pending bytes without closing the underlying stream
+     */
+    void finish() throws IOException {
+        writeComplete(true);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeComplete(true);
+        super.close();
+    }
+
+    private void writeComplete(boolean end) throws IOException {
+        if (versionedIndex == null) {
+            pending.writeTo(out);
+            pending.reset();
+            return;
+        }
+        String text = new String(pending.toByteArray(), ISO_8859_1);
+        int completeLength = end ? text.length() : completeLength(text);
+        out.write(versionedIndex.matcher(text.substring(0, completeLength))
+                .replaceAll(Matcher.quoteReplacement(INDEX_FIELD) + "$1\"").getBytes(ISO_8859_1));
+        pending.reset();
+        pending.write(text.substring(completeLength).getBytes(ISO_8859_1));
+    }
+
+    /**
+     * @return the length of the text that doesn't end with an incomplete "_index" field
+     */
+    private static int completeLength(String text) {
+        int field = text.lastIndexOf(INDEX_FIELD);
+        if (field >= 0) {
+            int closingQuote = text.indexOf('"', field + INDEX_FIELD.length());
+            // a closing quote at the end could also be the beginning of the next field
+            if (closingQuote < 0 || closingQuote == text.length() - 1) {
+                return field;
+            }
+        }
+        for (int length = Math.min(INDEX_FIELD.length() - 1, text.length()); length > 0; length--) {
+            if (text.endsWith(INDEX_FIELD.substring(0, length))) {
+                return text.length() - length;
+            }
+        }
+        return text.length();
+    }
+}
@@ -7,12 +7,30 @@ import net.codestory.http.Query;
 import net.codestory.http.annotations.*;
 import net.codestory.http.errors.UnauthorizedException;
 import net.codestory.http.payload.Payload;
+import net.codestory.http.payload.StreamingOutput;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.icij.datashare.openmetrics.StatusMapper;
 import org.icij.datashare.session.DatashareUser;
 import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.text.indexing.elasticsearch.SearchCache;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
 
 import static java.lang.String.join;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toList;
 import static net.codestory.http.payload.Payload.created;
@@ -21,11 +39,18 @@ import static net.codestory.http.payload.Payload.ok;
 @Singleton
 @Prefix("/api/index")
 public class IndexResource {
+    private static final int PROXY_BUFFER_SIZE = 8192;
+    private static final int MAX_CACHED_REQUEST_SIZE = 64 * 1024;
+    static final int MAX_BUFFERED_REQUEST_SIZE = 1024 * 1024;
     private final Indexer indexer;
+    private final RestHighLevelClient esClient;
+    private final SearchCache searchCache;
 
     @Inject
-    public IndexResource(Indexer indexer) {
+    public IndexResource(Indexer indexer, RestHighLevelClient esClient, SearchCache searchCache) {
         this.indexer = indexer;
+        this.esClient = esClient;
+        this.searchCache = searchCache;
     }
 
     /**
@@ -66,6 +91,11 @@ public class IndexResource {
     /**
       * The search endpoint is just a proxy in front of Elasticsearch, everything sent is forwarded to Elasticsearch. DELETE method is not allowed.
       *
+      * The request and response bodies are streamed, they are not loaded in memory as strings.
+      * If the search cache is enabled (searchCacheSize), the responses of _search and _count requests
+      * on indices are cached until these indices are written. With searchCoalescing, identical requests
+      * sent at the same time share the same elasticsearch request.
+      *
       * Path can be of the form :
       * * _search/scroll
       * * index_name/_search
@@ -83,7 +113,13 @@ public class IndexResource {
       */
     @Post("/search/:path:")
     public Payload esPost(final String path, Context context, final net.codestory.http.Request request) throws IOException {
-        return createPayload(indexer.executeRaw("POST", checkPath(path, context), new String(request.contentAsBytes())));
+        String url = checkPath(path, context);
+        List<String> indices = cacheableIndices(path, context);
+        long contentLength = contentLength(request);
+        if (indices != null && contentLength >= 0 && contentLength <= MAX_CACHED_REQUEST_SIZE) {
+            return cachedProxy("POST", url, new String(request.contentAsBytes(), UTF_8), indices, context);
+        }
+        return proxy("POST", url, requestEntity(request), context);
     }
 
     /**
@@ -102,7 +138,26 @@ public class IndexResource {
      */
     @Get("/search/:path:")
     public Payload esGet(final String path, Context context) throws IOException {
-        return createPayload(indexer.executeRaw("GET", checkPath(path, context), ""));
+        String url = checkPath(path, context);
+        List<String> indices = cacheableIndices(path, context);
+        return indices == null ? proxy("GET", url, null, context) : cachedProxy("GET", url, "", indices, context);
+    }
+
+    /**
+     * Statistics of the search cache and of the coalesced requests
+     * Adding "format=openmetrics" parameter to the url will return the statistics with openmetrics format.
+     *
+     * @return 200 with hits, misses, evictions, coalesced, entries, size and max_size (in bytes)
+     *
+     * Example :
+     * $(curl localhost:8080/api/index/cache)
+     */
+    @Get("/cache")
+    public Payload getSearchCacheStats(Context context) {
+        if ("openmetrics".equals(context.request().query().get("format"))) {
+            return new Payload("text/plain;version=0.0.4", new StatusMapper("datashare_search_cache", searchCache.stats()).toString());
+        }
+        return new Payload(searchCache.stats());
     }
 
     /**
@@ -143,7 +198,109 @@ public class IndexResource {
         return join("&", query.keyValues().entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(toList()));
     }
 
-    private Payload createPayload(String responseBody) {
-        return new Payload("application/json", responseBody);
+    /**
+     * sends the request to elasticsearch and streams its response to the client. The response is still
+     * read entirely by the rest client (HeapBufferedResponseConsumerFactory, limited to 100MB) before
+     * it is streamed, so a larger response fails instead of being streamed.
+     */
+    private Payload proxy(String method, String url, HttpEntity body, Context context) throws IOException {
+        HttpEntity entity = performRequest(method, url, body);
+        if (entity == null) {
+            return new Payload("application/json", "");
+        }
+        List<String> projects = ((DatashareUser) context.currentUser()).getProjects();
+        return new Payload(contentType(entity), (StreamingOutput) output -> copy(entity, output, projects));
+    }
+
+    private Payload cachedProxy(String method, String url, String body, List<String> indices, Context context) throws IOException {
+        HttpEntity requestEntity = body.isEmpty() ? null : new NStringEntity(body, ContentType.APPLICATION_JSON);
+        List<String> projects = ((DatashareUser) context.currentUser()).getProjects();
+        SearchCache.Key key;
+        try {
+            key = searchCache.key(url, body, indices, projects);
+        } catch (IllegalArgumentException e) {
+            return proxy(method, url, requestEntity, context);
+        }
+        SearchCache.Response response = searchCache.load(key, () -> {
+            HttpEntity entity = performRequest(method, url, requestEntity);
+            return entity == null ? new SearchCache.Response("application/json", new byte[0]) :
+                    new SearchCache.Response(contentType(entity), IndexNameOutputStream.replace(EntityUtils.toByteArray(entity), projects));
+        });
+        return new Payload(response.contentType, response.body);
+    }
+
+    private HttpEntity performRequest(String method, String url, HttpEntity body) throws IOException {
+        Request esRequest = new Request(method, url.startsWith("/") ? url : "/" + url);
+        esRequest.setEntity(body);
+        return esClient.getLowLevelClient().performRequest(esRequest).getEntity();
+    }
+
+    private static String contentType(HttpEntity entity) {
+        return entity.getContentType() == null ? "application/json" : entity.getContentType().getValue();
+    }
+
+    /**
+     * @return the indices of a _search or _count request if its response can be cached, else null
+     */
+    private List<String> cacheableIndices(String path, Context context) {
+        String[] pathParts = path.split("/");
+        String action = pathParts[pathParts.length - 1];
+        if (!searchCache.isEnabled() || pathParts.length < 2 || pathParts[0].startsWith("_") || pathParts[0].contains("*") ||
+                !("_search".equals(action) || "_count".equals(action)) || context.query().get("scroll") != null) {
+            return null;
+        }
+        return asList(pathParts[0].split(","));
+    }
+
+    /**
+     * @return the content length of the request, or -1 if it is unknown (missing or malformed header)
+     */
+    static long contentLength(net.codestory.http.Request request) {
+        String contentLength = request.header("Content-Length");
+        try {
+            return contentLength == null ? -1 : Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the body of the request, in memory if it is not longer than MAX_BUFFERED_REQUEST_SIZE, so
+     * that the rest client can send it again to another node if the request fails. Longer bodies are
+     * streamed, and their request cannot be retried on another node.
+     */
+    static HttpEntity requestEntity(net.codestory.http.Request request) throws IOException {
+        long length = contentLength(request);
+        if (length == 0) {
+            return null;
+        }
+        InputStream input = request.inputStream();
+        if (length > MAX_BUFFERED_REQUEST_SIZE) {
+            return new InputStreamEntity(input, length, ContentType.APPLICATION_JSON);
+        }
+        // with an unknown length, one more byte tells if the body is too long to be buffered
+        byte[] buffer = new byte[length < 0 ? MAX_BUFFERED_REQUEST_SIZE + 1 : (int) length];
+        int size = 0;
+        for (int read = 0; read >= 0 && size < buffer.length; read = input.read(buffer, size, buffer.length - size)) {
+            size += read;
+        }
+        if (size > MAX_BUFFERED_REQUEST_SIZE) {
+            return new InputStreamEntity(new SequenceInputStream(new ByteArrayInputStream(buffer, 0, size), input), -1, ContentType.APPLICATION_JSON);
+        }
+        return new ByteArrayEntity(buffer, 0, size, ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * copies the response of elasticsearch, with the versioned index names replaced by the project names
+     */
+    private static void copy(HttpEntity entity, OutputStream output, List<String> projects) throws IOException {
+        try (InputStream input = entity.getContent()) {
+            IndexNameOutputStream indexNameOutput = new IndexNameOutputStream(output, projects);
+            byte[] buffer = new byte[PROXY_BUFFER_SIZE];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                indexNameOutput.write(buffer, 0, read);
+            }
+            indexNameOutput.finish();
+        }
     }
 }
@@ -45,12 +45,13 @@ public class IndexWaiterFilter implements Filter {
     }
 
     synchronized IndexWaiterFilter waitForIndexAsync() {
+        long before = System.currentTimeMillis();
         executor.submit(() -> {
             for (int i = 0; i < TIMEOUT_SECONDS; i++) {
                 try {
                     if (client.ping(RequestOptions.DEFAULT)) {
                         this.indexOk.set(true);
-                        LOGGER.info("Ping elasticsearch succeeded");
+                        LOGGER.info("Ping elasticsearch succeeded after {}ms", System.currentTimeMillis() - before);
                         break;
                     }
                 } catch (IOException|RuntimeException e) {
@@ -6,11 +6,14 @@ import net.codestory.http.Context;
 import net.codestory.http.annotations.Delete;
 import net.codestory.http.annotations.Get;
 import net.codestory.http.annotations.Options;
+import net.codestory.http.annotations.Post;
 import net.codestory.http.annotations.Prefix;
 import net.codestory.http.payload.Payload;
 import org.icij.datashare.Repository;
+import org.icij.datashare.tasks.TaskFactory;
+import org.icij.datashare.tasks.TaskManager;
 import org.icij.datashare.text.Project;
-import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.user.User;
 
 import static net.codestory.http.payload.Payload.ok;
 import static org.icij.datashare.text.Project.isAllowed;
@@ -20,12 +23,14 @@ import static org.icij.datashare.text.Project.project;
 @Prefix("/api/project")
 public class ProjectResource {
     private final Repository repository;
-    private final Indexer indexer;
+    private final TaskManager taskManager;
+    private final TaskFactory taskFactory;
 
     @Inject
-    public ProjectResource(Repository repository, Indexer indexer) {
+    public ProjectResource(Repository repository, TaskManager taskManager, TaskFactory taskFactory) {
         this.repository = repository;
-        this.indexer = indexer;
+        this.taskManager = taskManager;
+        this.taskFactory = taskFactory;
     }
 
     /**
@@ -78,16 +83,17 @@ public class ProjectResource {
     public Payload deleteProjectOpt(String id) {return ok().withAllowMethods("OPTIONS", "DELETE");}
 
     /**
-     * Delete the project from database and elasticsearch indices.
+     * Delete the project from database and elasticsearch indices, in a background task.
+     * The index is replaced by a new empty version, then the project is removed from database.
      *
-     * It returns 204 (no content) when something has been removed (index and/or database), or
-     * 404 if nothing has been removed (i.e. index and database don't exist).
+     * It returns 202 (accepted) with the task. The task result is true when something has been
+     * removed (index and/or database), or false if nothing has been removed (i.e. index and database don't exist).
      *
      * If the project id is not the current user project (local-datashare in local mode),
      * then it will return 401 (unauthorized)
      *
      * @param id
-     * @return 204 (no content) or 404
+     * @return 202 (accepted) with the task
      *
      * Example :
      * $(curl -I -XDELETE -H 'Content-Type:application/json' localhost:8080/api/project/unknown-project)
@@ -97,8 +103,30 @@ public class ProjectResource {
         if (!context.currentUser().isInRole("local")) {
             return new Payload(401);
         }
-        boolean isDeleted = this.repository.deleteAll(id);
-        boolean indexDeleted = this.indexer.deleteAll(id);
-        return isDeleted || indexDeleted ? new Payload(204): new Payload(404);
+        return new Payload("application/json", taskManager.startTask(taskFactory.createDeleteProjectTask((User) context.currentUser(), id)), 202);
+    }
+
+    /**
+     * Reindex the project in a background task: the documents are copied by elasticsearch into a new
+     * version of the project index, created with the current mapping, then the project is served by the new version
+     * and the previous one is deleted. It is needed when the mapping changes, instead of indexing again the files.
+     *
+     * The project cannot be indexed while it is reindexed. The reindex can be tuned with the reindexSlices option.
+     *
+     * If the project id is not the current user project (local-datashare in local mode),
+     * then it will return 401 (unauthorized)
+     *
+     * @param id
+     * @return 202 (accepted) with the task, whose result is the name of the new index
+     *
+     * Example :
+     * $(curl -XPOST localhost:8080/api/project/local-datashare/reindex)
+     */
+    @Post("/:id/reindex")
+    public Payload reindexProject(String id, Context context) {
+        if (!context.currentUser().isInRole("local")) {
+            return new Payload(401);
+        }
+        return new Payload("application/json", taskManager.startTask(taskFactory.createReindexTask((User) context.currentUser(), id)), 202);
     }
 }
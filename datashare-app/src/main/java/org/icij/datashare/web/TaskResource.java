@@ -1,6 +1,7 @@
 package org.icij.datashare.web;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import net.codestory.http.Context;
@@ -13,6 +14,7 @@ import org.icij.datashare.batch.BatchDownload;
 import org.icij.datashare.extension.PipelineRegistry;
 import org.icij.datashare.extract.OptionsWrapper;
 import org.icij.datashare.json.JsonObjectMapper;
+import org.icij.datashare.nlp.NlpApp;
 import org.icij.datashare.tasks.*;
 import org.icij.datashare.text.Project;
 import org.icij.datashare.text.nlp.Pipeline;
@@ -23,13 +25,20 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import static java.lang.Boolean.parseBoolean;
 import static java.nio.file.Paths.get;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
+import static java.util.Optional.ofNullable;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
@@ -49,31 +58,56 @@ public class TaskResource {
     private final TaskManager taskManager;
     private final PropertiesProvider propertiesProvider;
     private final PipelineRegistry pipelineRegistry;
+    private final TaskProgressPublisher taskProgressPublisher;
+    private final ExecutorService eventsWriters = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("task-events-%d").setDaemon(true).build());
 
     @Inject
-    public TaskResource(final TaskFactory taskFactory, final TaskManager taskManager, final PropertiesProvider propertiesProvider, final PipelineRegistry pipelineRegistry) {
+    public TaskResource(final TaskFactory taskFactory, final TaskManager taskManager, final PropertiesProvider propertiesProvider,
+                        final PipelineRegistry pipelineRegistry, final TaskProgressPublisher taskProgressPublisher) {
         this.taskFactory = taskFactory;
         this.taskManager = taskManager;
         this.propertiesProvider = propertiesProvider;
         this.pipelineRegistry = pipelineRegistry;
+        this.taskProgressPublisher = taskProgressPublisher;
     }
 
     /**
-     * gets all the user tasks
+     * gets the user tasks, the most recent first
      * a filter can be added with a pattern contained in the task name.
+     * the tasks can be paginated with :
+     * - from : index of the first task (default 0)
+     * - size : number of tasks, if not provided all tasks are returned from the "from" parameter
      *
      * @return 200 and the list of tasks
      *
      * Example :
-     * $(curl localhost:8080/api/task/all?filter=BatchDownloadRunner)
+     * $(curl localhost:8080/api/task/all?filter=BatchDownloadRunner&from=0&size=10)
      */
     @Get("/all")
     public List<TaskView<?>> tasks(Context context) {
         Pattern pattern = Pattern.compile(StringUtils.isEmpty(context.get("filter")) ? ".*": String.format(".*%s.*", context.get("filter")));
-        return taskManager.get().stream().
-                filter(t -> context.currentUser().equals(t.getUser())).
-                filter(t -> pattern.matcher(t.name).matches()).
-                collect(toList());
+        int from = Integer.parseInt(ofNullable(context.get("from")).orElse("0"));
+        int size = Integer.parseInt(ofNullable(context.get("size")).orElse("0"));
+        return taskManager.get((User) context.currentUser(), pattern, from, size);
+    }
+
+    /**
+     * streams the changes of the user tasks as server-sent events.
+     * The first event contains all the user tasks, then each event contains the tasks whose state or
+     * progress has changed. Events are sent at most every taskProgressIntervalMillis, and an empty
+     * list is sent every 15 seconds when nothing changes.
+     * The events are written by a thread of their own, so the open streams don't hold the http threads.
+     *
+     * @return 200 and a text/event-stream of task lists
+     *
+     * Example :
+     * $(curl -N localhost:8080/api/task/events)
+     */
+    @Get("/events")
+    public CompletableFuture<Payload> taskEvents(Context context) {
+        return new WrittenBy<>(eventsWriters, new Payload("text/event-stream",
+                taskProgressPublisher.subscribe((User) context.currentUser()).stream()));
     }
 
     /**
@@ -162,9 +196,7 @@ public class TaskResource {
      */
     @Post("/batchUpdate/index")
     public TaskView<Long> indexQueue(final OptionsWrapper<String> optionsWrapper, Context context) {
-        IndexTask indexTask = taskFactory.createIndexTask((User) context.currentUser(),
-                propertiesProvider.get(QUEUE_NAME_OPTION).orElse("extract:queue"), optionsWrapper.asProperties());
-        return taskManager.startTask(indexTask);
+        return startIndexTask((User) context.currentUser(), propertiesProvider.get(QUEUE_NAME_OPTION).orElse("extract:queue"), optionsWrapper.asProperties());
     }
 
     /**
@@ -200,7 +232,7 @@ public class TaskResource {
             taskFactory.createScanIndexTask(user, reportName).call();
             properties.put(MAP_NAME_OPTION, reportName);
         }
-        return asList(scanResponse, taskManager.startTask(taskFactory.createIndexTask(user, propertiesProvider.get(QUEUE_NAME_OPTION).orElse("extract:queue"), properties)));
+        return asList(scanResponse, startIndexTask(user, propertiesProvider.get(QUEUE_NAME_OPTION).orElse("extract:queue"), properties));
     }
 
     /**
@@ -217,8 +249,11 @@ public class TaskResource {
     @Post("/batchUpdate/scan/:filePath:")
     public TaskView<Long> scanFile(final String filePath, final OptionsWrapper<String> optionsWrapper, Context context) {
         Path path = IS_OS_WINDOWS ?  get(filePath):get(File.separator, filePath);
-        return taskManager.startTask(taskFactory.createScanTask((User) context.currentUser(), propertiesProvider.get(QUEUE_NAME_OPTION).orElse("extract:queue"), path,
-                propertiesProvider.createOverriddenWith(optionsWrapper.getOptions())));
+        User user = (User) context.currentUser();
+        String queueName = propertiesProvider.get(QUEUE_NAME_OPTION).orElse("extract:queue");
+        Properties properties = propertiesProvider.createOverriddenWith(optionsWrapper.getOptions());
+        return taskManager.startTask(ScanTask.request(TaskRequest.newName(ScanTask.class.getName()), user, queueName, path, properties),
+                () -> taskFactory.createScanTask(user, queueName, path, properties));
     }
 
     /**
@@ -246,7 +281,7 @@ public class TaskResource {
     @Delete("/clean/:taskName:")
     public Payload cleanTask(final String taskName, Context context) {
         TaskView<?> task = forbiddenIfNotSameUser(context, notFoundIfNull(taskManager.get(taskName)));
-        if (task.getState() == TaskView.State.RUNNING) {
+        if (task.isActive()) {
             return forbidden();
         } else {
             taskManager.clearTask(task.name);
@@ -274,7 +309,7 @@ public class TaskResource {
         batchSearchLoop.requeueDatabaseBatches();
         batchSearchLoop.enqueuePoison();
 
-        return taskManager.startTask(batchSearchLoop::run);
+        return taskManager.startTask(batchSearchLoop);
     }
 
 
@@ -305,9 +340,8 @@ public class TaskResource {
      */
     @Put("/stopAll")
     public Map<String, Boolean> stopAllTasks(final Context context) {
-        Map<String, Boolean> collect = taskManager.get().stream().
-                filter(t -> context.currentUser().equals(t.getUser())).
-                filter(t -> t.getState() == TaskView.State.RUNNING).collect(
+        Map<String, Boolean> collect = taskManager.get((User) context.currentUser(), Pattern.compile(".*"), 0, 0).stream().
+                filter(TaskView::isActive).collect(
                 toMap(t -> t.name, t -> taskManager.stopTask(t.name)));
         return collect;
     }
@@ -345,18 +379,35 @@ public class TaskResource {
 
         TaskView<Void> nlpTask = createNlpApp(context, mergedProps, pipeline);
         if (parseBoolean(mergedProps.getProperty("resume", "true"))) {
-            TaskView<Long> resumeNlpTask = taskManager.startTask(
-                    taskFactory.createResumeNlpTask((User) context.currentUser(),
-                            new HashSet<Pipeline.Type>() {{add(Pipeline.Type.parse(pipelineName));}}));
+            User user = (User) context.currentUser();
+            Set<Pipeline.Type> pipelines = new HashSet<Pipeline.Type>() {{add(Pipeline.Type.parse(pipelineName));}};
+            TaskView<Long> resumeNlpTask = taskManager.startTask(ResumeNlpTask.request(TaskRequest.newName(ResumeNlpTask.class.getName()), user, pipelines),
+                    () -> taskFactory.createResumeNlpTask(user, pipelines));
             return asList(resumeNlpTask, nlpTask);
         }
         return singletonList(nlpTask);
     }
 
+    private TaskView<Long> startIndexTask(User user, String queueName, Properties properties) {
+        return taskManager.startTask(IndexTask.request(TaskRequest.newName(IndexTask.class.getName()), user, queueName, properties),
+                () -> taskFactory.createIndexTask(user, queueName, properties));
+    }
+
+    /**
+     * waits for the NlpApp to listen when it is run by this node. When the tasks are run by task workers,
+     * the NlpApp is not created here, so there is nothing to wait for.
+     */
     private TaskView<Void> createNlpApp(Context context, Properties mergedProps, Pipeline pipeline) {
+        User user = (User) context.currentUser();
         CountDownLatch latch = new CountDownLatch(1);
-        TaskView<Void> taskView = taskManager.startTask(taskFactory.createNlpTask((User) context.currentUser(), pipeline, mergedProps, latch::countDown));
-        if (parseBoolean(mergedProps.getProperty("waitForNlpApp", "true"))) {
+        AtomicBoolean createdHere = new AtomicBoolean(false);
+        TaskView<Void> taskView = taskManager.startTask(
+                NlpApp.request(TaskRequest.newName(NlpApp.class.getName() + "[" + pipeline.getType() + "]"), user, pipeline.getType(), mergedProps),
+                () -> {
+                    createdHere.set(true);
+                    return taskFactory.createNlpTask(user, pipeline, mergedProps, latch::countDown);
+                });
+        if (createdHere.get() && parseBoolean(mergedProps.getProperty("waitForNlpApp", "true"))) {
             try {
                 logger.info("waiting for NlpApp {} to listen...", pipeline);
                 latch.await(10, SECONDS);
@@ -372,4 +423,22 @@ public class TaskResource {
         if (!task.getUser().equals(context.currentUser())) throw new ForbiddenException();
         return task;
     }
+
+    /**
+     * Completed future whose value is consumed by the executor: fluent-http writes the payload
+     * of a future in its thenAccept, that would otherwise run in the http thread returning the future.
+     */
+    private static class WrittenBy<T> extends CompletableFuture<T> {
+        private final Executor executor;
+
+        WrittenBy(Executor executor, T value) {
+            this.executor = executor;
+            complete(value);
+        }
+
+        @Override
+        public CompletableFuture<Void> thenAccept(Consumer<? super T> action) {
+            return thenAcceptAsync(action, executor);
+        }
+    }
 }
@@ -11,6 +11,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.synchronizedList;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.fest.assertions.Assertions.assertThat;
@@ -50,6 +51,25 @@ public class RedisDataBusTest {
         assertThat(msgList.get(0)).isEqualTo(doc_id);
     }
 
+    @Test
+    public void test_publish_batch_subscribe() throws InterruptedException {
+        List<Message> msgList = synchronizedList(new ArrayList<>());
+        executorService.submit(() -> dataBus.subscribe(msgList::add, latch::countDown, Channel.TEST));
+        latch.await(2, SECONDS);
+
+        Message doc1 = new Message(Message.Type.EXTRACT_NLP).add(Message.Field.DOC_ID, "doc1");
+        Message doc2 = new Message(Message.Type.EXTRACT_NLP).add(Message.Field.DOC_ID, "doc2");
+        dataBus.publish(Channel.TEST, asList(doc1, doc2, new ShutdownMessage()));
+
+        executorService.shutdown();
+        executorService.awaitTermination(1, SECONDS);
+
+        assertThat(msgList.size()).isEqualTo(3);
+        assertThat(msgList.get(0).content).isEqualTo(doc1.content);
+        assertThat(msgList.get(1).content).isEqualTo(doc2.content);
+        assertThat(msgList.get(2).type).isEqualTo(Message.Type.SHUTDOWN);
+    }
+
     @Test
     public void test_databus_status(){
         assertThat(dataBus.getHealth()).isTrue();
@@ -0,0 +1,42 @@
+package org.icij.datashare.nlp;
+
+import org.icij.datashare.text.Language;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static java.util.Collections.nCopies;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class OptimaizeLanguageGuesserTest {
+    private static final String ENGLISH = "This is a text written in english to check that the language is correctly guessed. ";
+    private static final String FRENCH = "Ceci est un texte écrit en français pour vérifier que la langue est bien devinée. ";
+    private final OptimaizeLanguageGuesser guesser;
+
+    public OptimaizeLanguageGuesserTest() throws IOException {
+        guesser = new OptimaizeLanguageGuesser();
+    }
+
+    @Test
+    public void test_guess_short_text() {
+        assertThat(guesser.guess(ENGLISH)).isEqualTo(Language.ENGLISH);
+        assertThat(guesser.guess(FRENCH)).isEqualTo(Language.FRENCH);
+    }
+
+    @Test
+    public void test_guess_unknown_language_defaults_to_english() {
+        assertThat(guesser.guess("")).isEqualTo(Language.ENGLISH);
+    }
+
+    @Test
+    public void test_guess_large_text() {
+        assertThat(guesser.guess(String.join("", nCopies(10000, FRENCH)))).isEqualTo(Language.FRENCH);
+    }
+
+    @Test
+    public void test_guess_large_text_when_first_slice_is_not_conclusive() {
+        String text = String.join("", nCopies(2000, "1234 ")) + String.join("", nCopies(2000, FRENCH));
+
+        assertThat(guesser.guess(text)).isEqualTo(Language.FRENCH);
+    }
+}
@@ -0,0 +1,70 @@
+package org.icij.datashare.tasks;
+
+import org.icij.datashare.Repository;
+import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.user.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class DeleteProjectTaskTest {
+    @Mock Repository repository;
+    @Mock Indexer indexer;
+
+    @Test
+    public void test_call_deletes_index_then_database() throws Exception {
+        when(indexer.deleteAll("prj")).thenReturn(true);
+        when(repository.deleteAll("prj")).thenReturn(true);
+        DeleteProjectTask task = new DeleteProjectTask(repository, indexer, User.local(), "prj");
+
+        assertThat(task.call()).isTrue();
+
+        InOrder inOrder = inOrder(indexer, repository);
+        inOrder.verify(indexer).deleteAll("prj");
+        inOrder.verify(repository).deleteAll("prj");
+        assertThat(task.getProgressRate()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_call_with_only_database() throws Exception {
+        when(repository.deleteAll("prj")).thenReturn(true);
+        assertThat(new DeleteProjectTask(repository, indexer, User.local(), "prj").call()).isTrue();
+    }
+
+    @Test
+    public void test_call_with_nothing_to_delete() throws Exception {
+        assertThat(new DeleteProjectTask(repository, indexer, User.local(), "prj").call()).isFalse();
+    }
+
+    @Test
+    public void test_database_is_not_deleted_if_index_deletion_fails() throws Exception {
+        when(indexer.deleteAll("prj")).thenThrow(new IOException("es error"));
+        DeleteProjectTask task = new DeleteProjectTask(repository, indexer, User.local(), "prj");
+
+        try {
+            task.call();
+        } catch (IOException e) {
+            verify(repository, never()).deleteAll("prj");
+            assertThat(task.getProgressRate()).isEqualTo(0);
+            return;
+        }
+        throw new AssertionError("task should have failed");
+    }
+
+    @Test
+    public void test_user() {
+        assertThat(new DeleteProjectTask(repository, indexer, User.local(), "prj").getUser()).isEqualTo(User.local());
+    }
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+    }
+}
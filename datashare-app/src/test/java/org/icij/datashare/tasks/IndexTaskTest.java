@@ -3,14 +3,31 @@ package org.icij.datashare.tasks;
 import org.icij.datashare.PropertiesProvider;
 import org.icij.datashare.com.Publisher;
 import org.icij.datashare.text.indexing.elasticsearch.ElasticsearchSpewer;
+import org.icij.extract.extractor.ExtractionStatus;
+import org.icij.extract.queue.DocumentQueue;
+import org.icij.extract.queue.MemoryDocumentQueue;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import static java.util.Arrays.asList;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.icij.datashare.PropertiesProvider.MAP_NAME_OPTION;
+import static org.junit.Assert.fail;
 import static org.icij.datashare.user.User.local;
 import static org.icij.datashare.user.User.nullUser;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class IndexTaskTest {
     @Test
@@ -44,4 +61,93 @@ public class IndexTaskTest {
 
         Mockito.verify(spewer).withIndex("foo");
     }
+
+    @Test
+    public void test_index_task_resumes_paths_that_were_being_indexed() throws Exception {
+        ElasticsearchSpewer spewer = mock(ElasticsearchSpewer.class);
+        doAnswer(invocation -> {
+            invocation.getArgumentAt(1, Consumer.class).accept(true);
+            return null;
+        }).when(spewer).whenIndexed(any(), any());
+        MemoryDocumentCollectionFactory factory = new MemoryDocumentCollectionFactory();
+        PropertiesProvider propertiesProvider = new PropertiesProvider();
+        DocumentQueue processing = factory.createQueue(propertiesProvider, "queueName:processing");
+        processing.add(Paths.get("/path/to/lost/file.txt"));
+        factory.createQueue(propertiesProvider, "queueName").addAll(asList(Paths.get("/path/to/file.txt"), PipelineTask.POISON));
+
+        Long indexed = new IndexTask(spewer, mock(Publisher.class), factory, local(), "queueName", new Properties()).call();
+
+        assertThat(indexed).isEqualTo(2);
+        assertThat(processing).isEmpty();
+    }
+
+    @Test
+    public void test_index_task_keeps_paths_that_have_not_been_indexed() throws Exception {
+        ElasticsearchSpewer spewer = mock(ElasticsearchSpewer.class);
+        MemoryDocumentCollectionFactory factory = new MemoryDocumentCollectionFactory();
+        PropertiesProvider propertiesProvider = new PropertiesProvider();
+        factory.createQueue(propertiesProvider, "queueName").addAll(asList(Paths.get("/path/to/file.txt"), PipelineTask.POISON));
+
+        new IndexTask(spewer, mock(Publisher.class), factory, local(), "queueName", new Properties()).call();
+
+        assertThat(factory.createQueue(propertiesProvider, "queueName:processing")).containsOnly(Paths.get("/path/to/file.txt"));
+    }
+
+    @Test
+    public void test_index_task_does_not_resume_paths_of_running_index_tasks() throws Exception {
+        ElasticsearchSpewer spewer = mock(ElasticsearchSpewer.class);
+        MemoryDocumentCollectionFactory factory = new MemoryDocumentCollectionFactory();
+        PropertiesProvider propertiesProvider = new PropertiesProvider();
+        DocumentQueue processing = factory.createQueue(propertiesProvider, "queueName:processing");
+        processing.add(Paths.get("/path/to/running/file.txt"));
+        factory.createQueue(propertiesProvider, "queueName").add(PipelineTask.POISON);
+        Thread runningTask = new Thread(() -> factory.createLock(propertiesProvider, "queueName:processing:lock").readLock().lock());
+        runningTask.start();
+        runningTask.join();
+
+        Long indexed = new IndexTask(spewer, mock(Publisher.class), factory, local(), "queueName", new Properties()).call();
+
+        assertThat(indexed).isEqualTo(0);
+        assertThat(processing).containsOnly(Paths.get("/path/to/running/file.txt"));
+    }
+
+    @Test
+    public void test_path_with_documents_not_indexed_is_acknowledged_as_failure() throws Exception {
+        ElasticsearchSpewer spewer = mock(ElasticsearchSpewer.class);
+        doAnswer(invocation -> {
+            invocation.getArgumentAt(1, Consumer.class).accept(false);
+            return null;
+        }).when(spewer).whenIndexed(any(), any());
+        MemoryDocumentCollectionFactory factory = new MemoryDocumentCollectionFactory();
+        PropertiesProvider propertiesProvider = new PropertiesProvider();
+        factory.createQueue(propertiesProvider, "queueName").addAll(asList(Paths.get("/path/to/file.txt"), PipelineTask.POISON));
+        Properties properties = new Properties();
+        properties.setProperty(MAP_NAME_OPTION, "reportName");
+
+        new IndexTask(spewer, mock(Publisher.class), factory, local(), "queueName", properties).call();
+
+        assertThat(factory.createQueue(propertiesProvider, "queueName:processing")).isEmpty();
+        assertThat(factory.createMap(propertiesProvider, "reportName").get(Paths.get("/path/to/file.txt")).getStatus())
+                .isEqualTo(ExtractionStatus.FAILURE_NOT_SAVED);
+    }
+
+    @Test
+    public void test_index_task_restores_index_settings_when_failing() throws Exception {
+        ElasticsearchSpewer spewer = mock(ElasticsearchSpewer.class);
+        DocumentCollectionFactory factory = mock(DocumentCollectionFactory.class);
+        when(factory.createQueue(any(), eq("queueName:processing"))).thenReturn(new MemoryDocumentQueue("queueName:processing", 10));
+        when(factory.createLock(any(), eq("queueName:processing:lock"))).thenReturn(new ReentrantReadWriteLock());
+        IndexTask indexTask = new IndexTask(spewer, mock(Publisher.class), factory, local(), "queueName", new PropertiesProvider(new HashMap<String, String>() {{
+            put("redisAddress", "redis://redis:6379");
+        }}).getProperties());
+
+        try {
+            indexTask.call();
+            fail("task without queue should fail");
+        } catch (ExecutionException eex) {
+            InOrder inOrder = Mockito.inOrder(spewer);
+            inOrder.verify(spewer).applyIngestSettings();
+            inOrder.verify(spewer).restoreIndexSettings();
+        }
+    }
 }
@@ -0,0 +1,50 @@
+package org.icij.datashare.tasks;
+
+import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.text.indexing.elasticsearch.Reindexer;
+import org.icij.datashare.user.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.HashMap;
+import java.util.function.DoubleConsumer;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ReindexTaskTest {
+    @Mock Reindexer reindexer;
+
+    @Test
+    public void test_call() throws Exception {
+        when(reindexer.reindex(eq("prj"), anyInt(), any(DoubleConsumer.class))).thenAnswer(a -> {
+            a.getArgumentAt(2, DoubleConsumer.class).accept(0.5);
+            return "prj-v2";
+        });
+        ReindexTask task = new ReindexTask(reindexer, new PropertiesProvider(), User.local(), "prj");
+
+        assertThat(task.call()).isEqualTo("prj-v2");
+        assertThat(task.getProgressRate()).isEqualTo(0.5);
+        verify(reindexer).reindex(eq("prj"), eq(0), any(DoubleConsumer.class));
+    }
+
+    @Test
+    public void test_call_with_slices() throws Exception {
+        new ReindexTask(reindexer, new PropertiesProvider(new HashMap<String, String>() {{
+            put("reindexSlices", "4");
+        }}), User.local(), "prj").call();
+
+        verify(reindexer).reindex(eq("prj"), eq(4), any(DoubleConsumer.class));
+    }
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+    }
+}
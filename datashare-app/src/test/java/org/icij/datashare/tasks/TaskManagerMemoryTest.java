@@ -1,12 +1,18 @@
 package org.icij.datashare.tasks;
 
 import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.user.User;
 import org.junit.After;
 import org.junit.Test;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.fest.assertions.Assertions.assertThat;
@@ -45,6 +51,18 @@ public class TaskManagerMemoryTest {
         assertThat(taskManager.get()).hasSize(2);
     }
 
+    @Test
+    public void test_get_user_tasks_paginated() throws Exception {
+        TaskView<String> t1 = taskManager.startTask(() -> "task 1");
+        TaskView<String> t2 = taskManager.startTask(() -> "task 2");
+        TaskView<String> t3 = taskManager.startTask(() -> "task 3");
+
+        assertThat(taskManager.get(User.local(), Pattern.compile(".*"), 0, 0)).containsExactly(t3, t2, t1);
+        assertThat(taskManager.get(User.local(), Pattern.compile(".*"), 1, 1)).containsExactly(t2);
+        assertThat(taskManager.get(User.local(), Pattern.compile(Pattern.quote(t1.name)), 0, 0)).containsExactly(t1);
+        assertThat(taskManager.get(new User("foo"), Pattern.compile(".*"), 0, 0)).isEmpty();
+    }
+
     @Test
     public void test_callback() throws Exception {
         CountDownLatch l = new CountDownLatch(1);
@@ -89,6 +107,170 @@ public class TaskManagerMemoryTest {
         assertThat(t1.name).isEqualTo(t2.name);
     }
 
+    @Test
+    public void test_task_is_queued_when_lane_threads_are_busy() throws Exception {
+        TaskManagerMemory oneThread = new TaskManagerMemory(new PropertiesProvider(new HashMap<String, String>() {{
+            put("taskMaintenanceThreads", "1");
+        }}));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            TaskView<String> running = oneThread.startTask(new LaneCallable(TaskLane.MAINTENANCE, 0, "running", release, new CopyOnWriteArrayList<>()));
+            TaskView<String> queued = oneThread.startTask(() -> "queued");
+            waitStarted(running);
+
+            assertThat(oneThread.get(queued.name).getState()).isEqualTo(TaskView.State.QUEUED);
+            assertThat(oneThread.clearDoneTasks()).isEmpty();
+            release.countDown();
+            assertThat(queued.getResult(true)).isEqualTo("queued");
+            assertThat(oneThread.get(queued.name).getState()).isEqualTo(TaskView.State.DONE);
+        } finally {
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_queued_tasks_are_started_by_priority_then_in_order() throws Exception {
+        TaskManagerMemory oneThread = new TaskManagerMemory(new PropertiesProvider(new HashMap<String, String>() {{
+            put("taskBatchThreads", "1");
+        }}));
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        try {
+            waitStarted(oneThread.startTask(new LaneCallable(TaskLane.BATCH, 0, "first", release, order)));
+            oneThread.startTask(new LaneCallable(TaskLane.BATCH, 0, "low1", null, order));
+            oneThread.startTask(new LaneCallable(TaskLane.BATCH, 0, "low2", null, order));
+            TaskView<String> last = oneThread.startTask(new LaneCallable(TaskLane.BATCH, LaneTask.INTERACTIVE_PRIORITY, "high", null, order));
+            release.countDown();
+
+            oneThread.waitTasksToBeDone(1, SECONDS);
+            assertThat(last.getResult()).isEqualTo("high");
+            assertThat(order).containsExactly("first", "high", "low1", "low2");
+        } finally {
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_busy_lane_does_not_delay_other_lanes() throws Exception {
+        TaskManagerMemory oneThread = new TaskManagerMemory(new PropertiesProvider(new HashMap<String, String>() {{
+            put("taskIngestThreads", "1");
+        }}));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            waitStarted(oneThread.startTask(new LaneCallable(TaskLane.INGEST, 0, "ingest", release, new CopyOnWriteArrayList<>())));
+            TaskView<String> queued = oneThread.startTask(new LaneCallable(TaskLane.INGEST, 0, "queued", null, new CopyOnWriteArrayList<>()));
+
+            assertThat(oneThread.startTask(() -> "maintenance").getResult(true)).isEqualTo("maintenance");
+            assertThat(oneThread.get(queued.name).getState()).isEqualTo(TaskView.State.QUEUED);
+        } finally {
+            release.countDown();
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_task_rejected_when_lane_queue_is_full() throws Exception {
+        TaskManagerMemory oneThread = new TaskManagerMemory(new PropertiesProvider(new HashMap<String, String>() {{
+            put("taskMaintenanceThreads", "1");
+            put("taskQueueSize", "1");
+        }}));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            waitStarted(oneThread.startTask(new LaneCallable(TaskLane.MAINTENANCE, 0, "running", release, new CopyOnWriteArrayList<>())));
+            oneThread.startTask(() -> "queued");
+
+            oneThread.startTask(() -> "rejected");
+            throw new AssertionError("task should have been rejected");
+        } catch (RejectedExecutionException e) {
+            assertThat(e.getMessage()).contains("MAINTENANCE");
+            assertThat(oneThread.get()).hasSize(2);
+        } finally {
+            release.countDown();
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_stop_queued_task() throws Exception {
+        TaskManagerMemory oneThread = new TaskManagerMemory(new PropertiesProvider(new HashMap<String, String>() {{
+            put("taskMaintenanceThreads", "1");
+            put("taskQueueSize", "1");
+        }}));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            waitStarted(oneThread.startTask(new LaneCallable(TaskLane.MAINTENANCE, 0, "running", release, new CopyOnWriteArrayList<>())));
+            TaskView<String> queued = oneThread.startTask(() -> "queued");
+
+            assertThat(oneThread.stopTask(queued.name)).isTrue();
+            assertThat(oneThread.get(queued.name).getState()).isEqualTo(TaskView.State.CANCELLED);
+            assertThat(oneThread.startTask(() -> "other").name).isNotNull();
+        } finally {
+            release.countDown();
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_stop_unknown_task() {
+        assertThat(taskManager.stopTask("unknown")).isFalse();
+    }
+
+    @Test
+    public void test_interactive_lane_is_not_delayed_by_busy_ingest_and_nlp_lanes() throws Exception {
+        TaskManagerMemory oneThread = new TaskManagerMemory(new PropertiesProvider(new HashMap<String, String>() {{
+            put("taskIngestThreads", "1");
+            put("taskNlpThreads", "1");
+        }}));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            waitStarted(oneThread.startTask(new LaneCallable(TaskLane.INGEST, 0, "index", release, new CopyOnWriteArrayList<>())));
+            waitStarted(oneThread.startTask(new LaneCallable(TaskLane.NLP, 0, "nlp", release, new CopyOnWriteArrayList<>())));
+
+            assertThat(oneThread.startTask(new LaneCallable(TaskLane.INTERACTIVE, 0, "scan", null, new CopyOnWriteArrayList<>())).getResult(true)).isEqualTo("scan");
+        } finally {
+            release.countDown();
+            oneThread.shutdownNow();
+        }
+    }
+
+    private static void waitStarted(TaskView<?> taskView) throws InterruptedException {
+        for (int i = 0; i < 500 && !taskView.task.isStarted(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(taskView.getState()).isEqualTo(TaskView.State.RUNNING);
+    }
+
+    private static class LaneCallable implements Callable<String>, LaneTask {
+        private final TaskLane lane;
+        private final int priority;
+        private final String result;
+        private final CountDownLatch release;
+        private final List<String> order;
+
+        LaneCallable(TaskLane lane, int priority, String result, CountDownLatch release, List<String> order) {
+            this.lane = lane;
+            this.priority = priority;
+            this.result = result;
+            this.release = release;
+            this.order = order;
+        }
+
+        @Override
+        public String call() throws Exception {
+            order.add(result);
+            if (release != null) {
+                release.await(5, SECONDS);
+            }
+            return result;
+        }
+
+        @Override
+        public TaskLane getLane() { return lane;}
+
+        @Override
+        public int getPriority() { return priority;}
+    }
+
     @After
     public void tearDown() { taskManager.shutdownNow();}
 }
@@ -1,6 +1,8 @@
 package org.icij.datashare.tasks;
 
+import io.netty.buffer.Unpooled;
 import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.Repository;
 import org.icij.datashare.batch.BatchDownload;
 import org.icij.datashare.text.indexing.Indexer;
 import org.icij.datashare.user.User;
@@ -12,10 +14,17 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Pattern;
 
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.icij.datashare.text.Project.project;
 import static org.mockito.Mockito.mock;
@@ -130,9 +139,203 @@ public class TaskManagerRedisTest {
         assertThat(t1.name).isEqualTo(t2.name);
     }
 
+    @Test
+    public void test_start_remote_task_is_queued() throws Exception {
+        TaskView<Boolean> taskView = taskManager.startTask(deleteProjectTask("prj"));
+
+        assertThat(taskManager.get(taskView.name).getState()).isEqualTo(TaskView.State.QUEUED);
+        TaskRequest request = taskManager.pollRequest("worker", 1, SECONDS);
+        assertThat(request.name).isEqualTo(taskView.name);
+        assertThat(request.type).isEqualTo(TaskRequest.Type.DELETE_PROJECT);
+        assertThat(request.argument("projectId")).isEqualTo("prj");
+        assertThat(request.user).isEqualTo(User.local());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_start_task_that_cannot_be_run_remotely() {
+        taskManager.startTask(() -> "run");
+    }
+
+    @Test
+    public void test_stop_queued_task() throws Exception {
+        TaskView<Boolean> taskView = taskManager.startTask(deleteProjectTask("prj"));
+
+        assertThat(taskManager.stopTask(taskView.name)).isTrue();
+
+        assertThat(taskManager.get(taskView.name).getState()).isEqualTo(TaskView.State.CANCELLED);
+        assertThat(taskManager.pollRequest("worker", 10, MILLISECONDS)).isNull();
+        assertThat(taskManager.stopTask(taskView.name)).isFalse();
+    }
+
+    @Test
+    public void test_stop_running_task_sends_a_message_to_its_worker() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        int listener = taskManager.addCancelListener(name -> cancelled.countDown());
+        try {
+            TaskView<Boolean> taskView = taskManager.startTask(deleteProjectTask("prj"));
+            taskManager.pollRequest("worker", 1, SECONDS);
+            taskManager.lease(taskView.name, "worker");
+
+            assertThat(taskManager.stopTask(taskView.name)).isTrue();
+            assertThat(cancelled.await(5, SECONDS)).isTrue();
+        } finally {
+            taskManager.removeCancelListener(listener);
+        }
+    }
+
+    @Test
+    public void test_requeue_task_when_worker_lease_has_expired() throws Exception {
+        TaskView<Boolean> taskView = taskManager.startTask(deleteProjectTask("prj"));
+        TaskRequest request = taskManager.pollRequest("worker", 1, SECONDS);
+        taskManager.save(new TaskView<>(request.name, TaskView.State.RUNNING, 0.5, request.user, null, null));
+
+        assertThat(taskManager.requeueLostTasks()).containsOnly(taskView.name);
+
+        assertThat(taskManager.get(taskView.name).getState()).isEqualTo(TaskView.State.QUEUED);
+        assertThat(taskManager.pollRequest("worker", 1, SECONDS).attempts).isEqualTo(1);
+    }
+
+    @Test
+    public void test_do_not_requeue_task_with_lease() throws Exception {
+        TaskView<Boolean> taskView = taskManager.startTask(deleteProjectTask("prj"));
+        TaskRequest request = taskManager.pollRequest("worker", 1, SECONDS);
+        taskManager.lease(request.name, "worker");
+        taskManager.save(new TaskView<>(request.name, TaskView.State.RUNNING, 0.5, request.user, null, null));
+
+        assertThat(taskManager.requeueLostTasks()).isEmpty();
+        assertThat(taskManager.get(taskView.name).getState()).isEqualTo(TaskView.State.RUNNING);
+    }
+
+    @Test
+    public void test_queued_tasks_are_taken_in_order() throws Exception {
+        TaskView<Boolean> first = taskManager.startTask(deleteProjectTask("prj1"));
+        TaskView<Boolean> second = taskManager.startTask(deleteProjectTask("prj2"));
+
+        assertThat(taskManager.pollRequest("worker", 1, SECONDS).name).isEqualTo(first.name);
+        assertThat(taskManager.pollRequest("worker", 1, SECONDS).name).isEqualTo(second.name);
+    }
+
+    @Test
+    public void test_requeue_task_taken_by_a_lost_worker_before_running_it() throws Exception {
+        TaskView<Boolean> taskView = taskManager.startTask(deleteProjectTask("prj"));
+        assertThat(taskManager.pollRequest("lost", 1, SECONDS).name).isEqualTo(taskView.name);
+
+        assertThat(taskManager.requeueLostTasks()).containsOnly(taskView.name);
+
+        assertThat(taskManager.get(taskView.name).getState()).isEqualTo(TaskView.State.QUEUED);
+        taskManager.register("worker");
+        assertThat(taskManager.pollRequest("worker", 1, SECONDS).name).isEqualTo(taskView.name);
+        assertThat(taskManager.requeueLostTasks()).isEmpty();
+    }
+
+    @Test
+    public void test_do_not_requeue_task_taken_by_a_registered_worker() throws Exception {
+        taskManager.register("worker");
+        TaskView<Boolean> taskView = taskManager.startTask(deleteProjectTask("prj"));
+        taskManager.pollRequest("worker", 1, SECONDS);
+
+        assertThat(taskManager.requeueLostTasks()).isEmpty();
+        taskManager.started(taskView.name, "worker");
+        taskManager.unregister("worker");
+        assertThat(taskManager.requeueLostTasks()).isEmpty();
+    }
+
+    @Test
+    public void test_start_task_from_request_does_not_create_the_task() throws Exception {
+        TaskView<Object> taskView = taskManager.startTask(new TaskRequest("name", TaskRequest.Type.DELETE_PROJECT, User.local(),
+                singletonMap("projectId", "prj")), () -> { throw new AssertionError("task created"); });
+
+        assertThat(taskView.getState()).isEqualTo(TaskView.State.QUEUED);
+        assertThat(taskManager.pollRequest("worker", 1, SECONDS).argument("projectId")).isEqualTo("prj");
+    }
+
+    @Test
+    public void test_lost_task_is_in_error_after_max_attempts() throws Exception {
+        TaskManagerRedis oneAttempt = new TaskManagerRedis(new PropertiesProvider(new HashMap<String, String>() {{
+            put("redisAddress", "redis://redis:6379");
+            put("taskMaxAttempts", "1");
+        }}), "test:task:manager", batchDownloadQueue);
+        TaskView<Boolean> taskView = oneAttempt.startTask(deleteProjectTask("prj"));
+        TaskRequest request = oneAttempt.pollRequest("worker", 1, SECONDS);
+        oneAttempt.save(new TaskView<>(request.name, TaskView.State.RUNNING, 0.5, request.user, null, null));
+
+        assertThat(oneAttempt.requeueLostTasks()).containsOnly(taskView.name);
+
+        assertThat(oneAttempt.get(taskView.name).getState()).isEqualTo(TaskView.State.ERROR);
+        assertThat(oneAttempt.get(taskView.name).error).contains("worker lost");
+        assertThat(oneAttempt.pollRequest("worker", 10, MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void test_get_user_tasks_paginated() throws Exception {
+        TaskView<Boolean> t1 = taskManager.startTask(deleteProjectTask("prj1"));
+        Thread.sleep(2);
+        TaskView<Boolean> t2 = taskManager.startTask(deleteProjectTask("prj2"));
+        Thread.sleep(2);
+        TaskView<Boolean> t3 = taskManager.startTask(deleteProjectTask("prj3"));
+        taskManager.save(new TaskView<>("other", TaskView.State.DONE, 1, new User("foo"), null, null));
+
+        assertThat(names(taskManager.get(User.local(), Pattern.compile(".*"), 0, 0))).containsExactly(t3.name, t2.name, t1.name);
+        assertThat(names(taskManager.get(User.local(), Pattern.compile(".*"), 1, 1))).containsExactly(t2.name);
+        assertThat(names(taskManager.get(User.local(), Pattern.compile(Pattern.quote(t1.name)), 0, 0))).containsExactly(t1.name);
+        assertThat(names(taskManager.get(new User("foo"), Pattern.compile(".*"), 0, 0))).containsExactly("other");
+    }
+
+    @Test
+    public void test_clear_task_removes_it_from_user_tasks() {
+        taskManager.save(new TaskView<>("done", TaskView.State.DONE, 1, User.local(), null, null));
+
+        taskManager.clearTask("done");
+
+        assertThat(taskManager.get(User.local(), Pattern.compile(".*"), 0, 0)).isEmpty();
+        assertThat(taskManager.clearDoneTasks()).isEmpty();
+    }
+
+    @Test
+    public void test_clear_done_tasks_keeps_active_tasks() {
+        taskManager.save(new TaskView<>("done", TaskView.State.DONE, 1, User.local(), null, null));
+        taskManager.save(new TaskView<>("running", TaskView.State.RUNNING, 0.5, User.local(), null, null));
+
+        assertThat(names(taskManager.clearDoneTasks())).containsOnly("done");
+        assertThat(names(taskManager.get())).containsOnly("running");
+    }
+
+    @Test
+    public void test_purge_expired_tasks() {
+        taskManager.save(new TaskView<>("old", TaskView.State.DONE, 1, User.local(), null, null));
+        taskManager.save(new TaskView<>("recent", TaskView.State.DONE, 1, User.local(), null, null));
+        taskManager.save(new TaskView<>("running", TaskView.State.RUNNING, 0.5, User.local(), null, null));
+        redis.zadd("test:task:manager:finished", System.currentTimeMillis() - HOURS.toMillis(169), "old");
+
+        assertThat(taskManager.purgeExpiredTasks()).containsOnly("old");
+
+        assertThat(names(taskManager.get())).containsOnly("recent", "running");
+        assertThat(names(taskManager.get(User.local(), Pattern.compile(".*"), 0, 0))).containsOnly("recent", "running");
+    }
+
+    @Test
+    public void test_read_uncompressed_task_view() throws Exception {
+        TaskManagerRedis.TaskViewCodec codec = new TaskManagerRedis.TaskViewCodec();
+        TaskView<String> taskView = new TaskView<>("name", TaskView.State.DONE, 1, User.local(), "result", null);
+        byte[] json = codec.mapObjectMapper.writeValueAsBytes(taskView);
+
+        TaskView<?> decoded = (TaskView<?>) codec.getValueDecoder().decode(Unpooled.wrappedBuffer(json), null);
+
+        assertThat(decoded.name).isEqualTo("name");
+        assertThat(decoded.getResult()).isEqualTo("result");
+        assertThat(codec.getValueEncoder().encode(taskView).readableBytes()).isLessThan(json.length);
+    }
+
+    private static List<String> names(List<TaskView<?>> taskViews) {
+        return taskViews.stream().map(t -> t.name).collect(toList());
+    }
+
+    private DeleteProjectTask deleteProjectTask(String projectId) {
+        return new DeleteProjectTask(mock(Repository.class), mock(Indexer.class), User.local(), projectId);
+    }
 
     @After
     public void tearDown() throws Exception {
-        redis.del("test:task:manager");
+        redis.keys("*test:task:manager*").forEach(redis::del);
     }
 }
@@ -0,0 +1,110 @@
+package org.icij.datashare.tasks;
+
+import org.icij.datashare.user.User;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TaskProgressPublisherTest {
+    private final TaskManager taskManager = mock(TaskManager.class);
+    private final TaskProgressPublisher publisher = new TaskProgressPublisher(taskManager, HOURS.toMillis(1), 10);
+
+    @Test
+    public void test_subscription_starts_with_user_tasks() {
+        userTasks(User.local(), view("t1", TaskView.State.RUNNING, 0.1), view("t2", TaskView.State.DONE, 1));
+
+        try (TaskProgressPublisher.Subscription subscription = publisher.subscribe(User.local())) {
+            assertThat(names(subscription.next())).containsExactly("t1", "t2");
+            assertThat(subscription.next()).isEmpty();
+        }
+    }
+
+    @Test
+    public void test_publish_only_changed_tasks() {
+        userTasks(User.local(), view("t1", TaskView.State.RUNNING, 0.1), view("t2", TaskView.State.RUNNING, 0.1));
+        try (TaskProgressPublisher.Subscription subscription = publisher.subscribe(User.local())) {
+            subscription.next();
+
+            userTasks(User.local(), view("t1", TaskView.State.RUNNING, 0.5), view("t2", TaskView.State.RUNNING, 0.1));
+            publisher.publish();
+
+            List<TaskView<?>> changes = subscription.next();
+            assertThat(names(changes)).containsExactly("t1");
+            assertThat(changes.get(0).getProgress()).isEqualTo(0.5);
+        }
+    }
+
+    @Test
+    public void test_changes_are_coalesced_by_task() {
+        userTasks(User.local(), view("t1", TaskView.State.RUNNING, 0.1));
+        try (TaskProgressPublisher.Subscription subscription = publisher.subscribe(User.local())) {
+            subscription.next();
+
+            userTasks(User.local(), view("t1", TaskView.State.RUNNING, 0.5));
+            publisher.publish();
+            userTasks(User.local(), view("t1", TaskView.State.DONE, 1));
+            publisher.publish();
+
+            List<TaskView<?>> changes = subscription.next();
+            assertThat(changes).hasSize(1);
+            assertThat(changes.get(0).getState()).isEqualTo(TaskView.State.DONE);
+        }
+    }
+
+    @Test
+    public void test_tasks_are_read_once_per_user_for_all_subscribers() {
+        userTasks(User.local(), view("t1", TaskView.State.RUNNING, 0.1));
+        userTasks(new User("foo"), view("t2", TaskView.State.RUNNING, 0.1));
+        try (TaskProgressPublisher.Subscription s1 = publisher.subscribe(User.local());
+             TaskProgressPublisher.Subscription s2 = publisher.subscribe(User.local());
+             TaskProgressPublisher.Subscription s3 = publisher.subscribe(new User("foo"))) {
+            userTasks(User.local(), view("t1", TaskView.State.RUNNING, 0.5));
+
+            publisher.publish();
+
+            verify(taskManager, times(3)).get(eq(User.local()), any(Pattern.class), anyInt(), anyInt());
+            assertThat(names(s1.next())).containsExactly("t1");
+            assertThat(names(s2.next())).containsExactly("t1");
+            assertThat(names(s3.next())).containsExactly("t2");
+            assertThat(s3.next()).isEmpty();
+        }
+    }
+
+    @Test
+    public void test_close_subscription() {
+        userTasks(User.local());
+        TaskProgressPublisher.Subscription subscription = publisher.subscribe(User.local());
+        assertThat(publisher.getSubscriptionCount()).isEqualTo(1);
+
+        subscription.stream().close();
+
+        assertThat(subscription.hasNext()).isFalse();
+        assertThat(publisher.getSubscriptionCount()).isEqualTo(0);
+    }
+
+    private void userTasks(User user, TaskView<?>... views) {
+        when(taskManager.get(eq(user), any(Pattern.class), anyInt(), anyInt())).thenReturn(asList(views));
+    }
+
+    private static TaskView<?> view(String name, TaskView.State state, double progress) {
+        return new TaskView<>(name, state, progress, User.local(), null, null);
+    }
+
+    private static List<String> names(List<TaskView<?>> views) {
+        return views.stream().map(v -> v.name).collect(toList());
+    }
+}
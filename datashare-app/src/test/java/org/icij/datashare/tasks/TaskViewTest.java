@@ -31,6 +31,9 @@ public class TaskViewTest {
         });
         executor.execute(task);
         TaskView<String> taskView = new TaskView<>(task);
+        while (!task.isStarted()) {
+            Thread.yield();
+        }
 
         assertThat(taskView.getProgress()).isEqualTo(-2);
         assertThat(taskView.getState()).isEqualTo(TaskView.State.RUNNING);
@@ -39,6 +42,18 @@ public class TaskViewTest {
         assertThat(taskView.getState()).isEqualTo(TaskView.State.DONE);
     }
 
+    @Test
+    public void test_task_is_queued_until_it_is_run() {
+        MonitorableFutureTask<String> task = new MonitorableFutureTask<>(() -> "run");
+        TaskView<String> taskView = new TaskView<>(task);
+
+        assertThat(taskView.getState()).isEqualTo(TaskView.State.QUEUED);
+        assertThat(taskView.isActive()).isTrue();
+        task.run();
+        assertThat(taskView.getState()).isEqualTo(TaskView.State.DONE);
+        assertThat(taskView.isActive()).isFalse();
+    }
+
     @Test
     public void test_get_result_sync_when_task_is_not_local() {
         TaskView<Object> taskView = new TaskView<>("task", TaskView.State.DONE, 1, User.local(), null, new HashMap<>());
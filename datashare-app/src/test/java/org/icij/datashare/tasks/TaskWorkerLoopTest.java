@@ -0,0 +1,117 @@
+package org.icij.datashare.tasks;
+
+import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.Repository;
+import org.icij.datashare.extension.PipelineRegistry;
+import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.user.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TaskWorkerLoopTest {
+    private final Jedis redis = new Jedis("redis");
+    private final PropertiesProvider propertiesProvider = new PropertiesProvider(new HashMap<String, String>() {{
+        put("redisAddress", "redis://redis:6379");
+        put("taskWorkerThreads", "2");
+        put("taskLeaseMillis", "300");
+    }});
+    private final TaskManagerRedis taskManager = new TaskManagerRedis(propertiesProvider, "test:task:worker", new LinkedBlockingQueue<>());
+    private final Indexer indexer = mock(Indexer.class);
+    private final Repository repository = mock(Repository.class);
+    private final TaskFactory factory = mock(TaskFactory.class);
+    private final TaskWorkerLoop worker = new TaskWorkerLoop(taskManager, factory, mock(PipelineRegistry.class), propertiesProvider);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() {
+        when(factory.createDeleteProjectTask(any(User.class), anyString())).thenAnswer(invocation ->
+                new DeleteProjectTask(repository, indexer, invocation.getArgumentAt(0, User.class), invocation.getArgumentAt(1, String.class)));
+        executor.submit(worker);
+    }
+
+    @Test
+    public void test_run_queued_task() throws Exception {
+        when(indexer.deleteAll("prj")).thenReturn(true);
+
+        TaskView<Boolean> taskView = taskManager.startTask(new DeleteProjectTask(repository, indexer, User.local(), "prj"));
+
+        TaskView<?> done = waitFor(taskView.name, TaskView.State.DONE);
+        assertThat(done.getResult()).isEqualTo(true);
+        assertThat(done.getProgress()).isEqualTo(1.0);
+        assertThat(done.getUser()).isEqualTo(User.local());
+    }
+
+    @Test
+    public void test_stop_running_task() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(indexer.deleteAll("prj")).thenAnswer(invocation -> {
+            started.countDown();
+            Thread.sleep(10_000);
+            return true;
+        });
+        TaskView<Boolean> taskView = taskManager.startTask(new DeleteProjectTask(repository, indexer, User.local(), "prj"));
+        assertThat(started.await(5, SECONDS)).isTrue();
+
+        assertThat(taskManager.stopTask(taskView.name)).isTrue();
+
+        waitFor(taskView.name, TaskView.State.CANCELLED);
+    }
+
+    @Test
+    public void test_task_creation_failure() throws Exception {
+        when(factory.createDeleteProjectTask(any(User.class), eq("bad"))).thenThrow(new IllegalStateException("cannot create"));
+
+        TaskView<Boolean> taskView = taskManager.startTask(new DeleteProjectTask(repository, indexer, User.local(), "bad"));
+
+        assertThat(waitFor(taskView.name, TaskView.State.ERROR).error).contains("cannot create");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_create_task_with_missing_argument() {
+        worker.createTask(new TaskRequest("name", TaskRequest.Type.REINDEX, User.local(), singletonMap("other", "value")));
+    }
+
+    @Test
+    public void test_create_task_from_request() {
+        MonitorableFutureTask<?> task = worker.createTask(new DeleteProjectTask(repository, indexer, User.local(), "prj").toRequest("name"));
+
+        assertThat(task.getUser()).isEqualTo(User.local());
+        assertThat(task.getLane()).isEqualTo(TaskLane.MAINTENANCE);
+    }
+
+    private TaskView<?> waitFor(String taskName, TaskView.State state) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            TaskView<?> view = taskManager.get(taskName);
+            if (view != null && view.getState() == state) {
+                return view;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError(taskName + " is not " + state + ": " + taskManager.get(taskName).getState());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        worker.close();
+        executor.shutdown();
+        executor.awaitTermination(5, SECONDS);
+        redis.keys("*test:task:worker*").forEach(redis::del);
+    }
+}
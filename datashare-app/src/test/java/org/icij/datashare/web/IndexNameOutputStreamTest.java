@@ -0,0 +1,51 @@
+package org.icij.datashare.web;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class IndexNameOutputStreamTest {
+    @Test
+    public void test_versioned_index_is_replaced_by_its_alias() throws IOException {
+        assertThat(replace("{\"_index\":\"prj-v2\",\"_id\":\"doc\"}", "prj"))
+                .isEqualTo("{\"_index\":\"prj\",\"_id\":\"doc\"}");
+    }
+
+    @Test
+    public void test_other_indices_are_kept() throws IOException {
+        assertThat(replace("{\"_index\":\"other-v2\"},{\"_index\":\"prj-vx\"},{\"_index\":\"prj\"}", "prj"))
+                .isEqualTo("{\"_index\":\"other-v2\"},{\"_index\":\"prj-vx\"},{\"_index\":\"prj\"}");
+        assertThat(new String(IndexNameOutputStream.replace("{\"_index\":\"prj-v2\"}".getBytes(UTF_8), emptyList()), UTF_8))
+                .isEqualTo("{\"_index\":\"prj-v2\"}");
+    }
+
+    @Test
+    public void test_several_aliases_with_non_ascii_content() throws IOException {
+        assertThat(replace("[{\"_index\":\"prj-v1\",\"content\":\"été\"},{\"_index\":\"prjé-v12\"}]", "prj", "prjé"))
+                .isEqualTo("[{\"_index\":\"prj\",\"content\":\"été\"},{\"_index\":\"prjé\"}]");
+    }
+
+    @Test
+    public void test_index_field_split_between_writes() throws IOException {
+        String response = "{\"hits\":[{\"_index\":\"prj-v3\",\"_id\":\"1\"},{\"_index\":\"prj-v3\",\"_id\":\"2\"}]}";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IndexNameOutputStream stream = new IndexNameOutputStream(output, singletonList("prj"));
+        for (byte b : response.getBytes(UTF_8)) {
+            stream.write(new byte[] {b}, 0, 1);
+        }
+        stream.finish();
+
+        assertThat(output.toString("UTF-8")).isEqualTo("{\"hits\":[{\"_index\":\"prj\",\"_id\":\"1\"},{\"_index\":\"prj\",\"_id\":\"2\"}]}");
+    }
+
+    private static String replace(String response, String... indexNames) throws IOException {
+        return new String(IndexNameOutputStream.replace(response.getBytes(UTF_8), asList(indexNames)), UTF_8);
+    }
+}
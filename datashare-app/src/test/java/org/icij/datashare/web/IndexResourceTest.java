@@ -1,12 +1,15 @@
 package org.icij.datashare.web;
 
 import net.codestory.http.filters.basic.BasicAuthFilter;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
 import org.icij.datashare.PropertiesProvider;
 import org.icij.datashare.session.DatashareUser;
 import org.icij.datashare.session.LocalUserFilter;
 import org.icij.datashare.test.ElasticsearchRule;
 import org.icij.datashare.text.DocumentBuilder;
 import org.icij.datashare.text.indexing.elasticsearch.ElasticsearchIndexer;
+import org.icij.datashare.text.indexing.elasticsearch.SearchCache;
 import org.icij.datashare.user.User;
 import org.icij.datashare.web.testhelpers.AbstractProdWebServerTest;
 import org.junit.After;
@@ -14,12 +17,16 @@ import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 
 import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDIATE;
+import static org.fest.assertions.Assertions.assertThat;
 import static org.icij.datashare.test.ElasticsearchRule.TEST_INDEXES;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class IndexResourceTest extends AbstractProdWebServerTest {
     @ClassRule public static ElasticsearchRule esRule = new ElasticsearchRule(TEST_INDEXES);
@@ -27,7 +34,7 @@ public class IndexResourceTest extends AbstractProdWebServerTest {
 
     @Test
     public void test_no_auth_get_forward_request_to_elastic() {
-        configure(routes -> routes.add(new IndexResource(indexer)).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
             put("defaultUserName", "test");
         }}))));
         get("/api/index/search/test-datashare/_search").should().respond(200).contain("\"successful\":1");
@@ -35,32 +42,97 @@ public class IndexResourceTest extends AbstractProdWebServerTest {
 
     @Test
     public void test_no_auth_get_forward_request_to_elastic_if_granted_to_read_index() {
-        configure(routes -> routes.add(new IndexResource(indexer)).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
             put("defaultUserName", "test");
         }}))));
         get("/api/index/search/unauthorized/_search").should().respond(401);
     }
     @Test
     public void test_no_auth_get_unauthorized_on_unknown_index() {
-        configure(routes -> routes.add(new IndexResource(indexer)).filter(LocalUserFilter.class));
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).filter(LocalUserFilter.class));
         get("/api/index/search/hacker/bar/baz").should().respond(401);
     }
     @Test
     public void test_put_create_local_index_in_local_mode() {
-        configure(routes -> routes.add(new IndexResource(indexer)).filter(LocalUserFilter.class));
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).filter(LocalUserFilter.class));
         put("/api/index/index_name").should().respond(201);
     }
     @Test
     public void test_no_auth_post_forward_request_to_elastic_with_body() {
-        configure(routes -> routes.add(new IndexResource(indexer)).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
             put("defaultUserName", "test");
         }}))));
         post("/api/index/search/test-datashare/_search", "{}").should().respond(200).contain("\"successful\":1");
     }
 
+    @Test
+    public void test_no_auth_post_forward_request_body_to_elastic() throws IOException {
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
+            put("defaultUserName", "test");
+        }}))));
+        indexer.add("test-datashare", DocumentBuilder.createDoc("doc1").with("foo bar").build());
+        indexer.add("test-datashare", DocumentBuilder.createDoc("doc2").with("baz qux").build());
+
+        post("/api/index/search/test-datashare/_search", "{\"query\":{\"match\":{\"content\":\"qux\"}}}").should()
+                .respond(200).haveType("application/json").contain("doc2").not().contain("doc1");
+    }
+
+    @Test
+    public void test_search_cache() throws Exception {
+        SearchCache searchCache = new SearchCache(new PropertiesProvider(new HashMap<String, String>() {{
+            put("searchCacheSize", "1M");
+        }}));
+        ElasticsearchIndexer indexer = new ElasticsearchIndexer(esRule.client, new PropertiesProvider(), searchCache).withRefresh(IMMEDIATE);
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, searchCache)).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
+            put("defaultUserName", "test");
+        }}))));
+        indexer.add("test-datashare", DocumentBuilder.createDoc("doc1").with("foo bar").build());
+        Thread.sleep(1000);
+
+        post("/api/index/search/test-datashare/_count", "{\"query\":{\"match_all\":{}}}").should().respond(200).contain("\"count\":1");
+        post("/api/index/search/test-datashare/_count", "{ \"query\": { \"match_all\": {} } }").should().respond(200).contain("\"count\":1");
+        get("/api/index/cache").should().respond(200).contain("\"hits\":1").contain("\"misses\":1").contain("\"entries\":1");
+
+        indexer.add("test-datashare", DocumentBuilder.createDoc("doc2").with("baz qux").build());
+        post("/api/index/search/test-datashare/_count", "{\"query\":{\"match_all\":{}}}").should().respond(200).contain("\"count\":2");
+        get("/api/index/cache?format=openmetrics").should().respond(200).contain("resource=\"misses\"} 2");
+    }
+
+    @Test
+    public void test_malformed_content_length_is_unknown() {
+        net.codestory.http.Request request = mock(net.codestory.http.Request.class);
+        when(request.header("Content-Length")).thenReturn("12a");
+
+        assertThat(IndexResource.contentLength(request)).isEqualTo(-1);
+    }
+
+    @Test
+    public void test_request_body_is_buffered_to_be_retried_on_another_node() throws IOException {
+        net.codestory.http.Request request = mock(net.codestory.http.Request.class);
+        when(request.inputStream()).thenReturn(new ByteArrayInputStream("{\"query\":{}}".getBytes()));
+
+        HttpEntity entity = IndexResource.requestEntity(request);
+
+        assertThat(entity.isRepeatable()).isTrue();
+        assertThat(EntityUtils.toString(entity)).isEqualTo("{\"query\":{}}");
+    }
+
+    @Test
+    public void test_request_body_longer_than_the_buffer_is_streamed() throws IOException {
+        byte[] body = new byte[IndexResource.MAX_BUFFERED_REQUEST_SIZE + 10];
+        Arrays.fill(body, (byte) 'a');
+        net.codestory.http.Request request = mock(net.codestory.http.Request.class);
+        when(request.inputStream()).thenReturn(new ByteArrayInputStream(body));
+
+        HttpEntity entity = IndexResource.requestEntity(request);
+
+        assertThat(entity.isRepeatable()).isFalse();
+        assertThat(EntityUtils.toByteArray(entity)).isEqualTo(body);
+    }
+
     @Test
     public void test_no_auth_options_forward_request_to_elastic() {
-        configure(routes -> routes.add(new IndexResource(indexer)).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).filter(new LocalUserFilter(new PropertiesProvider(new HashMap<String, String>() {{
             put("defaultUserName", "test");
         }}))));
         options("/api/index/search/test-datashare").should().respond(200);
@@ -68,7 +140,7 @@ public class IndexResourceTest extends AbstractProdWebServerTest {
 
     @Test
     public void test_delete_should_return_method_not_allowed() {
-        configure(routes -> routes.add(new IndexResource(indexer)).filter(LocalUserFilter.class));
+        configure(routes -> routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).filter(LocalUserFilter.class));
         delete("/api/index/search/foo/bar").should().respond(405);
     }
 
@@ -97,7 +169,7 @@ public class IndexResourceTest extends AbstractProdWebServerTest {
     @Test
     public void test_auth_forward_request_with_user_logged_on_allow_search_on_multiple_indices() throws IOException {
         configure(routes ->
-                routes.add(new IndexResource(indexer)).
+                routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).
                         filter(new BasicAuthFilter("/", "icij", DatashareUser.singleUser(new User(new HashMap<String, Object>() {
                             {
                                 this.put("uid", "cecile");
@@ -135,13 +207,14 @@ public class IndexResourceTest extends AbstractProdWebServerTest {
     @Before
     public void setUp() {
         configure(routes ->
-                routes.add(new IndexResource(indexer)).
+                routes.add(new IndexResource(indexer, esRule.client, new SearchCache(new PropertiesProvider()))).
                 filter(new BasicAuthFilter("/", "icij", DatashareUser.singleUser("cecile"))));
     }
 
     @After
     public void tearDown() throws Exception {
         esRule.delete("cecile-datashare", "index_name");
+        esRule.removeAll();
     }
 }
 
@@ -4,21 +4,33 @@ import org.icij.datashare.PropertiesProvider;
 import org.icij.datashare.Repository;
 import org.icij.datashare.session.LocalUserFilter;
 import org.icij.datashare.session.YesBasicAuthFilter;
+import org.icij.datashare.tasks.DeleteProjectTask;
+import org.icij.datashare.tasks.ReindexTask;
+import org.icij.datashare.tasks.TaskFactory;
+import org.icij.datashare.tasks.TaskManagerMemory;
 import org.icij.datashare.text.Project;
 import org.icij.datashare.text.indexing.Indexer;
+import org.icij.datashare.user.User;
 import org.icij.datashare.web.testhelpers.AbstractProdWebServerTest;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
-import java.sql.SQLException;
-
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class ProjectResourceTest extends AbstractProdWebServerTest {
     @Mock Repository repository;
     @Mock Indexer indexer;
+    @Mock TaskFactory taskFactory;
+    private final TaskManagerMemory taskManager = new TaskManagerMemory(new PropertiesProvider());
 
     @Test
     public void test_get_project() {
@@ -44,23 +56,50 @@ public class ProjectResourceTest extends AbstractProdWebServerTest {
     }
 
     @Test
-    public void test_delete_project() throws SQLException {
-        when(repository.deleteAll("local-datashare")).thenReturn(true).thenReturn(false);
-        delete("/api/project/local-datashare").should().respond(204);
-        delete("/api/project/local-datashare").should().respond(404);
+    public void test_delete_project() throws Exception {
+        when(repository.deleteAll("local-datashare")).thenReturn(true);
+        delete("/api/project/local-datashare").should().respond(202).haveType("application/json").contain("\"name\":\"org.icij.datashare.tasks.DeleteProjectTask@");
+
+        assertThat(taskManager.waitTasksToBeDone(1, SECONDS).get(0).getResult()).isEqualTo(true);
+        verify(indexer).deleteAll("local-datashare");
+        verify(repository).deleteAll("local-datashare");
     }
 
     @Test
     public void test_delete_project_only_delete_index() throws Exception {
-        when(repository.deleteAll("local-datashare")).thenReturn(false).thenReturn(false);
-        when(indexer.deleteAll("local-datashare")).thenReturn(true).thenReturn(false);
-        delete("/api/project/local-datashare").should().respond(204);
-        delete("/api/project/local-datashare").should().respond(404);
+        when(repository.deleteAll("local-datashare")).thenReturn(false);
+        when(indexer.deleteAll("local-datashare")).thenReturn(true);
+        delete("/api/project/local-datashare").should().respond(202);
+
+        assertThat(taskManager.waitTasksToBeDone(1, SECONDS).get(0).getResult()).isEqualTo(true);
+    }
+
+    @Test
+    public void test_delete_unknown_project() throws Exception {
+        delete("/api/project/local-datashare").should().respond(202);
+
+        assertThat(taskManager.waitTasksToBeDone(1, SECONDS).get(0).getResult()).isEqualTo(false);
+    }
+
+    @Test
+    public void test_reindex_project() {
+        ReindexTask reindexTask = mock(ReindexTask.class);
+        when(taskFactory.createReindexTask(User.local(), "local-datashare")).thenReturn(reindexTask);
+
+        post("/api/project/local-datashare/reindex").should().respond(202).haveType("application/json");
+        verify(taskFactory).createReindexTask(User.local(), "local-datashare");
+    }
+
+    @Test
+    public void test_reindex_project_with_unauthorized_user() {
+        configure(routes -> routes.add(new ProjectResource(repository, taskManager, taskFactory)).
+                filter(new YesBasicAuthFilter(new PropertiesProvider())));
+        post("/api/project/projectId/reindex").withPreemptiveAuthentication("hacker", "pass").should().respond(401);
     }
 
     @Test
     public void test_delete_project_with_unauthorized_user() {
-        configure(routes -> routes.add(new ProjectResource(repository, indexer)).
+        configure(routes -> routes.add(new ProjectResource(repository, taskManager, taskFactory)).
                 filter(new YesBasicAuthFilter(new PropertiesProvider())));
         when(repository.deleteAll("projectId")).thenReturn(true);
         delete("/api/project/hacker-datashare").withPreemptiveAuthentication("hacker", "pass").should().respond(401);
@@ -70,7 +109,14 @@ public class ProjectResourceTest extends AbstractProdWebServerTest {
     @Before
     public void setUp() {
         initMocks(this);
-        configure(routes -> routes.add(new ProjectResource(repository, indexer)).
+        when(taskFactory.createDeleteProjectTask(any(User.class), anyString())).thenAnswer(a ->
+                new DeleteProjectTask(repository, indexer, a.getArgumentAt(0, User.class), a.getArgumentAt(1, String.class)));
+        configure(routes -> routes.add(new ProjectResource(repository, taskManager, taskFactory)).
                 filter(new LocalUserFilter(new PropertiesProvider())));
     }
+
+    @After
+    public void tearDown() throws Exception {
+        taskManager.shutdownAndAwaitTermination(1, SECONDS);
+    }
 }
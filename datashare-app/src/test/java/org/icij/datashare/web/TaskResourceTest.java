@@ -22,6 +22,8 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.*;
 import org.mockito.ArgumentCaptor;
 
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
@@ -289,11 +291,14 @@ public class TaskResourceTest extends AbstractProdWebServerTest {
     }
 
     @Test
-    public void test_cannot_clean_running_task() {
+    public void test_cannot_clean_running_task() throws Exception {
         TaskView<String> dummyTask = taskManager.startTask(() -> {
             Thread.sleep(10000);
             return "ok";
         });
+        while (taskManager.get(dummyTask.name).getState() == TaskView.State.QUEUED) {
+            Thread.sleep(10);
+        }
         assertThat(taskManager.get(dummyTask.name).getState()).isEqualTo(TaskView.State.RUNNING);
         delete("/api/task/clean/" + dummyTask.name).should().respond(403);
         assertThat(taskManager.get()).hasSize(1);
@@ -355,6 +360,24 @@ public class TaskResourceTest extends AbstractProdWebServerTest {
         assertThat(taskManager.get()).hasSize(0);
     }
 
+    @Test(timeout = 10000)
+    public void test_task_events_do_not_hold_the_http_threads() throws Exception {
+        taskManager.startTask(() -> "ok");
+        taskManager.waitTasksToBeDone(1, SECONDS);
+        List<HttpURLConnection> subscriptions = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                HttpURLConnection subscription = (HttpURLConnection) new URL("http://localhost:" + port() + "/api/task/events").openConnection();
+                assertThat(subscription.getResponseCode()).isEqualTo(200);
+                subscriptions.add(subscription);
+            }
+
+            get("/api/task/all").should().respond(200);
+        } finally {
+            subscriptions.forEach(HttpURLConnection::disconnect);
+        }
+    }
+
     @NotNull
     private HashMap<String, String> getDefaultProperties() {
         return new HashMap<String, String>() {{
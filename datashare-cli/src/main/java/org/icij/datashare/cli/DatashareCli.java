@@ -63,10 +63,33 @@ public class DatashareCli {
         DatashareCliOptions.resume(parser);
         DatashareCliOptions.scrollSize(parser);
         DatashareCliOptions.scrollSlices(parser);
+        DatashareCliOptions.searchAfter(parser);
+        DatashareCliOptions.searchCacheSize(parser);
+        DatashareCliOptions.searchCoalescing(parser);
+        DatashareCliOptions.reindexSlices(parser);
         DatashareCliOptions.redisPoolSize(parser);
         DatashareCliOptions.elasticsearchDataPath(parser);
+        DatashareCliOptions.elasticsearchSearchThreads(parser);
+        DatashareCliOptions.elasticsearchWriteThreads(parser);
+        DatashareCliOptions.elasticsearchWriteQueueSize(parser);
+        DatashareCliOptions.elasticsearchIndexingBuffer(parser);
+        DatashareCliOptions.elasticsearchFieldDataCacheSize(parser);
+        DatashareCliOptions.elasticsearchQueryCacheSize(parser);
+        DatashareCliOptions.elasticsearchProcess(parser);
+        DatashareCliOptions.elasticsearchHeapSize(parser);
         DatashareCliOptions.reportName(parser);
         DatashareCliOptions.parallelism(parser);
+        DatashareCliOptions.taskIngestThreads(parser);
+        DatashareCliOptions.taskNlpThreads(parser);
+        DatashareCliOptions.taskBatchThreads(parser);
+        DatashareCliOptions.taskInteractiveThreads(parser);
+        DatashareCliOptions.taskMaintenanceThreads(parser);
+        DatashareCliOptions.taskQueueSize(parser);
+        DatashareCliOptions.taskWorkerThreads(parser);
+        DatashareCliOptions.taskLeaseMillis(parser);
+        DatashareCliOptions.taskMaxAttempts(parser);
+        DatashareCliOptions.taskRetentionHours(parser);
+        DatashareCliOptions.taskProgressIntervalMillis(parser);
         DatashareCliOptions.fileParserParallelism(parser);
         DatashareCliOptions.nlpParallelism(parser);
         DatashareCliOptions.followSymlinks(parser);
@@ -82,6 +105,19 @@ public class DatashareCli {
         DatashareCliOptions.smtpUrl(parser);
 
         DatashareCliOptions.maxContentLength(parser);
+        DatashareCliOptions.indexShards(parser);
+        DatashareCliOptions.indexReplicas(parser);
+        DatashareCliOptions.indexExpectedSize(parser);
+        DatashareCliOptions.indexMaxShardSize(parser);
+        DatashareCliOptions.contentPageSize(parser);
+        DatashareCliOptions.duplicateFilter(parser);
+        DatashareCliOptions.bulkIndexing(parser);
+        DatashareCliOptions.bulkIndexingActions(parser);
+        DatashareCliOptions.bulkIndexingSize(parser);
+        DatashareCliOptions.bulkIndexingFlushInterval(parser);
+        DatashareCliOptions.bulkIndexingConcurrentRequests(parser);
+        DatashareCliOptions.ingestSettings(parser);
+        DatashareCliOptions.ingestForceMergeSegments(parser);
 
         DatashareCliOptions.clusterName(parser);
         DatashareCliOptions.createIndex(parser);
@@ -90,6 +126,11 @@ public class DatashareCli {
         DatashareCliOptions.defaultProject(parser);
 
         DatashareCliOptions.esHost(parser);
+        DatashareCliOptions.esSniffInterval(parser);
+        DatashareCliOptions.esMaxConnections(parser);
+        DatashareCliOptions.esMaxConnectionsPerHost(parser);
+        DatashareCliOptions.esKeepAlive(parser);
+        DatashareCliOptions.esCompression(parser);
         DatashareCliOptions.queueName(parser);
 
         DatashareCliOptions.cors(parser);
@@ -287,6 +287,38 @@ public final class DatashareCliOptions {
                 .ofType(Integer.class).defaultsTo(1);
     }
 
+    public static void searchAfter(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("searchAfter"), "Iterate over search results with search_after requests, shard by shard, " +
+                        "instead of scroll contexts. Scroll slices are then groups of shards")
+                .withRequiredArg()
+                .ofType(Boolean.class).defaultsTo(false);
+    }
+
+    public static void searchCacheSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("searchCacheSize"), "Size of the cache of the search and count responses of the index proxy. " +
+                        "Only enable it if the indices are written by this instance. Human readable suffix K/M/G (Default 0 : no cache)")
+                .withRequiredArg()
+                .withValuesConvertedBy(regex("[0-9]+[KMG]?"));
+    }
+
+    public static void searchCoalescing(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("searchCoalescing"), "Identical search and count requests sent to the index proxy while the same request " +
+                        "is running wait for its response instead of being sent to elasticsearch")
+                .withRequiredArg()
+                .ofType(Boolean.class).defaultsTo(false);
+    }
+
+    public static void reindexSlices(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("reindexSlices"), "Number of slices copied in parallel when an index is reindexed into a new version " +
+                        "(0 for one slice per shard)")
+                .withRequiredArg()
+                .ofType(Integer.class).defaultsTo(0);
+    }
+
      public static void redisPoolSize(OptionParser parser) {
         parser.acceptsAll(
                 singletonList("redisPoolSize"), "Redis pool size used for each redis collection")
@@ -301,6 +333,66 @@ public final class DatashareCliOptions {
                 .ofType(String.class).defaultsTo("/home/datashare/es");
     }
 
+    public static void elasticsearchSearchThreads(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchSearchThreads"), "Size of the search thread pool of embedded Elasticsearch")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    public static void elasticsearchWriteThreads(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchWriteThreads"), "Size of the write thread pool of embedded Elasticsearch " +
+                        "(at most the number of processors + 1)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    public static void elasticsearchWriteQueueSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchWriteQueueSize"), "Size of the write queue of embedded Elasticsearch")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    public static void elasticsearchIndexingBuffer(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchIndexingBuffer"), "Indexing buffer of embedded Elasticsearch, " +
+                        "as a percentage of the heap (10%) or a size (256mb)")
+                .withRequiredArg()
+                .ofType(String.class);
+    }
+
+    public static void elasticsearchFieldDataCacheSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchFieldDataCacheSize"), "Limit of the field data cache of embedded Elasticsearch, " +
+                        "as a percentage of the heap (20%) or a size (512mb)")
+                .withRequiredArg()
+                .ofType(String.class);
+    }
+
+    public static void elasticsearchQueryCacheSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchQueryCacheSize"), "Limit of the query cache of embedded Elasticsearch, " +
+                        "as a percentage of the heap (10%) or a size (256mb)")
+                .withRequiredArg()
+                .ofType(String.class);
+    }
+
+    public static void elasticsearchProcess(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchProcess"), "Runs embedded Elasticsearch in a child process with its own heap")
+                .withRequiredArg()
+                .ofType(Boolean.class).defaultsTo(false);
+    }
+
+    public static void elasticsearchHeapSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchHeapSize"), "Heap size of the embedded Elasticsearch child process (for example 2g)")
+                .withRequiredArg()
+                .withValuesConvertedBy(regex("[0-9]+[kmgKMG]?"));
+    }
+
     public static void reportName(OptionParser parser) {
         parser.acceptsAll(
                 singletonList("reportName"), "name of the map for the report map (where index results are stored). " +
@@ -341,14 +433,148 @@ public final class DatashareCliOptions {
                 .defaultsTo(DEFAULT_PARALLELISM);
     }
 
+    static void taskIngestThreads(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskIngestThreads"),
+                "Number of threads running the scan, index and deduplicate tasks (defaults to parallelism).")
+                .withRequiredArg()
+                .ofType( Integer.class );
+    }
+
+    static void taskNlpThreads(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskNlpThreads"),
+                "Number of threads running the NLP tasks (defaults to parallelism).")
+                .withRequiredArg()
+                .ofType( Integer.class );
+    }
+
+    static void taskBatchThreads(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskBatchThreads"),
+                "Number of threads running the batch search and batch download tasks.")
+                .withRequiredArg()
+                .ofType( Integer.class )
+                .defaultsTo(2);
+    }
+
+    static void taskInteractiveThreads(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskInteractiveThreads"),
+                "Number of threads running the short tasks feeding the index and NLP tasks (scan, resume NLP).")
+                .withRequiredArg()
+                .ofType( Integer.class )
+                .defaultsTo(2);
+    }
+
+    static void taskMaintenanceThreads(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskMaintenanceThreads"),
+                "Number of threads running the other tasks (api keys, project deletion...).")
+                .withRequiredArg()
+                .ofType( Integer.class )
+                .defaultsTo(2);
+    }
+
+    static void taskQueueSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskQueueSize"),
+                "Maximum number of tasks waiting for a thread in each task lane, 0 for no limit. " +
+                        "Tasks started when the queue is full are rejected.")
+                .withRequiredArg()
+                .ofType( Integer.class )
+                .defaultsTo(0);
+    }
+
+    static void taskWorkerThreads(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskWorkerThreads"),
+                "Number of tasks run in parallel by a TASK_WORKER node (defaults to parallelism).")
+                .withRequiredArg()
+                .ofType( Integer.class );
+    }
+
+    static void taskLeaseMillis(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskLeaseMillis"),
+                "Time after which a task is queued again if its TASK_WORKER node stops sending heartbeats (in milliseconds).")
+                .withRequiredArg()
+                .ofType( Long.class )
+                .defaultsTo(30000L);
+    }
+
+    static void taskMaxAttempts(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskMaxAttempts"),
+                "Number of times a task is run before it is set in error, when its TASK_WORKER nodes are lost.")
+                .withRequiredArg()
+                .ofType( Integer.class )
+                .defaultsTo(3);
+    }
+
+    static void taskRetentionHours(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskRetentionHours"),
+                "Time after which the finished tasks are removed from the redis task registry (in hours, 0 to keep them).")
+                .withRequiredArg()
+                .ofType( Integer.class )
+                .defaultsTo(168);
+    }
+
+    static void taskProgressIntervalMillis(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("taskProgressIntervalMillis"),
+                "Minimum interval between two task progress events sent to the web clients (in milliseconds).")
+                .withRequiredArg()
+                .ofType( Long.class )
+                .defaultsTo(1000L);
+    }
+
     static void esHost(OptionParser parser) {
         parser.acceptsAll(
-                singletonList("elasticsearchAddress"), "Elasticsearch host address")
+                singletonList("elasticsearchAddress"), "Elasticsearch host address. Several comma separated hosts of the same cluster can be given")
                 .withRequiredArg()
                 .ofType(String.class)
                 .defaultsTo("http://elasticsearch:9200");
     }
 
+    static void esSniffInterval(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchSniffIntervalSeconds"), "Interval in seconds between two discoveries of the " +
+                        "elasticsearch cluster nodes, and sniffing on node failure (Default 0 : no sniffing)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    static void esMaxConnections(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchMaxConnections"), "Max number of connections to elasticsearch (Default 30)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    static void esMaxConnectionsPerHost(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchMaxConnectionsPerHost"), "Max number of connections to each elasticsearch node (Default 10)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    static void esKeepAlive(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchKeepAliveSeconds"), "Time in seconds an idle connection to elasticsearch is kept alive " +
+                        "(Default : as long as the server allows)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    static void esCompression(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("elasticsearchCompression"), "Compress requests sent to elasticsearch with gzip")
+                .withRequiredArg()
+                .ofType(Boolean.class).defaultsTo(false);
+    }
+
     static void dataSourceUrl(OptionParser parser) {
         parser.acceptsAll(
                 singletonList("dataSourceUrl"), "Datasource URL")
@@ -490,6 +716,105 @@ public final class DatashareCliOptions {
                 .withValuesConvertedBy(regex("[0-9]+[KMG]?"));
     }
 
+    public static void indexShards(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("indexShards"), "Number of shards of the created indices " +
+                        "(Default 1, or computed from indexExpectedSize if it is set)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    public static void indexReplicas(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("indexReplicas"), "Number of replicas of the created indices (Default 1)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    public static void indexExpectedSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("indexExpectedSize"), "Expected size of the created indices, used to compute their number of shards " +
+                        "when indexShards is not set. Human readable suffix K/M/G for KB/MB/GB")
+                .withRequiredArg()
+                .withValuesConvertedBy(regex("[0-9]+[KMG]?"));
+    }
+
+    public static void indexMaxShardSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("indexMaxShardSize"), "Max size of a shard when the number of shards is computed from " +
+                        "indexExpectedSize. Human readable suffix K/M/G for KB/MB/GB (Default 30G)")
+                .withRequiredArg()
+                .withValuesConvertedBy(regex("[0-9]+[KMG]?"));
+    }
+
+    public static void contentPageSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("contentPageSize"), "Also store the extracted text in pages of this number of chars, so that " +
+                        "it is read page by page in the document viewer. Human readable suffix K/M/G (Default 0 : no pages)")
+                .withRequiredArg()
+                .withValuesConvertedBy(regex("[0-9]+[KMG]?"));
+    }
+
+    public static void duplicateFilter(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("duplicateFilter"), "Check duplicates with an in-memory filter seeded with the index ids at index task start " +
+                        "instead of one elasticsearch request per document")
+                .withRequiredArg()
+                .ofType(Boolean.class).defaultsTo(false);
+    }
+
+    public static void bulkIndexing(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("bulkIndexing"), "Index extracted documents with buffered bulk requests instead of one request per document")
+                .withRequiredArg()
+                .ofType(Boolean.class).defaultsTo(false);
+    }
+
+    public static void bulkIndexingActions(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("bulkIndexingActions"), "Number of documents that triggers a bulk request flush when bulk indexing (Default 1000)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    public static void bulkIndexingSize(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("bulkIndexingSize"), "Size of buffered documents that triggers a bulk request flush when bulk indexing. " +
+                        "Human readable suffix K/M/G for KB/MB/GB (Default 5M)")
+                .withRequiredArg()
+                .withValuesConvertedBy(regex("[0-9]+[KMG]?"));
+    }
+
+    public static void bulkIndexingFlushInterval(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("bulkIndexingFlushIntervalSeconds"), "Max time in seconds before buffered documents are flushed when bulk indexing (Default 5)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    public static void bulkIndexingConcurrentRequests(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("bulkIndexingConcurrentRequests"), "Max number of bulk requests in flight when bulk indexing (Default 2)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
+    public static void ingestSettings(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("ingestSettings"), "Disable refresh, set replicas to 0 and make translog async on the index " +
+                        "while an index task is running. Original settings are restored at the end of the task")
+                .withRequiredArg()
+                .ofType(Boolean.class).defaultsTo(false);
+    }
+
+    public static void ingestForceMergeSegments(OptionParser parser) {
+        parser.acceptsAll(
+                singletonList("ingestForceMergeSegments"), "Max number of segments of the index after the force merge done " +
+                        "at the end of an index task with ingest settings (Default 0 : no force merge)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+    }
+
     public static void sessionStoreType(OptionParser parser) {
         parser.acceptsAll(
                 singletonList("sessionStoreType"), "Type of session store (redis|memory)")
@@ -0,0 +1,10 @@
+package org.icij.datashare.com;
+
+import java.util.List;
+
+public interface BatchPublisher extends Publisher {
+    /**
+     * publishes the messages in order with as few round trips as the bus allows
+     */
+    void publish(Channel channel, List<Message> messages);
+}
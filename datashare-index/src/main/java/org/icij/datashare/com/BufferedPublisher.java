@@ -0,0 +1,93 @@
+package org.icij.datashare.com;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publisher that can be shared by many threads without blocking them.
+ *
+ * Messages are queued and sent by whichever thread gets the flush lock; the others
+ * return immediately. Messages queued while a flush is running are sent in the next
+ * batch, with one call to the delegate if it is a {@link BatchPublisher}.
+ * Without contention a message is published before {@link #publish(Channel, Message)} returns.
+ */
+public class BufferedPublisher implements BatchPublisher {
+    static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    private final Publisher delegate;
+    private final int maxBatchSize;
+    private final Queue<Map.Entry<Channel, Message>> buffer = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public BufferedPublisher(Publisher delegate) { this(delegate, DEFAULT_MAX_BATCH_SIZE);}
+
+    public BufferedPublisher(Publisher delegate, int maxBatchSize) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void publish(Channel channel, Message message) {
+        buffer.add(new SimpleImmutableEntry<>(channel, message));
+        tryFlush();
+    }
+
+    @Override
+    public void publish(Channel channel, List<Message> messages) {
+        messages.forEach(message -> buffer.add(new SimpleImmutableEntry<>(channel, message)));
+        tryFlush();
+    }
+
+    /**
+     * sends all the queued messages, waiting for a flush in progress if any
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushBuffer();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void tryFlush() {
+        // checking the buffer after unlocking avoids leaving messages queued by threads that failed to get the lock
+        while (!buffer.isEmpty() && flushLock.tryLock()) {
+            try {
+                flushBuffer();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private void flushBuffer() {
+        List<Message> batch = new ArrayList<>();
+        Channel batchChannel = null;
+        Map.Entry<Channel, Message> entry;
+        while ((entry = buffer.poll()) != null) {
+            if (batchChannel != entry.getKey() || batch.size() >= maxBatchSize) {
+                send(batchChannel, batch);
+                batch = new ArrayList<>();
+                batchChannel = entry.getKey();
+            }
+            batch.add(entry.getValue());
+        }
+        send(batchChannel, batch);
+    }
+
+    private void send(Channel channel, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (delegate instanceof BatchPublisher && messages.size() > 1) {
+            ((BatchPublisher) delegate).publish(channel, messages);
+        } else {
+            messages.forEach(message -> delegate.publish(channel, message));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.icij.datashare.text.indexing;
+
+import org.icij.datashare.Entity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Collections.emptyList;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Scrolls a searcher in a background thread, at most nbPrefetchedPages ahead of the consumer,
+ * so that the next page is fetched while the current one is processed.
+ *
+ * Pages are read with {@link #nextPage()} (empty when the scroll is over), or with the lazy streams
+ * of the {@link #pages()} or of all the hits ({@link #stream()}), by a single consumer thread.
+ * Closing it (or the stream) stops the prefetching and clears the scroll.
+ */
+public class PrefetchingScroll implements AutoCloseable {
+    public static final int DEFAULT_PREFETCHED_PAGES = 2;
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "scroll-prefetch-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Indexer.Searcher searcher;
+    private final int numSlice;
+    private final int nbSlices;
+    private final BlockingQueue<Page> pages;
+    private final CountDownLatch firstPageFetched = new CountDownLatch(1);
+    private final CountDownLatch prefetchDone = new CountDownLatch(1);
+    private final Object prefetchThreadLock = new Object();
+    private Thread prefetchThread;
+    private volatile boolean closed = false;
+    private boolean prefetchStarted = false;
+    private boolean scrollDone = false;
+
+    public PrefetchingScroll(Indexer.Searcher searcher) {
+        this(searcher, 0, 0, DEFAULT_PREFETCHED_PAGES);
+    }
+
+    public PrefetchingScroll(Indexer.Searcher searcher, int numSlice, int nbSlices) {
+        this(searcher, numSlice, nbSlices, DEFAULT_PREFETCHED_PAGES);
+    }
+
+    public PrefetchingScroll(Indexer.Searcher searcher, int numSlice, int nbSlices, int nbPrefetchedPages) {
+        this.searcher = searcher;
+        this.numSlice = numSlice;
+        this.nbSlices = nbSlices;
+        this.pages = new ArrayBlockingQueue<>(nbPrefetchedPages);
+    }
+
+    /**
+     * @return the next page of hits, empty when there are no more hits
+     * @throws IOException if the scroll failed
+     */
+    public List<? extends Entity> nextPage() throws IOException {
+        if (scrollDone) {
+            return emptyList();
+        }
+        startPrefetch();
+        Page page;
+        try {
+            page = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for scroll page");
+        }
+        if (page.error != null) {
+            scrollDone = true;
+            if (page.error instanceof IOException) {
+                throw (IOException) page.error;
+            }
+            throw (RuntimeException) page.error;
+        }
+        scrollDone = page.hits.isEmpty();
+        return page.hits;
+    }
+
+    /**
+     * @return a lazy stream over the non empty pages of hits. Closing the stream closes the scroll.
+     * The scroll errors are thrown as {@link UncheckedIOException} or runtime exceptions.
+     */
+    public Stream<List<? extends Entity>> pages() {
+        Iterator<List<? extends Entity>> pages = new Iterator<List<? extends Entity>>() {
+            private List<? extends Entity> page;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    if (page == null) {
+                        page = nextPage();
+                    }
+                    return !page.isEmpty();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public List<? extends Entity> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<? extends Entity> next = page;
+                page = null;
+                return next;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, ORDERED | NONNULL), false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * @return a lazy stream over all the hits, read page by page. Closing the stream closes the scroll.
+     */
+    public Stream<? extends Entity> stream() {
+        return pages().flatMap(List::stream);
+    }
+
+    /**
+     * @return the searcher total hits, waiting for the first page to be fetched
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public long totalHits() throws InterruptedIOException {
+        startPrefetch();
+        try {
+            firstPageFetched.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for scroll first page");
+        }
+        return searcher.totalHits();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scrollDone = true;
+        closed = true;
+        if (prefetchStarted) {
+            synchronized (prefetchThreadLock) {
+                if (prefetchThread != null) {
+                    prefetchThread.interrupt();
+                }
+            }
+            pages.clear();
+            try {
+                prefetchDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while stopping scroll prefetch");
+            }
+        }
+        searcher.clearScroll();
+    }
+
+    private void startPrefetch() {
+        if (!prefetchStarted) {
+            prefetchStarted = true;
+            executor.execute(this::prefetch);
+        }
+    }
+
+    private void prefetch() {
+        synchronized (prefetchThreadLock) {
+            prefetchThread = Thread.currentThread();
+        }
+        try {
+            boolean lastPage = false;
+            while (!closed && !lastPage) {
+                List<? extends Entity> hits = (nbSlices > 1 ? searcher.scroll(numSlice, nbSlices) : searcher.scroll()).collect(toList());
+                firstPageFetched.countDown();
+                pages.put(new Page(hits, null));
+                lastPage = hits.isEmpty();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (IOException | RuntimeException e) {
+            try {
+                pages.put(new Page(emptyList(), e));
+            } catch (InterruptedException ie) {
+                // closed
+            }
+        } finally {
+            synchronized (prefetchThreadLock) {
+                prefetchThread = null;
+                Thread.interrupted(); // the pool thread is reused
+            }
+            firstPageFetched.countDown();
+            prefetchDone.countDown();
+        }
+    }
+
+    private static class Page {
+        final List<? extends Entity> hits;
+        final Exception error;
+
+        Page(List<? extends Entity> hits, Exception error) {
+            this.hits = hits;
+            this.error = error;
+        }
+    }
+}
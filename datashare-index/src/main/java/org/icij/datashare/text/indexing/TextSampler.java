@@ -0,0 +1,31 @@
+package org.icij.datashare.text.indexing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Bounded samples of long texts, used to guess their language without reading them entirely.
+ */
+public class TextSampler {
+    public static final int DEFAULT_SAMPLE_LENGTH = 16384;
+    public static final int DEFAULT_NB_SLICES = 4;
+
+    /**
+     * @return a list with the text itself if it is not longer than sampleLength,
+     * else nbSlices slices of sampleLength/nbSlices chars evenly spread over the text
+     */
+    public static List<String> slices(String text, int sampleLength, int nbSlices) {
+        if (text.length() <= sampleLength) {
+            return singletonList(text);
+        }
+        int sliceLength = sampleLength / nbSlices;
+        int step = text.length() / nbSlices;
+        List<String> slices = new ArrayList<>(nbSlices);
+        for (int i = 0; i < nbSlices; i++) {
+            slices.add(text.substring(i * step, i * step + sliceLength));
+        }
+        return slices;
+    }
+}
@@ -0,0 +1,147 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.TermVectorsRequest;
+import org.elasticsearch.client.core.TermVectorsResponse;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.icij.datashare.text.indexing.SearchedText;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Occurrences of a query in the content of a document, read from its term vectors. The content
+ * fields are mapped with term vectors: elasticsearch reads the terms and their offsets from them
+ * without analyzing the text again, and only the terms and offsets are sent, not the text.
+ *
+ * The query is searched case insensitively inside the terms, like the searchOccurrences
+ * painless script did. Queries that can span several terms are left to the script, as well as the
+ * translations that are not the first value of content_translated: the offsets of the next values
+ * are shifted by the lengths of the previous ones, that are not known without fetching their text.
+ */
+class ContentOccurrences {
+    static final String CONTENT_FIELD = "content";
+    static final String TRANSLATED_CONTENT_FIELD = "content_translated.content";
+    static final String TARGET_LANGUAGE_FIELD = "content_translated.target_language";
+    // lucene position gap between the values of a text field
+    static final int POSITION_INCREMENT_GAP = 100;
+
+    /**
+     * @return true if the query cannot be split by the standard tokenizer
+     */
+    static boolean isSingleTerm(String query) {
+        return !query.isEmpty() && query.codePoints().allMatch(c -> Character.isLetterOrDigit(c) && isSpaceDelimited(c));
+    }
+
+    /**
+     * @return the occurrences, or null if they cannot be read from the term vectors
+     * and the caller should scan the text
+     */
+    static SearchedText search(RestHighLevelClient client, String indexName, String id, String routing, String query, String targetLanguage) throws IOException {
+        boolean translated = targetLanguage != null && !"original".equals(targetLanguage);
+        if (translated && !isFirstTranslation(client, indexName, id, routing, targetLanguage)) {
+            return null;
+        }
+        TermVectorsRequest request = new TermVectorsRequest(indexName, id);
+        request.setFields(translated ? TRANSLATED_CONTENT_FIELD : CONTENT_FIELD);
+        request.setRouting(routing);
+        request.setOffsets(true);
+        // the positions tell the tokens of the first translation from the others
+        request.setPositions(translated);
+        request.setPayloads(false);
+        request.setFieldStatistics(false);
+        request.setTermStatistics(false);
+        TermVectorsResponse response = client.termvectors(request, RequestOptions.DEFAULT);
+        if (!response.getFound()) {
+            throw new IllegalArgumentException("Document not found");
+        }
+        List<TermVectorsResponse.TermVector.Term> terms = response.getTermVectorsList() == null ? emptyList() :
+                response.getTermVectorsList().stream().flatMap(termVector -> termVector.getTerms().stream()).collect(toList());
+        int lastPosition = translated ? lastPositionOfFirstValue(terms) : Integer.MAX_VALUE;
+        String lowerCaseQuery = query.toLowerCase();
+        List<Integer> offsets = new ArrayList<>();
+        for (TermVectorsResponse.TermVector.Term term : terms) {
+            if (!term.getTerm().contains(lowerCaseQuery)) {
+                continue;
+            }
+            for (TermVectorsResponse.TermVector.Token token : term.getTokens()) {
+                if (translated && token.getPosition() > lastPosition) {
+                    continue;
+                }
+                // the offsets in the term are only right if the analyzer kept the length of the token
+                if (token.getStartOffset() == null || token.getEndOffset() - token.getStartOffset() != term.getTerm().length()) {
+                    return null;
+                }
+                offsets.addAll(offsets(term.getTerm(), token.getStartOffset(), lowerCaseQuery));
+            }
+        }
+        int[] sortedOffsets = offsets.stream().mapToInt(i -> i).sorted().toArray();
+        return translated ? new SearchedText(sortedOffsets, sortedOffsets.length, query, targetLanguage) :
+                new SearchedText(sortedOffsets, sortedOffsets.length, query);
+    }
+
+    /**
+     * @return true if the first translation of the document is in the target language.
+     * Only the target languages of the translations are fetched.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean isFirstTranslation(RestHighLevelClient client, String indexName, String id, String routing, String targetLanguage) throws IOException {
+        GetResponse response = client.get(new GetRequest(indexName, id).routing(routing)
+                .fetchSourceContext(new FetchSourceContext(true, new String[] {TARGET_LANGUAGE_FIELD}, null)), RequestOptions.DEFAULT);
+        if (!response.isExists()) {
+            throw new IllegalArgumentException("Document not found");
+        }
+        Object translations = response.getSourceAsMap().get("content_translated");
+        if (!(translations instanceof List) || ((List<?>) translations).isEmpty()) {
+            return false;
+        }
+        Object first = ((List<?>) translations).get(0);
+        return first instanceof Map && targetLanguage.equals(((Map<String, Object>) first).get("target_language"));
+    }
+
+    /**
+     * @return the position of the last token of the first value of the field, the next
+     * values starting at least {@link #POSITION_INCREMENT_GAP} positions after it
+     */
+    static int lastPositionOfFirstValue(List<TermVectorsResponse.TermVector.Term> terms) {
+        int[] positions = terms.stream().flatMap(term -> term.getTokens().stream())
+                .filter(token -> token.getPosition() != null).mapToInt(TermVectorsResponse.TermVector.Token::getPosition).sorted().toArray();
+        for (int i = 1; i < positions.length; i++) {
+            if (positions[i] - positions[i - 1] > POSITION_INCREMENT_GAP) {
+                return positions[i - 1];
+            }
+        }
+        return positions.length == 0 ? -1 : positions[positions.length - 1];
+    }
+
+    /**
+     * @return the offsets of the query in a lower case term starting at startOffset
+     */
+    static List<Integer> offsets(String term, int startOffset, String lowerCaseQuery) {
+        List<Integer> offsets = new ArrayList<>();
+        for (int found = term.indexOf(lowerCaseQuery); found >= 0; found = term.indexOf(lowerCaseQuery, found + lowerCaseQuery.length())) {
+            offsets.add(startOffset + found);
+        }
+        return offsets;
+    }
+
+    private static boolean isSpaceDelimited(int codePoint) {
+        if (Character.isIdeographic(codePoint)) {
+            return false;
+        }
+        switch (Character.UnicodeScript.of(codePoint)) {
+            case HIRAGANA: case KATAKANA: case THAI: case LAO: case KHMER: case MYANMAR:
+                return false;
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.icij.datashare.text.indexing.ExtractedText;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.util.Collections.emptyList;
+
+/**
+ * Extracted text of a document stored in fixed size pages, so that a slice of the text
+ * can be read without loading the whole content.
+ *
+ * Pages are stored next to their document (same routing) with the ids docId-page-N.
+ * Their text is in a non indexed object field, it is only kept in the source.
+ */
+class ContentPages {
+    static final String ES_CONTENT_PAGE_TYPE = "ContentPage";
+    static final String CONTENT_PAGE_FIELD = "contentPage";
+    private static final String PAGE_ID_SEPARATOR = "-page-";
+
+    static String pageId(String docId, int page) { return docId + PAGE_ID_SEPARATOR + page;}
+
+    static boolean isPageId(String id) { return id.contains(PAGE_ID_SEPARATOR);}
+
+    static List<IndexRequest> pageRequests(String indexName, String docTypeField, String docId, String routing, String content, int pageSize) {
+        if (pageSize <= 0) {
+            return emptyList();
+        }
+        int nbPages = Math.max(1, (content.length() + pageSize - 1) / pageSize);
+        List<IndexRequest> requests = new ArrayList<>(nbPages);
+        for (int page = 0; page < nbPages; page++) {
+            Map<String, Object> contentPage = new HashMap<>();
+            contentPage.put("page", page);
+            contentPage.put("pageSize", pageSize);
+            contentPage.put("contentLength", content.length());
+            contentPage.put("text", content.substring(page * pageSize, Math.min(content.length(), (page + 1) * pageSize)));
+            Map<String, Object> source = new HashMap<>();
+            source.put(docTypeField, ES_CONTENT_PAGE_TYPE);
+            source.put("documentId", docId);
+            source.put(CONTENT_PAGE_FIELD, contentPage);
+            requests.add(new IndexRequest(indexName).id(pageId(docId, page)).routing(routing).source(source));
+        }
+        return requests;
+    }
+
+    /**
+     * reads the pages overlapping [offset, offset + limit[ with one multi get.
+     *
+     * @return the text slice, or null if a page is missing or has been written with another page size
+     * @throws StringIndexOutOfBoundsException if the range is out of the document
+     */
+    @SuppressWarnings("unchecked")
+    static ExtractedText read(RestHighLevelClient client, String indexName, String id, String routing, int offset, int limit, int pageSize) throws IOException {
+        int end = offset + limit;
+        int firstPage = offset / pageSize;
+        int lastPage = Math.max(firstPage, (end - 1) / pageSize);
+        MultiGetRequest multiGetRequest = new MultiGetRequest();
+        for (int page = firstPage; page <= lastPage; page++) {
+            multiGetRequest.add(new MultiGetRequest.Item(indexName, pageId(id, page)).routing(routing));
+        }
+        StringBuilder text = new StringBuilder(limit + pageSize);
+        int contentLength = -1;
+        for (MultiGetItemResponse response : client.mget(multiGetRequest, RequestOptions.DEFAULT).getResponses()) {
+            if (response.isFailed() || !response.getResponse().isExists()) {
+                if (contentLength >= 0 && end > contentLength) {
+                    break; // range is after the last page
+                }
+                return null;
+            }
+            Map<String, Object> contentPage = (Map<String, Object>) response.getResponse().getSourceAsMap().get(CONTENT_PAGE_FIELD);
+            if (((Number) contentPage.get("pageSize")).intValue() != pageSize) {
+                return null;
+            }
+            contentLength = ((Number) contentPage.get("contentLength")).intValue();
+            text.append((String) contentPage.get("text"));
+        }
+        if (contentLength < 0) {
+            return null;
+        }
+        if (end > contentLength) {
+            throw new StringIndexOutOfBoundsException(format("Range [%d-%d] is out of document range ([0-%d])", offset, end, contentLength));
+        }
+        int start = offset - firstPage * pageSize;
+        return new ExtractedText(text.substring(start, start + limit), offset, limit, contentLength);
+    }
+}
@@ -0,0 +1,74 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static java.lang.Math.max;
+import static java.lang.System.currentTimeMillis;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.DEFAULT_SEARCH_SIZE;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.ES_DOCUMENT_TYPE;
+
+/**
+ * Probabilistic set of the document ids of an index.
+ *
+ * If the filter says that an id is absent then the document is not in the index,
+ * if it says that it might be present it has to be confirmed by elasticsearch.
+ */
+class DocumentIdFilter {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentIdFilter.class);
+    static final int MIN_EXPECTED_INSERTIONS = 1_000_000;
+    static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+    private static final TimeValue KEEP_ALIVE = new TimeValue(60000);
+
+    private final BloomFilter<CharSequence> ids;
+
+    DocumentIdFilter(long expectedInsertions) {
+        ids = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), max(expectedInsertions, MIN_EXPECTED_INSERTIONS), FALSE_POSITIVE_PROBABILITY);
+    }
+
+    void put(String id) { ids.put(id);}
+
+    boolean mightContain(String id) { return ids.mightContain(id);}
+
+    static DocumentIdFilter empty() { return new DocumentIdFilter(MIN_EXPECTED_INSERTIONS);}
+
+    static DocumentIdFilter fromIndex(RestHighLevelClient client, String indexName, String docTypeField) throws IOException {
+        long before = currentTimeMillis();
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().query(termQuery(docTypeField, ES_DOCUMENT_TYPE))
+                .fetchSource(false).trackTotalHits(true).size(DEFAULT_SEARCH_SIZE);
+        SearchResponse response = client.search(new SearchRequest(indexName).source(sourceBuilder).scroll(KEEP_ALIVE), RequestOptions.DEFAULT);
+        // twice the existing documents so that the filter is not saturated by the documents of the task
+        DocumentIdFilter filter = new DocumentIdFilter(2 * response.getHits().getTotalHits().value);
+        long nbIds = 0;
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits()) {
+                    filter.put(hit.getId());
+                    nbIds++;
+                }
+                response = client.scroll(new SearchScrollRequest(response.getScrollId()).scroll(KEEP_ALIVE), RequestOptions.DEFAULT);
+            }
+        } finally {
+            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+            clearScrollRequest.addScrollId(response.getScrollId());
+            client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+        }
+        logger.info("duplicate filter seeded with {} id(s) of index {} in {}ms", nbIds, indexName, currentTimeMillis() - before);
+        return filter;
+    }
+}
@@ -6,14 +6,23 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.admin.indices.alias.Alias;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
 import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.client.NodeSelector;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.CreateIndexRequest;
 import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.client.indices.PutMappingRequest;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.RestStatus;
+import org.icij.datashare.HumanReadableSize;
 import org.icij.datashare.PropertiesProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +32,12 @@ import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 import static com.google.common.io.ByteStreams.toByteArray;
 import static java.lang.String.format;
@@ -44,9 +59,41 @@ public class ElasticsearchConfiguration {
     public static final String INDEX_JOIN_FIELD_NAME_PROP = "indexJoinFieldName";
     public static final String INDEX_TYPE_FIELD_NAME_PROP = "indexTypeFieldName";
     public static final String CLUSTER_PROP = "clusterName";
+    public static final String INDEX_SHARDS_PROP = "indexShards";
+    public static final String INDEX_REPLICAS_PROP = "indexReplicas";
+    public static final String INDEX_EXPECTED_SIZE_PROP = "indexExpectedSize";
+    public static final String INDEX_MAX_SHARD_SIZE_PROP = "indexMaxShardSize";
+    public static final String CONTENT_PAGE_SIZE_PROP = "contentPageSize";
+    public static final String DUPLICATE_FILTER_PROP = "duplicateFilter";
+    public static final String SEARCH_AFTER_PROP = "searchAfter";
+    public static final String SEARCH_CACHE_SIZE_PROP = "searchCacheSize";
+    public static final String SEARCH_COALESCING_PROP = "searchCoalescing";
+    public static final String REINDEX_SLICES_PROP = "reindexSlices";
+    public static final String BULK_INDEXING_PROP = "bulkIndexing";
+    public static final String BULK_INDEXING_ACTIONS_PROP = "bulkIndexingActions";
+    public static final String BULK_INDEXING_SIZE_PROP = "bulkIndexingSize";
+    public static final String BULK_INDEXING_FLUSH_INTERVAL_PROP = "bulkIndexingFlushIntervalSeconds";
+    public static final String BULK_INDEXING_CONCURRENT_REQUESTS_PROP = "bulkIndexingConcurrentRequests";
+    public static final String ES_SNIFF_INTERVAL_PROP = "elasticsearchSniffIntervalSeconds";
+    public static final String ES_MAX_CONNECTIONS_PROP = "elasticsearchMaxConnections";
+    public static final String ES_MAX_CONNECTIONS_PER_HOST_PROP = "elasticsearchMaxConnectionsPerHost";
+    public static final String ES_KEEP_ALIVE_PROP = "elasticsearchKeepAliveSeconds";
+    public static final String ES_COMPRESSION_PROP = "elasticsearchCompression";
+    public static final String ES_SEARCH_THREADS_PROP = "elasticsearchSearchThreads";
+    public static final String ES_WRITE_THREADS_PROP = "elasticsearchWriteThreads";
+    public static final String ES_WRITE_QUEUE_SIZE_PROP = "elasticsearchWriteQueueSize";
+    public static final String ES_INDEXING_BUFFER_PROP = "elasticsearchIndexingBuffer";
+    public static final String ES_FIELD_DATA_CACHE_PROP = "elasticsearchFieldDataCacheSize";
+    public static final String ES_QUERY_CACHE_PROP = "elasticsearchQueryCacheSize";
+    public static final String ES_PROCESS_PROP = "elasticsearchProcess";
+    public static final String ES_HEAP_SIZE_PROP = "elasticsearchHeapSize";
+    public static final String INGEST_SETTINGS_PROP = "ingestSettings";
+    public static final String INGEST_FORCE_MERGE_SEGMENTS_PROP = "ingestForceMergeSegments";
 
     public static final String DEFAULT_ADDRESS = "http://localhost:9200";
     public static final String ES_CLUSTER_NAME = "datashare";
+    static final int DEFAULT_MAX_CONNECTIONS = 30;
+    static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
     static final String  ES_DOCUMENT_TYPE = "Document";
     static final String  ES_DUPLICATE_TYPE = "Duplicate";
     static final String  ES_CONTENT_FIELD = "content";
@@ -56,38 +103,104 @@ public class ElasticsearchConfiguration {
 
     private static final String DEFAULT_DOC_TYPE_FIELD = "type";
 
+    static final int DEFAULT_SHARDS = 1;
+    static final int DEFAULT_REPLICAS = 1;
+    static final String DEFAULT_MAX_SHARD_SIZE = "30G";
+
+    static final int DEFAULT_BULK_ACTIONS = 1000;
+    static final String DEFAULT_BULK_SIZE = "5M";
+    static final int DEFAULT_BULK_FLUSH_INTERVAL_SECONDS = 5;
+    static final int DEFAULT_BULK_CONCURRENT_REQUESTS = 2;
+
+    static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    static final String SHARDS_SETTING = "index.number_of_shards";
+    static final String REPLICAS_SETTING = "index.number_of_replicas";
+    static final String TRANSLOG_DURABILITY_SETTING = "index.translog.durability";
+    public static final String VERSION_SEPARATOR = "-v";
+    static final Settings INGEST_SETTINGS = Settings.builder()
+            .put(REFRESH_INTERVAL_SETTING, "-1")
+            .put(REPLICAS_SETTING, 0)
+            .put(TRANSLOG_DURABILITY_SETTING, "async").build();
+
     final String indexJoinField;
     final String docTypeField;
     WriteRequest.RefreshPolicy refreshPolicy = WriteRequest.RefreshPolicy.NONE;
 
-    final int shards = 1;
-    final int replicas = 1;
+    final int shards;
+    final int replicas;
+
+    final int contentPageSize;
+    final boolean duplicateFilter;
+    final boolean searchAfter;
+    final boolean bulkIndexing;
+    final int bulkActions;
+    final long bulkSize;
+    final int bulkFlushIntervalSeconds;
+    final int bulkConcurrentRequests;
+    final boolean ingestSettings;
+    final int ingestForceMergeSegments;
 
     ElasticsearchConfiguration(PropertiesProvider propertiesProvider) {
         indexJoinField = propertiesProvider.get(INDEX_JOIN_FIELD_NAME_PROP).orElse(DEFAULT_INDEX_JOIN_FIELD);
+        shards = getShards(propertiesProvider);
+        replicas = getReplicas(propertiesProvider);
         docTypeField = propertiesProvider.get(INDEX_TYPE_FIELD_NAME_PROP).orElse(DEFAULT_DOC_TYPE_FIELD);
+        contentPageSize = (int) HumanReadableSize.parse(propertiesProvider.get(CONTENT_PAGE_SIZE_PROP).orElse("0"));
+        duplicateFilter = propertiesProvider.get(DUPLICATE_FILTER_PROP).map(Boolean::parseBoolean).orElse(false);
+        searchAfter = propertiesProvider.get(SEARCH_AFTER_PROP).map(Boolean::parseBoolean).orElse(false);
+        bulkIndexing = propertiesProvider.get(BULK_INDEXING_PROP).map(Boolean::parseBoolean).orElse(false);
+        bulkActions = propertiesProvider.get(BULK_INDEXING_ACTIONS_PROP).map(Integer::parseInt).orElse(DEFAULT_BULK_ACTIONS);
+        bulkSize = HumanReadableSize.parse(propertiesProvider.get(BULK_INDEXING_SIZE_PROP).orElse(DEFAULT_BULK_SIZE));
+        bulkFlushIntervalSeconds = propertiesProvider.get(BULK_INDEXING_FLUSH_INTERVAL_PROP).map(Integer::parseInt).orElse(DEFAULT_BULK_FLUSH_INTERVAL_SECONDS);
+        bulkConcurrentRequests = propertiesProvider.get(BULK_INDEXING_CONCURRENT_REQUESTS_PROP).map(Integer::parseInt).orElse(DEFAULT_BULK_CONCURRENT_REQUESTS);
+        ingestSettings = propertiesProvider.get(INGEST_SETTINGS_PROP).map(Boolean::parseBoolean).orElse(false);
+        ingestForceMergeSegments = propertiesProvider.get(INGEST_FORCE_MERGE_SEGMENTS_PROP).map(Integer::parseInt).orElse(0);
     }
 
+    /**
+     * creates a client for the comma separated hosts of elasticsearchAddress. Requests are spread
+     * over the hosts, and failing hosts are retried later. If elasticsearchSniffIntervalSeconds is set,
+     * the hosts are replaced by the nodes of the cluster.
+     */
     public static RestHighLevelClient createESClient(final PropertiesProvider propertiesProvider) {
         System.setProperty("es.set.netty.runtime.available.processors", "false");
         try {
-            URL indexUrl = new URL(propertiesProvider.get(INDEX_ADDRESS_PROP).orElse(DEFAULT_ADDRESS));
-            HttpHost httpHost = create(format("%s://%s:%d", indexUrl.getProtocol(), indexUrl.getHost(), indexUrl.getPort()));
+            List<URL> indexUrls = parseAddresses(propertiesProvider.get(INDEX_ADDRESS_PROP).orElse(DEFAULT_ADDRESS));
+            HttpHost[] httpHosts = indexUrls.stream().map(indexUrl ->
+                    create(format("%s://%s:%d", indexUrl.getProtocol(), indexUrl.getHost(), indexUrl.getPort()))).toArray(HttpHost[]::new);
 
-            RestClientBuilder.HttpClientConfigCallback httpClientConfigCallback = httpClientBuilder -> httpClientBuilder;
-            if (indexUrl.getUserInfo() != null) {
-                String[] userInfo = indexUrl.getUserInfo().split(":");
-                LOGGER.info("using credentials from url (user={})", userInfo[0]);
-                final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-                credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(userInfo[0], userInfo[1]));
+            int maxConnections = propertiesProvider.get(ES_MAX_CONNECTIONS_PROP).map(Integer::parseInt).orElse(DEFAULT_MAX_CONNECTIONS);
+            int maxConnectionsPerHost = propertiesProvider.get(ES_MAX_CONNECTIONS_PER_HOST_PROP).map(Integer::parseInt).orElse(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+            Optional<Long> keepAliveMillis = propertiesProvider.get(ES_KEEP_ALIVE_PROP).map(s -> Long.parseLong(s) * 1000);
+            Optional<String[]> userInfo = indexUrls.stream().map(URL::getUserInfo).filter(Objects::nonNull).findFirst().map(s -> s.split(":"));
+            final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            userInfo.ifPresent(info -> {
+                LOGGER.info("using credentials from url (user={})", info[0]);
+                credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(info[0], info[1]));
+            });
+            RestClientBuilder.HttpClientConfigCallback httpClientConfigCallback = httpClientBuilder -> {
+                httpClientBuilder.setMaxConnTotal(maxConnections).setMaxConnPerRoute(maxConnectionsPerHost);
+                keepAliveMillis.ifPresent(millis -> httpClientBuilder.setKeepAliveStrategy((response, context) -> millis));
+                return userInfo.isPresent() ? httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider) : httpClientBuilder;
+            };
 
-                httpClientConfigCallback = httpClientBuilder -> httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
-            }
-            RestHighLevelClient client = new RestHighLevelClient(RestClient.builder(httpHost)
+            int sniffIntervalSeconds = propertiesProvider.get(ES_SNIFF_INTERVAL_PROP).map(Integer::parseInt).orElse(0);
+            NodesSniffer sniffer = sniffIntervalSeconds > 0 ? new NodesSniffer(httpHosts[0].getSchemeName(), sniffIntervalSeconds) : null;
+            RestClientBuilder restClientBuilder = RestClient.builder(httpHosts)
                     .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
                             .setConnectTimeout(5000)
                             .setSocketTimeout(60000))
-                    .setHttpClientConfigCallback(httpClientConfigCallback));
+                    .setCompressionEnabled(propertiesProvider.get(ES_COMPRESSION_PROP).map(Boolean::parseBoolean).orElse(false))
+                    .setHttpClientConfigCallback(httpClientConfigCallback);
+            if (sniffer != null) {
+                restClientBuilder.setNodeSelector(NodeSelector.SKIP_DEDICATED_MASTERS).setFailureListener(sniffer.failureListener());
+            }
+            RestHighLevelClient client = new RestHighLevelClient(restClientBuilder);
+            if (sniffer != null) {
+                sniffer.start(client.getLowLevelClient());
+            }
+            LOGGER.info("elasticsearch client created for {} (sniff interval={}s, max connections={}/{} per host)",
+                    Arrays.toString(httpHosts), sniffIntervalSeconds, maxConnections, maxConnectionsPerHost);
             String clusterName = propertiesProvider.get(CLUSTER_PROP).orElse(ES_CLUSTER_NAME);
             return client;
         } catch (MalformedURLException e) {
@@ -95,15 +208,59 @@ public class ElasticsearchConfiguration {
         }
     }
 
+    /**
+     * @return indexShards if it is set, else enough shards for indexExpectedSize
+     * so that no shard is bigger than indexMaxShardSize, else 1
+     */
+    public static int getShards(PropertiesProvider propertiesProvider) {
+        Optional<Integer> shards = propertiesProvider.get(INDEX_SHARDS_PROP).map(Integer::parseInt);
+        if (shards.isPresent()) {
+            return shards.get();
+        }
+        long maxShardSize = HumanReadableSize.parse(propertiesProvider.get(INDEX_MAX_SHARD_SIZE_PROP).orElse(DEFAULT_MAX_SHARD_SIZE));
+        return propertiesProvider.get(INDEX_EXPECTED_SIZE_PROP).map(HumanReadableSize::parse)
+                .map(expectedSize -> shardsForSize(expectedSize, maxShardSize)).orElse(DEFAULT_SHARDS);
+    }
+
+    public static int getReplicas(PropertiesProvider propertiesProvider) {
+        return propertiesProvider.get(INDEX_REPLICAS_PROP).map(Integer::parseInt).orElse(DEFAULT_REPLICAS);
+    }
+
+    static int shardsForSize(long expectedSize, long maxShardSize) {
+        return (int) Math.max(1, (expectedSize + maxShardSize - 1) / maxShardSize);
+    }
+
+    static List<URL> parseAddresses(String addresses) throws MalformedURLException {
+        List<URL> urls = new ArrayList<>();
+        for (String address : addresses.split(",")) {
+            if (!address.trim().isEmpty()) {
+                urls.add(new URL(address.trim()));
+            }
+        }
+        return urls;
+    }
+
     public static boolean createIndex(RestHighLevelClient client, String indexName) {
+        return createIndex(client, indexName, DEFAULT_SHARDS, DEFAULT_REPLICAS);
+    }
+
+    /**
+     * creates the index if it doesn't exist with the settings of datashare_index_settings.json
+     * and the given number of shards and replicas. Documents are routed with their root document
+     * so a document and its children (embedded documents, named entities) are in the same shard.
+     *
+     * The index is served through an alias with the index name, pointing at the first version
+     * of the index (see {@link #versionedIndexName(String, int)}), so that it can be reindexed
+     * into a new version without changing its name.
+     */
+    public static boolean createIndex(RestHighLevelClient client, String indexName, int shards, int replicas) {
         GetIndexRequest request = new GetIndexRequest(indexName);
         try {
             if (!client.indices().exists(request, RequestOptions.DEFAULT)) {
-                LOGGER.info("index {} does not exist, creating one", indexName);
-                CreateIndexRequest createReq = new CreateIndexRequest(indexName);
-                createReq.settings(getResourceContent(SETTINGS_RESOURCE_NAME), JSON);
-                createReq.mapping(getResourceContent(MAPPING_RESOURCE_NAME), JSON);
-                client.indices().create(createReq, RequestOptions.DEFAULT);
+                LOGGER.info("index {} does not exist, creating one with {} shard(s) and {} replica(s)", indexName, shards, replicas);
+                createVersionedIndex(client, indexName, 1, Settings.builder()
+                        .put(SHARDS_SETTING, shards)
+                        .put(REPLICAS_SETTING, replicas).build(), true);
                 return true;
             }
         } catch (IOException e) {
@@ -112,6 +269,113 @@ public class ElasticsearchConfiguration {
         return false;
     }
 
+    /**
+     * creates the concrete index of the given version with datashare_index_settings.json overridden
+     * by the given settings, and the mapping of datashare_index_mappings.json.
+     *
+     * @param withAlias if true the index is served through the alias, else it should be switched
+     *                  with {@link #switchAlias(RestHighLevelClient, String, String, String)}
+     * @return the concrete index name
+     */
+    static String createVersionedIndex(RestHighLevelClient client, String alias, int version, Settings settings, boolean withAlias) throws IOException {
+        String indexName = versionedIndexName(alias, version);
+        CreateIndexRequest createReq = new CreateIndexRequest(indexName);
+        createReq.settings(Settings.builder()
+                .loadFromSource(getResourceContent(SETTINGS_RESOURCE_NAME), JSON)
+                .put(settings));
+        createReq.mapping(getResourceContent(MAPPING_RESOURCE_NAME), JSON);
+        if (withAlias) {
+            createReq.alias(new Alias(alias));
+        }
+        client.indices().create(createReq, RequestOptions.DEFAULT);
+        return indexName;
+    }
+
+    /**
+     * atomically points the alias at the index and deletes the previous index. The previous index
+     * can be an index created before aliases, whose name is the alias.
+     */
+    static void switchAlias(RestHighLevelClient client, String alias, String previousIndex, String index) throws IOException {
+        client.indices().updateAliases(new IndicesAliasesRequest()
+                .addAliasAction(AliasActions.add().index(index).alias(alias))
+                .addAliasAction(AliasActions.removeIndex().index(previousIndex)), RequestOptions.DEFAULT);
+        LOGGER.info("alias {} switched from index {} to index {}", alias, previousIndex, index);
+    }
+
+    /**
+     * @return the concrete index served by the name: the index pointed by the alias, or the index
+     * itself if it has been created before aliases. Empty if there is no such index.
+     */
+    static Optional<String> concreteIndex(RestHighLevelClient client, String indexName) throws IOException {
+        List<String> indices = new ArrayList<>();
+        try {
+            client.indices().getSettings(new GetSettingsRequest().indices(indexName).names(SHARDS_SETTING), RequestOptions.DEFAULT)
+                    .getIndexToSettings().keysIt().forEachRemaining(indices::add);
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() == RestStatus.NOT_FOUND) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+        if (indices.size() > 1) {
+            throw new IllegalStateException(format("%s is an alias of several indices %s", indexName, indices));
+        }
+        return indices.stream().findFirst();
+    }
+
+    /**
+     * @return the settings of the concrete index with the given names
+     */
+    static Settings indexSettings(RestHighLevelClient client, String concreteIndex, String... names) throws IOException {
+        return client.indices().getSettings(new GetSettingsRequest().indices(concreteIndex).names(names), RequestOptions.DEFAULT)
+                .getIndexToSettings().getOrDefault(concreteIndex, Settings.EMPTY);
+    }
+
+    static String versionedIndexName(String alias, int version) {
+        return alias + VERSION_SEPARATOR + version;
+    }
+
+    /**
+     * @return the name among indexNames that serves the concrete index (the alias of a versioned index,
+     * or the index itself), or the concrete index if none of them serves it
+     */
+    public static String indexName(String concreteIndex, Collection<String> indexNames) {
+        for (String indexName : indexNames) {
+            if (indexName.equals(concreteIndex) || indexVersion(indexName, concreteIndex) > 0) {
+                return indexName;
+            }
+        }
+        return concreteIndex;
+    }
+
+    /**
+     * @return the version of the concrete index served by the alias, 0 for an index created before aliases
+     */
+    static int indexVersion(String alias, String concreteIndex) {
+        String prefix = alias + VERSION_SEPARATOR;
+        if (concreteIndex.startsWith(prefix)) {
+            try {
+                return Integer.parseInt(concreteIndex.substring(prefix.length()));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * adds the content page field to the mapping of an index created before content pages,
+     * otherwise the page texts would be indexed with a dynamic mapping.
+     */
+    static void putContentPageMapping(RestHighLevelClient client, String indexName) {
+        try {
+            client.indices().putMapping(new PutMappingRequest(indexName).source(
+                    format("{\"properties\": {\"%s\": {\"type\": \"object\", \"enabled\": false}}}", ContentPages.CONTENT_PAGE_FIELD), JSON), RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new ConfigurationException(e);
+        }
+    }
+
     ElasticsearchConfiguration withRefresh(WriteRequest.RefreshPolicy refreshPolicy) {
         this.refreshPolicy = refreshPolicy;
         return this;
@@ -124,6 +388,12 @@ public class ElasticsearchConfiguration {
                 ", docTypeField='" + docTypeField + '\'' +
                 ", shards=" + shards +
                 ", replicas=" + replicas +
+                (contentPageSize > 0 ? ", contentPageSize=" + contentPageSize : "") +
+                (duplicateFilter ? ", duplicateFilter=true" : "") +
+                (searchAfter ? ", searchAfter=true" : "") +
+                (bulkIndexing ? ", bulk={actions=" + bulkActions + ", size=" + bulkSize +
+                        ", flushInterval=" + bulkFlushIntervalSeconds + "s, concurrentRequests=" + bulkConcurrentRequests + "}" : "") +
+                (ingestSettings ? ", ingestSettings={forceMergeSegments=" + ingestForceMergeSegments + "}" : "") +
                 '}';
     }
 
@@ -4,9 +4,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.google.inject.Inject;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
-import org.apache.http.entity.ContentType;
-import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.util.EntityUtils;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ResourceNotFoundException;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
@@ -14,6 +14,8 @@ import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
@@ -25,14 +27,14 @@ import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.CountRequest;
 import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.*;
 import org.elasticsearch.index.reindex.BulkByScrollResponse;
 import org.elasticsearch.index.reindex.UpdateByQueryRequest;
 import org.elasticsearch.rest.RestStatus;
-import org.elasticsearch.script.Script;
-import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.slice.SliceBuilder;
@@ -50,17 +52,24 @@ import org.icij.datashare.text.nlp.Pipeline;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static java.lang.String.format;
 import static java.util.Arrays.stream;
+import static java.util.Collections.singletonList;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
+import static org.elasticsearch.cluster.metadata.IndexMetadata.SETTING_NUMBER_OF_SHARDS;
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.elasticsearch.index.query.QueryBuilders.*;
 import static org.icij.datashare.json.JsonObjectMapper.*;
@@ -69,18 +78,29 @@ import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfig
 
 public class ElasticsearchIndexer implements Indexer {
     public final RestHighLevelClient client;
+    private final SearchCache searchCache;
     private final ElasticsearchConfiguration esCfg;
+    private final StoredScripts storedScripts;
 
-    static private final Map<String, String> memoizeScript = new HashMap<>();
+    static private final Map<String, String> memoizeScript = new ConcurrentHashMap<>();
 
     public static Map<String, String> getMemoizeScript() {
         return memoizeScript;
     }
 
-    @Inject
     public ElasticsearchIndexer(final RestHighLevelClient esClient, final PropertiesProvider propertiesProvider) {
+        this(esClient, propertiesProvider, new SearchCache(0));
+    }
+
+    /**
+     * @param searchCache the cache whose responses are invalidated by the writes of the indexer
+     */
+    @Inject
+    public ElasticsearchIndexer(final RestHighLevelClient esClient, final PropertiesProvider propertiesProvider, final SearchCache searchCache) {
         this.client = esClient;
+        this.searchCache = searchCache;
         esCfg = new ElasticsearchConfiguration(propertiesProvider);
+        storedScripts = new StoredScripts(esClient);
         LOGGER.info("indexer defined with {}", esCfg);
     }
 
@@ -93,27 +113,33 @@ public class ElasticsearchIndexer implements Indexer {
 
     @Override
     public boolean bulkAdd(final String indexName, Pipeline.Type nerType, List<NamedEntity> namedEntities, Document parent) throws IOException {
-        BulkRequest bulkRequest = new BulkRequest();
-
         String routing = ofNullable(parent.getRootDocument()).orElse(parent.getId());
-        bulkRequest.add(new UpdateRequest(indexName, parent.getId()).doc(
-                jsonBuilder().startObject()
-                        .field("status", Document.Status.DONE)
-                        .endObject()).routing(routing));
-        bulkRequest.add(new UpdateRequest(indexName, parent.getId())
-                .script(new Script(ScriptType.INLINE, "painless",
-                        "if (!ctx._source.nerTags.contains(params.nerTag)) ctx._source.nerTags.add(params.nerTag);",
-                        new HashMap<String, Object>() {{
-                            put("nerTag", nerType.toString());
-                        }})).routing(routing));
-
-        for (Entity child : namedEntities) {
-            bulkRequest.add(createIndexRequest(indexName, JsonObjectMapper.getType(child), child.getId(),
-                    getJson(child), parent.getId(), routing));
-        }
-        bulkRequest.setRefreshPolicy(esCfg.refreshPolicy);
+        BulkResponse bulkResponse = storedScripts.execute(StoredScripts.Name.NER_TAG, new HashMap<String, Object>() {{
+                    put("nerTag", nerType.toString());
+                }}, script -> {
+            BulkRequest bulkRequest = new BulkRequest();
+            bulkRequest.add(new UpdateRequest(indexName, parent.getId()).doc(
+                    jsonBuilder().startObject()
+                            .field("status", Document.Status.DONE)
+                            .endObject()).routing(routing));
+            bulkRequest.add(new UpdateRequest(indexName, parent.getId()).script(script).routing(routing));
+
+            for (Entity child : namedEntities) {
+                bulkRequest.add(createIndexRequest(indexName, JsonObjectMapper.getType(child), child.getId(),
+                        getJson(child), parent.getId(), routing));
+            }
+            bulkRequest.setRefreshPolicy(esCfg.refreshPolicy);
 
-        BulkResponse bulkResponse = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+            BulkResponse response = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+            for (BulkItemResponse item : response.getItems()) {
+                // the bulk is executed again (its requests are idempotent) with the script stored again
+                if (item.isFailed() && StoredScripts.isNotFound(StoredScripts.Name.NER_TAG, item.getFailureMessage())) {
+                    throw new ResourceNotFoundException("{}", item.getFailureMessage());
+                }
+            }
+            return response;
+        });
+        searchCache.invalidate(indexName);
         if (bulkResponse.hasFailures()) {
             for (BulkItemResponse resp : bulkResponse.getItems()) {
                 if (resp.isFailed()) {
@@ -129,14 +155,14 @@ public class ElasticsearchIndexer implements Indexer {
     public <T extends Entity> boolean bulkAdd(final String indexName, List<T> objs) throws IOException {
         BulkRequest bulkRequest = new BulkRequest();
         objs.stream().map(e -> createIndexRequest(indexName, getType(e), e.getId(), getJson(e), getParent(e), getRoot(e))).forEach(bulkRequest::add);
-        return executeBulk(bulkRequest);
+        return executeBulk(indexName, bulkRequest);
     }
 
     @Override
     public <T extends Entity> boolean bulkUpdate(String indexName, List<T> entities) throws IOException {
         BulkRequest bulkRequest = new BulkRequest();
         entities.stream().map(e -> createUpdateRequest(indexName, getType(e), e.getId(), getJson(e), getParent(e), getRoot(e))).forEach(bulkRequest::add);
-        return executeBulk(bulkRequest);
+        return executeBulk(indexName, bulkRequest);
     }
 
     @Override
@@ -145,6 +171,7 @@ public class ElasticsearchIndexer implements Indexer {
         String id = obj.getId();
         client.index(createIndexRequest(indexName, type, id, getJson(obj), getParent(obj), getRoot(obj)).
                 setRefreshPolicy(esCfg.refreshPolicy), RequestOptions.DEFAULT);
+        searchCache.invalidate(indexName);
     }
 
     @Override
@@ -153,6 +180,7 @@ public class ElasticsearchIndexer implements Indexer {
         String id = obj.getId();
         client.update(createUpdateRequest(indexName, type, id, getJson(obj), getParent(obj), getRoot(obj)).
                 setRefreshPolicy(esCfg.refreshPolicy), RequestOptions.DEFAULT);
+        searchCache.invalidate(indexName);
     }
 
     @Override
@@ -205,40 +233,50 @@ public class ElasticsearchIndexer implements Indexer {
 
     @Override
     public <T extends Entity> T get(String indexName, String id, String root) {
-        String type = null;
         try {
             final GetRequest req = new GetRequest(indexName, id).routing(root);
             final GetResponse resp = client.get(req, RequestOptions.DEFAULT);
             if (resp.isExists()) {
-                Map<String, Object> sourceAsMap = resp.getSourceAsMap();
-                sourceAsMap.put("rootDocument", ofNullable(resp.getFields().get("_routing")).orElse(
+                Map<String, String> fields = sourceFields(id, ElasticsearchConfiguration.indexName(resp.getIndex(), singletonList(indexName)));
+                fields.put("rootDocument", (String) ofNullable(resp.getFields().get("_routing")).orElse(
                         new DocumentField("_routing", Collections.singletonList(id))).getValues().get(0));
-                type = (String) sourceAsMap.get(esCfg.docTypeField);
-                Class<T> tClass = (Class<T>) Class.forName("org.icij.datashare.text." + type);
-                return JsonObjectMapper.getObject(id, resp.getIndex(), sourceAsMap, tClass);
+                Optional<T> entity = SourceBinder.bind(resp.getSourceAsBytesRef(), esCfg.docTypeField, fields);
+                if (!entity.isPresent()) {
+                    LOGGER.error("no entity for type of " + id + " in index " + indexName);
+                }
+                return entity.orElse(null);
             }
         } catch (IOException e) {
             LOGGER.error("Failed to get entity " + id + " in index " + indexName, e);
-        } catch (ClassNotFoundException e) {
-            LOGGER.error("no entity for type " + type);
         }
         return null;
     }
+
+    private static Map<String, String> sourceFields(String id, String index) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("id", id);
+        fields.put("projectId", index);
+        return fields;
+    }
+
     public static String readScriptFile(String painlessFilename) throws IOException {
         InputStream inputStream = ElasticsearchIndexer.class.getClassLoader().getResourceAsStream(painlessFilename);
         return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
     }
     public static String getScriptStringFromFile(String filename) throws IOException {
-        String script;
-        if (memoizeScript.containsKey(filename)){
-            script = memoizeScript.get(filename);
-        }else{
-            script = ElasticsearchIndexer.readScriptFile(filename);
-            memoizeScript.put(filename, script);
+        try {
+            return memoizeScript.computeIfAbsent(filename, f -> {
+                try {
+                    return ElasticsearchIndexer.readScriptFile(f);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return script;
     }
-    private static Script getExtractedTextScript(final int offset, final int limit, final String targetLanguage) throws IOException {
+    private Map<String, Object> getExtractedTextParams(final int offset, final int limit, final String targetLanguage) {
         Map<String,Object> params =  new HashMap<String, Object>() {{
             put("offset", offset);
             put("limit", limit);
@@ -246,8 +284,7 @@ public class ElasticsearchIndexer implements Indexer {
         if(targetLanguage != null){
             params.put("targetLanguage",targetLanguage);
         }
-        return new Script(ScriptType.INLINE, "painless",
-                ElasticsearchIndexer.getScriptStringFromFile("extractedText.painless.java"),params);
+        return params;
     }
 
     public ExtractedText getExtractedText(String indexName, String id, final int offset, final int limit, final String targetLanguage) throws IOException{
@@ -264,15 +301,16 @@ public class ElasticsearchIndexer implements Indexer {
     }
 
     private ExtractedText getExtractedContent(String indexName, String id, String routing, final int offset, final int limit, String targetLanguage) throws IOException {
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().size(DEFAULT_SEARCH_SIZE).timeout(new TimeValue(30, TimeUnit.MINUTES));
         if (offset < 0 || limit < 0) {
             throw new StringIndexOutOfBoundsException(format("offset or limit should not be negative (offset=%d, limit=%d)", offset, limit));
         }
-        sourceBuilder.query(boolQuery().must(termsQuery("_id", id)));
-        Script script= this.getExtractedTextScript(offset, limit, targetLanguage);;
-        sourceBuilder.scriptField("pagination", script);
-        SearchRequest searchRequest = new SearchRequest(new String[] {indexName}, sourceBuilder);
-        SearchResponse search = client.search(searchRequest.routing(routing), RequestOptions.DEFAULT);
+        if (targetLanguage == null && esCfg.contentPageSize > 0) {
+            ExtractedText extractedText = ContentPages.read(client, indexName, id, routing, offset, limit, esCfg.contentPageSize);
+            if (extractedText != null) {
+                return extractedText;
+            }
+        }
+        SearchResponse search = searchScriptField(indexName, id, routing, StoredScripts.Name.EXTRACTED_TEXT, getExtractedTextParams(offset, limit, targetLanguage));
         List<SearchHit> tHits = searchHitStream(() -> search.getHits().iterator()).collect(Collectors.toList());
         if(tHits.isEmpty()){
             throw new IllegalArgumentException("Document not found");
@@ -298,16 +336,25 @@ public class ElasticsearchIndexer implements Indexer {
        return extractedText;
     }
 
-    private static Script searchQueryOccurrencesScript(final String query, String targetLanguage) throws IOException {
+    private Map<String, Object> searchQueryOccurrencesParams(final String query, String targetLanguage) {
         Map<String,Object> params = new HashMap<String, Object>() {{
             put("query", query);
         }};
-        Script script;
         if(targetLanguage != null){
             params.put("targetLanguage",targetLanguage);
         }
-        return new Script(ScriptType.INLINE, "painless",
-                ElasticsearchIndexer.getScriptStringFromFile("searchOccurrences.painless.java"),params);
+        return params;
+    }
+
+    /**
+     * @return the search response of the document with the script as "pagination" field
+     */
+    private SearchResponse searchScriptField(String indexName, String id, String routing, StoredScripts.Name name, Map<String, Object> params) throws IOException {
+        return storedScripts.execute(name, params, script -> {
+            SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().size(DEFAULT_SEARCH_SIZE).timeout(new TimeValue(30, TimeUnit.MINUTES))
+                    .query(boolQuery().must(termsQuery("_id", id))).scriptField("pagination", script);
+            return client.search(new SearchRequest(new String[] {indexName}, sourceBuilder).routing(routing), RequestOptions.DEFAULT);
+        });
     }
     @Override
     public SearchedText searchTextOccurrences(String indexName, String id, String query, String targetLanguage) throws IOException {
@@ -320,15 +367,20 @@ public class ElasticsearchIndexer implements Indexer {
 
     }
     private SearchedText searchContentOccurrences(String indexName, String id, String routing, final String query, String targetLanguage) throws IOException {
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().size(DEFAULT_SEARCH_SIZE).timeout(new TimeValue(30, TimeUnit.MINUTES));
         if (query.length() == 0) {
             throw new IllegalArgumentException();
         }
-        sourceBuilder.query(boolQuery().must(termsQuery("_id", id)));
-        Script script = searchQueryOccurrencesScript(query, targetLanguage);
-        sourceBuilder.scriptField("pagination", script);
-        SearchRequest searchRequest = new SearchRequest(new String[] {indexName}, sourceBuilder);
-        SearchResponse search = client.search(searchRequest.routing(routing), RequestOptions.DEFAULT);
+        if (ContentOccurrences.isSingleTerm(query)) {
+            try {
+                SearchedText searchedText = ContentOccurrences.search(client, indexName, id, routing, query, targetLanguage);
+                if (searchedText != null) {
+                    return searchedText;
+                }
+            } catch (ElasticsearchException e) {
+                LOGGER.warn("cannot read occurrences of \"{}\" in {} from term vectors, falling back to script", query, id, e);
+            }
+        }
+        SearchResponse search = searchScriptField(indexName, id, routing, StoredScripts.Name.SEARCH_OCCURRENCES, searchQueryOccurrencesParams(query, targetLanguage));
         List<SearchHit> tHits = searchHitStream(() -> search.getHits().iterator()).collect(Collectors.toList());
         if(tHits.isEmpty()){
             throw new IllegalArgumentException("Document not found");
@@ -363,71 +415,52 @@ public class ElasticsearchIndexer implements Indexer {
 
     @Override
     public boolean tag(Project prj, String documentId, String rootDocument, Tag... tags) throws IOException {
-        return tagUntag(prj, documentId, rootDocument, createTagScript(tags));
+        return tagUntag(prj, documentId, rootDocument, StoredScripts.Name.TAG, tags);
     }
 
     @Override
     public boolean untag(Project prj, String documentId, String rootDocument, Tag... tags) throws IOException {
-        return tagUntag(prj, documentId, rootDocument, createUntagScript(tags));
+        return tagUntag(prj, documentId, rootDocument, StoredScripts.Name.UNTAG, tags);
     }
 
-    private boolean tagUntag(Project prj, String documentId, String rootDocument, Script untagScript) throws IOException {
-        UpdateRequest update = new UpdateRequest(prj.getId(), documentId).routing(rootDocument);
-        update.script(untagScript);
-        update.setRefreshPolicy(esCfg.refreshPolicy);
-        UpdateResponse updateResponse = client.update(update, RequestOptions.DEFAULT);
+    private boolean tagUntag(Project prj, String documentId, String rootDocument, StoredScripts.Name scriptName, Tag[] tags) throws IOException {
+        UpdateResponse updateResponse = storedScripts.execute(scriptName, tagParams(tags), script -> {
+            UpdateRequest update = new UpdateRequest(prj.getId(), documentId).routing(rootDocument);
+            update.script(script);
+            update.setRefreshPolicy(esCfg.refreshPolicy);
+            return client.update(update, RequestOptions.DEFAULT);
+        });
+        searchCache.invalidate(prj.getId());
         return updateResponse.status() == RestStatus.OK && updateResponse.getResult() == DocWriteResponse.Result.UPDATED;
     }
 
     @Override
     public boolean tag(Project prj, List<String> documentIds, Tag... tags) throws IOException {
-        return groupTagUntag(prj, documentIds, createTagScript(tags));
+        return groupTagUntag(prj, documentIds, StoredScripts.Name.TAG, tags);
     }
 
     @Override
     public boolean untag(Project prj, List<String> documentIds, Tag... tags) throws IOException {
-        return groupTagUntag(prj, documentIds, createUntagScript(tags));
-    }
-
-    private boolean groupTagUntag(Project prj, List<String> documentIds, Script untagScript) throws IOException {
-        UpdateByQueryRequest updateByQuery = new UpdateByQueryRequest(prj.getId());
-        updateByQuery.setQuery(termsQuery("_id", documentIds.toArray(new String[0])));
-        updateByQuery.setConflicts("proceed");
-        updateByQuery.setScript(untagScript);
-        updateByQuery.setRefresh(esCfg.refreshPolicy.getValue().equals("true"));
-        BulkByScrollResponse updateResponse = client.updateByQuery(updateByQuery, RequestOptions.DEFAULT);
+        return groupTagUntag(prj, documentIds, StoredScripts.Name.UNTAG, tags);
+    }
+
+    private boolean groupTagUntag(Project prj, List<String> documentIds, StoredScripts.Name scriptName, Tag[] tags) throws IOException {
+        BulkByScrollResponse updateResponse = storedScripts.execute(scriptName, tagParams(tags), script -> {
+            UpdateByQueryRequest updateByQuery = new UpdateByQueryRequest(prj.getId());
+            updateByQuery.setQuery(termsQuery("_id", documentIds.toArray(new String[0])));
+            updateByQuery.setConflicts("proceed");
+            updateByQuery.setScript(script);
+            updateByQuery.setRefresh(esCfg.refreshPolicy.getValue().equals("true"));
+            return client.updateByQuery(updateByQuery, RequestOptions.DEFAULT);
+        });
+        searchCache.invalidate(prj.getId());
         return updateResponse.getBulkFailures().size() == 0 && updateResponse.getUpdated() > 0;
     }
 
-    private Script createTagScript(Tag[] tags) {
-        return new Script(ScriptType.INLINE, "painless",
-                "int updates = 0;" +
-                        "if (ctx._source.tags == null) ctx._source.tags = [];" +
-                        "for (int i = 0; i < params.tags.length; i++) {" +
-                        "  if (!ctx._source.tags.contains(params.tags[i])) {" +
-                        "   ctx._source.tags.add(params.tags[i]);" +
-                        "   updates++;" +
-                        "  }" +
-                        "}" +
-                        "if (updates == 0) ctx.op = 'noop';",
-                new HashMap<String, Object>() {{
-                    put("tags", stream(tags).map(t -> t.label).collect(toList()));
-                }});
-    }
-
-    private Script createUntagScript(Tag[] tags) {
-        return new Script(ScriptType.INLINE, "painless",
-                "int updates = 0;" +
-                        "for (int i = 0; i < params.tags.length; i++) {" +
-                        "  if (ctx._source.tags.contains(params.tags[i])) {" +
-                        "    ctx._source.tags.remove(ctx._source.tags.indexOf(params.tags[i]));" +
-                        "    updates++;" +
-                        "  }" +
-                        "}" +
-                        "if (updates == 0) ctx.op = 'noop';",
-                new HashMap<String, Object>() {{
-                    put("tags", stream(tags).map(t -> t.label).collect(toList()));
-                }});
+    private static Map<String, Object> tagParams(Tag[] tags) {
+        return new HashMap<String, Object>() {{
+            put("tags", stream(tags).map(t -> t.label).collect(toList()));
+        }};
     }
 
     @Override
@@ -437,27 +470,53 @@ public class ElasticsearchIndexer implements Indexer {
 
     @Override
     public boolean createIndex(final String indexName) {
-        return ElasticsearchConfiguration.createIndex(client, indexName);
+        return createIndex(indexName, esCfg.shards, esCfg.replicas);
     }
 
+    public boolean createIndex(final String indexName, int shards, int replicas) {
+        boolean created = ElasticsearchConfiguration.createIndex(client, indexName, shards, replicas);
+        searchCache.invalidate(indexName);
+        storedScripts.storeAll();
+        return created;
+    }
+
+    /**
+     * removes all the documents of the index by creating a new empty version of it with the same
+     * number of shards and replicas, switching the index alias to it and dropping the previous version.
+     * It is instantaneous whatever the size of the index, and it doesn't leave deleted documents
+     * in the segments like a delete by query.
+     *
+     * @return false if the index doesn't exist
+     */
     @Override
     public boolean deleteAll(String indexName) throws IOException {
-        Request post = new Request("POST", indexName + "/_delete_by_query?refresh");
-        post.setEntity(new NStringEntity("{\"query\":{\"match_all\": {}}}", ContentType.APPLICATION_JSON));
-        Response response = client.getLowLevelClient().performRequest(post);
-        return response.getStatusLine().getStatusCode() == RestStatus.OK.getStatus();
+        Optional<String> previousIndex = ElasticsearchConfiguration.concreteIndex(client, indexName);
+        if (!previousIndex.isPresent()) {
+            return false;
+        }
+        Settings settings = ElasticsearchConfiguration.indexSettings(client, previousIndex.get(),
+                ElasticsearchConfiguration.SHARDS_SETTING, ElasticsearchConfiguration.REPLICAS_SETTING);
+        String index = ElasticsearchConfiguration.createVersionedIndex(client, indexName,
+                ElasticsearchConfiguration.indexVersion(indexName, previousIndex.get()) + 1, settings, false);
+        ElasticsearchConfiguration.switchAlias(client, indexName, previousIndex.get(), index);
+        searchCache.invalidate(indexName);
+        return true;
     }
 
     private static Stream<SearchHit> searchHitStream(Iterable<SearchHit> searchHitIterable) {
         return StreamSupport.stream(searchHitIterable.spliterator(), false);
     }
 
-    private static <T extends Entity> Stream<T> resultStream(Class<T> cls, Iterable<SearchHit> iterable) {
-        return searchHitStream(iterable).map(hit -> hitToObject(hit, cls));
+    /**
+     * @param indexNames the searched indices: the project of a hit is the one serving its concrete index
+     */
+    private static <T extends Entity> Stream<T> resultStream(Class<T> cls, Iterable<SearchHit> iterable, List<String> indexNames) {
+        return searchHitStream(iterable).map(hit -> hitToObject(hit, cls, indexNames));
     }
 
-    private static <T extends Entity> T hitToObject(SearchHit searchHit, Class<T> cls) {
-        return JsonObjectMapper.getObject(searchHit.getId(), searchHit.getIndex(), searchHit.getSourceAsMap(), cls);
+    private static <T extends Entity> T hitToObject(SearchHit searchHit, Class<T> cls, List<String> indexNames) {
+        return SourceBinder.bind(searchHit.getSourceRef(), cls,
+                sourceFields(searchHit.getId(), ElasticsearchConfiguration.indexName(searchHit.getIndex(), indexNames)));
     }
 
     public ElasticsearchIndexer withRefresh(WriteRequest.RefreshPolicy refresh) {
@@ -465,9 +524,10 @@ public class ElasticsearchIndexer implements Indexer {
         return this;
     }
 
-    private boolean executeBulk(BulkRequest bulkRequest) throws IOException {
+    private boolean executeBulk(String indexName, BulkRequest bulkRequest) throws IOException {
         bulkRequest.setRefreshPolicy(esCfg.refreshPolicy);
         BulkResponse bulkResponse = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+        searchCache.invalidate(indexName);
         if (bulkResponse.hasFailures()) {
             for (BulkItemResponse resp : bulkResponse.getItems()) {
                 if (resp.isFailed()) {
@@ -491,6 +551,9 @@ public class ElasticsearchIndexer implements Indexer {
 
     static class ElasticsearchSearcher implements Searcher {
         static final TimeValue KEEP_ALIVE = new TimeValue(60000);
+        static final String SEQ_NO_FIELD = "_seq_no";
+        // sequence numbers start at 0
+        private static final Object[] BEFORE_FIRST_SEQ_NO = new Object[] {-1L};
         private BoolQueryBuilder boolQuery;
         private final RestHighLevelClient client;
         private final ElasticsearchConfiguration config;
@@ -499,6 +562,9 @@ public class ElasticsearchIndexer implements Indexer {
         private final SearchSourceBuilder sourceBuilder;
         private String scrollId;
         private long totalHits;
+        private List<IndexShard> sliceShards;
+        private int shardIndex;
+        private Object[] lastSortValues;
 
         ElasticsearchSearcher(RestHighLevelClient client, ElasticsearchConfiguration config, final List<String> indexesNames, final Class<? extends Entity> cls) {
             this.client = client;
@@ -521,7 +587,7 @@ public class ElasticsearchIndexer implements Indexer {
             Object[] indexesArray = indexesNames.toArray();
             SearchRequest searchRequest = new SearchRequest(Arrays.copyOf(indexesArray, indexesArray.length, String[].class), sourceBuilder);
             SearchResponse search = client.search(searchRequest, RequestOptions.DEFAULT);
-            return resultStream(this.cls, () -> search.getHits().iterator());
+            return resultStream(this.cls, () -> search.getHits().iterator(), indexesNames);
         }
 
         @Override
@@ -531,6 +597,9 @@ public class ElasticsearchIndexer implements Indexer {
 
         @Override
         public Stream<? extends Entity> scroll(int numSlice, int nbSlices) throws IOException {
+            if (config.searchAfter) {
+                return searchAfter(numSlice, Math.max(1, nbSlices));
+            }
             sourceBuilder.query(boolQuery);
             if (nbSlices > 1) {
                 sourceBuilder.slice(new SliceBuilder(numSlice, nbSlices));
@@ -546,7 +615,79 @@ public class ElasticsearchIndexer implements Indexer {
                 search = client.scroll(new SearchScrollRequest(scrollId).scroll(KEEP_ALIVE), RequestOptions.DEFAULT);
                 scrollId = search.getScrollId();
             }
-            return resultStream(this.cls, () -> search.getHits().iterator());
+            return resultStream(this.cls, () -> search.getHits().iterator(), indexesNames);
+        }
+
+        /**
+         * pages through the hits with search_after instead of a scroll, so no search context
+         * is kept on the cluster between calls. As there is no point in time in this
+         * elasticsearch version, hits are read one shard of one index after the other sorted by
+         * their sequence number, which is unique and doc valued in a shard (but not across
+         * shards or indices). A slice is the group of shards whose number modulo nbSlices is numSlice.
+         *
+         * Without a point in time, the hits are not a snapshot: a document updated during the
+         * iteration gets a new sequence number, so it is read again if it had already been read
+         * in its shard. Callers that update the documents they read should filter them out with
+         * the query (like the NLP tasks do with the nerTags of their pipeline) or be idempotent.
+         */
+        private Stream<? extends Entity> searchAfter(int numSlice, int nbSlices) throws IOException {
+            if (sliceShards == null) {
+                sourceBuilder.query(boolQuery).trackTotalHits(false);
+                if (sourceBuilder.sorts() == null) {
+                    sourceBuilder.sort(SEQ_NO_FIELD);
+                }
+                sliceShards = shards(indexesNames.toArray(new String[0]), numSlice, nbSlices);
+                shardIndex = 0;
+                lastSortValues = BEFORE_FIRST_SEQ_NO;
+                totalHits = 0;
+                Map<String, List<Integer>> shardsByIndex = sliceShards.stream().collect(groupingBy(s -> s.index, LinkedHashMap::new, mapping(s -> s.shard, toList())));
+                for (Map.Entry<String, List<Integer>> indexShards : shardsByIndex.entrySet()) {
+                    totalHits += client.count(new CountRequest(indexShards.getKey())
+                            .query(boolQuery).preference(shardsPreference(indexShards.getValue())), RequestOptions.DEFAULT).getCount();
+                }
+            }
+            while (shardIndex < sliceShards.size()) {
+                IndexShard indexShard = sliceShards.get(shardIndex);
+                sourceBuilder.searchAfter(lastSortValues);
+                SearchRequest searchRequest = new SearchRequest(new String[]{indexShard.index}, sourceBuilder).preference(shardsPreference(singletonList(indexShard.shard)));
+                SearchResponse search = client.search(searchRequest, RequestOptions.DEFAULT);
+                SearchHit[] hits = search.getHits().getHits();
+                if (hits.length > 0) {
+                    lastSortValues = hits[hits.length - 1].getSortValues();
+                    return resultStream(this.cls, () -> search.getHits().iterator(), indexesNames);
+                }
+                shardIndex++;
+                lastSortValues = BEFORE_FIRST_SEQ_NO;
+            }
+            return Stream.empty();
+        }
+
+        /**
+         * @return the shards of the slice for each concrete index (the settings are returned for the indices behind the aliases)
+         */
+        private List<IndexShard> shards(String[] indexes, int numSlice, int nbSlices) throws IOException {
+            GetSettingsResponse response = client.indices().getSettings(new GetSettingsRequest().indices(indexes).names(SETTING_NUMBER_OF_SHARDS), RequestOptions.DEFAULT);
+            List<IndexShard> shards = new ArrayList<>();
+            for (Iterator<String> it = response.getIndexToSettings().keysIt(); it.hasNext(); ) {
+                String index = it.next();
+                int nbShards = response.getIndexToSettings().get(index).getAsInt(SETTING_NUMBER_OF_SHARDS, 1);
+                IntStream.range(0, nbShards).filter(shard -> shard % nbSlices == numSlice).forEach(shard -> shards.add(new IndexShard(index, shard)));
+            }
+            return shards;
+        }
+
+        private static String shardsPreference(List<Integer> shards) {
+            return "_shards:" + shards.stream().map(String::valueOf).collect(Collectors.joining(","));
+        }
+
+        private static class IndexShard {
+            final String index;
+            final int shard;
+
+            IndexShard(String index, int shard) {
+                this.index = index;
+                this.shard = shard;
+            }
         }
 
         @Override
@@ -646,11 +787,15 @@ public class ElasticsearchIndexer implements Indexer {
 
         @Override
         public void clearScroll() throws IOException {
+            sliceShards = null;
+            totalHits = 0;
+            if (scrollId == null) {
+                return;
+            }
             ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
             clearScrollRequest.addScrollId(scrollId);
             this.client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
             scrollId = null;
-            totalHits = 0;
         }
 
         @Override
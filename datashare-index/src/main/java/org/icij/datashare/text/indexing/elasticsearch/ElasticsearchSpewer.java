@@ -1,16 +1,36 @@
 package org.icij.datashare.text.indexing.elasticsearch;
 
 import com.google.inject.Inject;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetMappingsRequest;
+import org.elasticsearch.client.indices.PutMappingRequest;
+import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.icij.datashare.Entity;
 import org.icij.datashare.HumanReadableSize;
 import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.com.BufferedPublisher;
 import org.icij.datashare.com.Message;
 import org.icij.datashare.com.Publisher;
 import org.icij.datashare.text.indexing.LanguageGuesser;
@@ -22,57 +42,175 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
 
+import static java.lang.Math.min;
 import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.nio.file.Paths.get;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonMap;
+import static java.util.Collections.synchronizedMap;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toMap;
 import static org.apache.tika.metadata.HttpHeaders.*;
 import static org.icij.datashare.com.Channel.NLP;
 import static org.icij.datashare.com.Message.Type.EXTRACT_NLP;
 import static org.icij.datashare.text.Hasher.shorten;
+import static org.icij.datashare.text.indexing.elasticsearch.ContentPages.isPageId;
+import static org.icij.datashare.text.indexing.elasticsearch.ContentPages.pageRequests;
 import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.*;
 
 public class ElasticsearchSpewer extends Spewer implements Serializable {
     private static final Logger logger = LoggerFactory.getLogger(ElasticsearchSpewer.class);
     public static final String DEFAULT_VALUE_UNKNOWN = "unknown";
+    private static final int CONTENT_BUFFER_SIZE = 8192;
 
     private final RestHighLevelClient client;
+    private final SearchCache searchCache;
     private final ElasticsearchConfiguration esCfg;
-    private final Publisher publisher;
+    private final BufferedPublisher publisher;
     private final LanguageGuesser languageGuesser;
     private final int maxContentLength;
+    private final BulkProcessor bulkProcessor;
+    private final Set<String> bulkIds = ConcurrentHashMap.newKeySet();
+    private final Map<DocWriteRequest<?>, Path> bulkPaths = synchronizedMap(new IdentityHashMap<>());
+    private final PendingPaths pendingPaths = new PendingPaths();
+    private final List<DuplicateCandidate> duplicateCandidates = new ArrayList<>();
+    private long duplicateCandidatesSize = 0;
+    private final ScheduledExecutorService candidatesFlusher;
+    private DocumentIdFilter idFilter;
+    // index name -> ingest profile applied by the spewers of this process, so that concurrent index tasks restore it once
+    private static final Map<String, IngestProfile> ingestProfiles = new HashMap<>();
+    static final String INGEST_ORIGINAL_SETTINGS_META = "datashare_ingest_original_settings";
+    private String ingestProfileIndex;
     private String indexName;
 
-    @Inject
     public ElasticsearchSpewer(final RestHighLevelClient client, LanguageGuesser languageGuesser, final FieldNames fields,
                                Publisher publisher, final PropertiesProvider propertiesProvider) {
+        this(client, languageGuesser, fields, publisher, propertiesProvider, new SearchCache(0));
+    }
+
+    /**
+     * @param searchCache the cache whose responses are invalidated by the writes of the spewer
+     */
+    @Inject
+    public ElasticsearchSpewer(final RestHighLevelClient client, LanguageGuesser languageGuesser, final FieldNames fields,
+                               Publisher publisher, final PropertiesProvider propertiesProvider, final SearchCache searchCache) {
         super(fields);
         this.client = client;
+        this.searchCache = searchCache;
         this.languageGuesser = languageGuesser;
-        this.publisher = publisher;
+        this.publisher = new BufferedPublisher(publisher);
         this.esCfg = new ElasticsearchConfiguration(propertiesProvider);
         this.maxContentLength = getMaxContentLength(propertiesProvider);
+        this.bulkProcessor = esCfg.bulkIndexing ? createBulkProcessor() : null;
+        this.candidatesFlusher = esCfg.bulkIndexing && esCfg.bulkFlushIntervalSeconds > 0 ? createCandidatesFlusher() : null;
         logger.info("spewer defined with {}", esCfg);
     }
 
     @Override
     protected void writeDocument(TikaDocument doc, TikaDocument parent, TikaDocument root, int level) throws IOException {
-        final IndexRequest req = prepareRequest(doc, parent, root, level);
+        Map<String, Object> jsonDocument = getDocumentMap(doc);
+        IndexRequest req = prepareRequest(doc, parent, root, level, jsonDocument);
+        Path path = (root == null ? doc : root).getPath();
+        List<IndexRequest> pageRequests = pageRequests(indexName, esCfg.docTypeField, req.id(),
+                parent == null ? doc.getId() : root.getId(), (String) jsonDocument.get(ES_CONTENT_FIELD), esCfg.contentPageSize);
+        if (parent == null && mightBeDuplicate(doc.getId())) {
+            if (bulkProcessor != null) {
+                addDuplicateCandidate(req, pageRequests, doc);
+                return;
+            }
+            if (isDuplicate(doc.getId())) {
+                req = prepareDuplicateRequest(doc);
+                pageRequests = emptyList();
+            }
+        }
+        if (idFilter != null) {
+            idFilter.put(doc.getId());
+        }
+        if (bulkProcessor != null) {
+            addToBulk(req, path);
+            pageRequests.forEach(pageRequest -> addToBulk(pageRequest, path));
+            return;
+        }
+        req.setRefreshPolicy(esCfg.refreshPolicy);
         long before = currentTimeMillis();
         IndexResponse indexResponse = client.index(req, RequestOptions.DEFAULT);
+        indexPages(pageRequests);
+        searchCache.invalidate(indexName);
         logger.info("{} {} added to elasticsearch in {}ms: {}", parent == null ? "Document" : "Child",
                 shorten(indexResponse.getId(), 4), currentTimeMillis() - before, doc);
-        synchronized (publisher) { // jedis instance is not thread safe and Spewer is shared in DocumentConsumer threads
-            publisher.publish(NLP, new Message(EXTRACT_NLP)
-                    .add(Message.Field.INDEX_NAME, indexName)
-                    .add(Message.Field.DOC_ID, indexResponse.getId())
-                    .add(Message.Field.R_ID, parent == null ? doc.getId() : root.getId()));
+        publishExtractNlp(indexResponse.getId(), parent == null ? doc.getId() : root.getId());
+    }
+
+    private void indexPages(List<IndexRequest> pageRequests) throws IOException {
+        if (pageRequests.isEmpty()) {
+            return;
+        }
+        BulkRequest bulkRequest = new BulkRequest().setRefreshPolicy(esCfg.refreshPolicy);
+        pageRequests.forEach(bulkRequest::add);
+        BulkResponse bulkResponse = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+        if (bulkResponse.hasFailures()) {
+            logger.error("cannot index content pages : {}", bulkResponse.buildFailureMessage());
+        }
+    }
+
+    private void publishExtractNlp(String docId, String rootId) {
+        // spewer is shared in DocumentConsumer threads: the buffered publisher batches their messages without locking them
+        publisher.publish(NLP, extractNlpMessage(docId, rootId));
+    }
+
+    private Message extractNlpMessage(String docId, String rootId) {
+        return new Message(EXTRACT_NLP)
+                .add(Message.Field.INDEX_NAME, indexName)
+                .add(Message.Field.DOC_ID, docId)
+                .add(Message.Field.R_ID, rootId);
+    }
+
+    /**
+     * @param callback run once the bulk requests with the documents extracted from the file are done, or
+     * right away without bulk indexing. It is given false if one of these documents could not be indexed.
+     */
+    public void whenIndexed(Path path, Consumer<Boolean> callback) {
+        pendingPaths.whenIndexed(path, callback);
+    }
+
+    /**
+     * flushes the pending bulk requests (if bulk indexing is enabled) and waits for them to be indexed,
+     * then sends the queued NLP messages.
+     * The spewer should not be used after being closed.
+     */
+    @Override
+    public void close() throws Exception {
+        if (bulkProcessor != null) {
+            if (candidatesFlusher != null) {
+                candidatesFlusher.shutdownNow();
+            }
+            synchronized (duplicateCandidates) {
+                confirmDuplicateCandidates();
+            }
+            if (!bulkProcessor.awaitClose(30, MINUTES)) {
+                logger.warn("bulk processor has not terminated after 30 minutes, some documents may not be indexed");
+            }
         }
+        publisher.flush();
     }
 
     public ElasticsearchSpewer withIndex(final String indexName) {
@@ -80,20 +218,171 @@ public class ElasticsearchSpewer extends Spewer implements Serializable {
         return this;
     }
 
+    /**
+     * creates the index if it doesn't exist. If the duplicate filter is enabled,
+     * it is seeded with the ids of the documents already in the index.
+     */
     public void createIndex() {
-        ElasticsearchConfiguration.createIndex(client, indexName);
+        createIndex(esCfg.shards, esCfg.replicas);
     }
 
-    private IndexRequest prepareRequest(final TikaDocument document, final TikaDocument parent, TikaDocument root, final int level) throws IOException {
-        IndexRequest req = new IndexRequest(indexName).id(document.getId());
-        Map<String, Object> jsonDocument = getDocumentMap(document);
+    /**
+     * same as {@link #createIndex()} with the given number of shards and replicas if the index is created.
+     */
+    public void createIndex(int shards, int replicas) {
+        boolean created = ElasticsearchConfiguration.createIndex(client, indexName, shards, replicas);
+        searchCache.invalidate(indexName);
+        if (!created && esCfg.contentPageSize > 0) {
+            ElasticsearchConfiguration.putContentPageMapping(client, indexName);
+        }
+        if (esCfg.duplicateFilter) {
+            try {
+                idFilter = created ? DocumentIdFilter.empty() : DocumentIdFilter.fromIndex(client, indexName, esCfg.docTypeField);
+            } catch (IOException e) {
+                logger.error("cannot seed duplicate filter with index " + indexName + ", duplicates will be checked for each document", e);
+            }
+        }
+    }
+
+    /**
+     * if ingest settings are enabled, saves the index settings that are changed for ingestion
+     * (refresh, replicas, translog durability) and applies the ingest settings. It should be followed
+     * by {@link #restoreIndexSettings()}. Errors are logged, the ingestion can run with the original settings.
+     *
+     * The spewers ingesting the same index share the ingest profile: the settings are restored by the
+     * last one. The original settings are also saved in the index mapping metadata, so that a process
+     * finding the ingest settings in place (applied by another process, or by a task that was killed)
+     * restores them instead of leaving the index unrefreshed. Without saved settings, the defaults
+     * (default refresh interval and durability, configured replicas) are restored.
+     */
+    public void applyIngestSettings() {
+        if (!esCfg.ingestSettings || ingestProfileIndex != null) {
+            return;
+        }
+        synchronized (ingestProfiles) {
+            IngestProfile profile = ingestProfiles.get(indexName);
+            if (profile != null) {
+                profile.spewers++;
+                ingestProfileIndex = indexName;
+                return;
+            }
+            try {
+                GetSettingsRequest getRequest = new GetSettingsRequest().indices(indexName).names(INGEST_SETTINGS.keySet().toArray(new String[0]));
+                // the settings are returned for the concrete index behind the index alias
+                Iterator<Settings> settings = client.indices().getSettings(getRequest, RequestOptions.DEFAULT).getIndexToSettings().valuesIt();
+                Settings indexSettings = settings.hasNext() ? settings.next() : null;
+                Map<String, Object> meta = getMappingMeta();
+                Settings settingsToRestore = getSavedSettings(meta);
+                if (settingsToRestore == null) {
+                    if (indexSettings != null && INGEST_SETTINGS.keySet().stream().allMatch(key -> INGEST_SETTINGS.get(key).equals(indexSettings.get(key)))) {
+                        logger.warn("ingest settings are applied to index {} without saved settings, defaults will be restored", indexName);
+                        settingsToRestore = Settings.builder().put(REFRESH_INTERVAL_SETTING, (String) null)
+                                .put(REPLICAS_SETTING, esCfg.replicas).put(TRANSLOG_DURABILITY_SETTING, (String) null).build();
+                    } else {
+                        Settings.Builder builder = Settings.builder();
+                        for (String key : INGEST_SETTINGS.keySet()) {
+                            // unset settings are reset to their default on restore
+                            builder.put(key, indexSettings == null ? null : indexSettings.get(key));
+                        }
+                        Settings originalSettings = builder.build();
+                        meta.put(INGEST_ORIGINAL_SETTINGS_META, originalSettings.keySet().stream()
+                                .filter(key -> originalSettings.get(key) != null).collect(toMap(key -> key, originalSettings::get)));
+                        putMappingMeta(meta);
+                        settingsToRestore = originalSettings;
+                    }
+                } else {
+                    logger.info("ingest settings are already applied to index {}, settings {} will be restored", indexName, settingsToRestore);
+                }
+                client.indices().putSettings(new UpdateSettingsRequest(indexName).settings(INGEST_SETTINGS), RequestOptions.DEFAULT);
+                ingestProfiles.put(indexName, new IngestProfile(settingsToRestore));
+                ingestProfileIndex = indexName;
+                logger.info("ingest settings {} applied to index {}", INGEST_SETTINGS, indexName);
+            } catch (IOException | ElasticsearchException e) {
+                logger.error("cannot apply ingest settings to index " + indexName, e);
+            }
+        }
+    }
+
+    /**
+     * restores the index settings saved by {@link #applyIngestSettings()} if no other spewer is ingesting
+     * the index, refreshes the index and force merges it if ingestForceMergeSegments is set. Errors are logged.
+     */
+    public void restoreIndexSettings() {
+        if (ingestProfileIndex == null) {
+            return;
+        }
+        String index = ingestProfileIndex;
+        ingestProfileIndex = null;
+        try {
+            synchronized (ingestProfiles) {
+                IngestProfile profile = ingestProfiles.get(index);
+                if (profile == null || --profile.spewers > 0) {
+                    return;
+                }
+                ingestProfiles.remove(index);
+                client.indices().putSettings(new UpdateSettingsRequest(index).settings(profile.originalSettings), RequestOptions.DEFAULT);
+                Map<String, Object> meta = getMappingMeta();
+                if (meta.remove(INGEST_ORIGINAL_SETTINGS_META) != null) {
+                    putMappingMeta(meta);
+                }
+            }
+            client.indices().refresh(new RefreshRequest(index), RequestOptions.DEFAULT);
+            searchCache.invalidate(index);
+            logger.info("index {} settings restored and index refreshed", index);
+            if (esCfg.ingestForceMergeSegments > 0) {
+                long before = currentTimeMillis();
+                client.indices().forcemerge(new ForceMergeRequest(index).maxNumSegments(esCfg.ingestForceMergeSegments), RequestOptions.DEFAULT);
+                logger.info("index {} merged to {} segment(s) in {}ms", index, esCfg.ingestForceMergeSegments, currentTimeMillis() - before);
+            }
+        } catch (IOException | ElasticsearchException e) {
+            logger.error("cannot restore settings of index " + index, e);
+        }
+    }
+
+    /**
+     * forgets the ingest profiles of this process, as if it was restarted
+     */
+    static void clearIngestProfiles() {
+        synchronized (ingestProfiles) {
+            ingestProfiles.clear();
+        }
+    }
 
-        if (parent == null && isDuplicate(document.getId())) {
-            IndexRequest indexRequest = new IndexRequest(indexName).id(Entity.HASHER.hash(document.getPath()));
-            indexRequest.source(getDuplicateMap(document));
-            indexRequest.setRefreshPolicy(esCfg.refreshPolicy);
-            return indexRequest;
+    /**
+     * @return the settings saved in the metadata by {@link #applyIngestSettings()}, with the unset settings
+     * reset to their default, or null if there are none
+     */
+    @SuppressWarnings("unchecked")
+    private static Settings getSavedSettings(Map<String, Object> meta) {
+        Map<String, Object> saved = (Map<String, Object>) meta.get(INGEST_ORIGINAL_SETTINGS_META);
+        if (saved == null) {
+            return null;
+        }
+        Settings.Builder builder = Settings.builder();
+        for (String key : INGEST_SETTINGS.keySet()) {
+            builder.put(key, saved.get(key) == null ? null : String.valueOf(saved.get(key)));
         }
+        return builder.build();
+    }
+
+    /**
+     * @return a copy of the mapping metadata (_meta) of the concrete index behind the index name
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getMappingMeta() throws IOException {
+        Iterator<MappingMetadata> mappings = client.indices().getMapping(new GetMappingsRequest().indices(indexName), RequestOptions.DEFAULT).mappings().values().iterator();
+        Object meta = mappings.hasNext() ? mappings.next().getSourceAsMap().get("_meta") : null;
+        return meta == null ? new HashMap<>() : new HashMap<>((Map<String, Object>) meta);
+    }
+
+    private void putMappingMeta(Map<String, Object> meta) throws IOException {
+        // the mapping metadata is replaced as a whole
+        client.indices().putMapping(new PutMappingRequest(indexName).source(singletonMap("_meta", meta)), RequestOptions.DEFAULT);
+    }
+
+    private IndexRequest prepareRequest(final TikaDocument document, final TikaDocument parent, TikaDocument root, final int level,
+                                        final Map<String, Object> jsonDocument) {
+        IndexRequest req = new IndexRequest(indexName).id(document.getId());
 
         if (parent != null) {
             jsonDocument.put(DEFAULT_PARENT_DOC_FIELD, parent.getId());
@@ -101,9 +390,15 @@ public class ElasticsearchSpewer extends Spewer implements Serializable {
             req.routing(root.getId());
         }
         jsonDocument.put("extractionLevel", level);
-        req = req.source(jsonDocument);
-        req.setRefreshPolicy(esCfg.refreshPolicy);
-        return req;
+        return req.source(jsonDocument);
+    }
+
+    private IndexRequest prepareDuplicateRequest(final TikaDocument document) {
+        return new IndexRequest(indexName).id(Entity.HASHER.hash(document.getPath())).source(getDuplicateMap(document));
+    }
+
+    private boolean mightBeDuplicate(String docId) {
+        return idFilter == null || idFilter.mightContain(docId);
     }
 
     private boolean isDuplicate(String docId) throws IOException {
@@ -113,6 +408,63 @@ public class ElasticsearchSpewer extends Spewer implements Serializable {
         return client.exists(getRequest, RequestOptions.DEFAULT);
     }
 
+    private void addToBulk(IndexRequest req, Path path) {
+        bulkIds.add(req.id());
+        pendingPaths.add(path);
+        bulkPaths.put(req, path);
+        bulkProcessor.add(req);
+    }
+
+    private void addDuplicateCandidate(IndexRequest documentRequest, List<IndexRequest> pageRequests, TikaDocument document) throws IOException {
+        if (idFilter != null) {
+            idFilter.put(documentRequest.id());
+        }
+        pendingPaths.add(document.getPath());
+        synchronized (duplicateCandidates) {
+            duplicateCandidates.add(new DuplicateCandidate(documentRequest, pageRequests, document));
+            duplicateCandidatesSize += documentRequest.source().length();
+            if (duplicateCandidates.size() >= esCfg.bulkActions || duplicateCandidatesSize >= esCfg.bulkSize) {
+                confirmDuplicateCandidates();
+            }
+        }
+    }
+
+    /**
+     * checks the candidates with one multi get request, and adds either the document or the duplicate to the bulk.
+     * It should be called with the duplicateCandidates lock held.
+     */
+    private void confirmDuplicateCandidates() throws IOException {
+        if (duplicateCandidates.isEmpty()) {
+            return;
+        }
+        MultiGetRequest multiGetRequest = new MultiGetRequest();
+        for (DuplicateCandidate candidate : duplicateCandidates) {
+            multiGetRequest.add(new MultiGetRequest.Item(indexName, candidate.documentRequest.id())
+                    .fetchSourceContext(FetchSourceContext.DO_NOT_FETCH_SOURCE).storedFields("_none_"));
+        }
+        MultiGetItemResponse[] responses = client.mget(multiGetRequest, RequestOptions.DEFAULT).getResponses();
+        Set<String> indexedIds = new HashSet<>();
+        for (int i = 0; i < responses.length; i++) {
+            DuplicateCandidate candidate = duplicateCandidates.get(i);
+            String docId = candidate.documentRequest.id();
+            if (responses[i].isFailed()) {
+                logger.warn("cannot check if document {} is a duplicate : {}", docId, responses[i].getFailure().getMessage());
+            }
+            boolean exists = !responses[i].isFailed() && responses[i].getResponse().isExists();
+            Path path = candidate.document.getPath();
+            if (exists || bulkIds.contains(docId) || indexedIds.contains(docId)) {
+                addToBulk(prepareDuplicateRequest(candidate.document), path);
+            } else {
+                indexedIds.add(docId);
+                addToBulk(candidate.documentRequest, path);
+                candidate.pageRequests.forEach(pageRequest -> addToBulk(pageRequest, path));
+            }
+            pendingPaths.done(path, true);
+        }
+        duplicateCandidates.clear();
+        duplicateCandidatesSize = 0;
+    }
+
     Map<String, Object> getDocumentMap(TikaDocument document) throws IOException {
         Map<String, Object> jsonDocument = new HashMap<>();
 
@@ -131,17 +483,48 @@ public class ElasticsearchSpewer extends Spewer implements Serializable {
         jsonDocument.put("contentLength", Long.valueOf(ofNullable(document.getMetadata().get(CONTENT_LENGTH)).orElse("-1")));
         jsonDocument.put("contentEncoding", ofNullable(document.getMetadata().get(CONTENT_ENCODING)).orElse(DEFAULT_VALUE_UNKNOWN));
 
-        String content = toString(document.getReader()).trim();
-        if (maxContentLength != -1 && content.length() > maxContentLength) {
-            logger.warn("document id {} extracted text will be truncated to {} bytes", document.getId(), maxContentLength);
-            content = content.substring(0, maxContentLength).trim();
-        }
+        String content = readContent(document);
         jsonDocument.put("contentTextLength", content.length());
         jsonDocument.put("language", languageGuesser.guess(content));
         jsonDocument.put(ES_CONTENT_FIELD, content);
         return jsonDocument;
     }
 
+    /**
+     * reads the trimmed extracted text up to maxContentLength chars. The text after the limit is read
+     * (so that the embedded documents are extracted) but never kept in memory.
+     */
+    private String readContent(TikaDocument document) throws IOException {
+        Reader reader = document.getReader();
+        int limit = maxContentLength == -1 ? Integer.MAX_VALUE : maxContentLength;
+        StringBuilder content = new StringBuilder(min(limit, CONTENT_BUFFER_SIZE));
+        char[] buffer = new char[CONTENT_BUFFER_SIZE];
+        boolean truncated = false;
+        int nbRead;
+        while ((nbRead = reader.read(buffer)) != -1) {
+            int start = 0;
+            if (content.length() == 0) {
+                while (start < nbRead && buffer[start] <= ' ') start++;
+            }
+            int nbToAppend = min(nbRead - start, limit - content.length());
+            content.append(buffer, start, nbToAppend);
+            truncated = truncated || !isBlank(buffer, start + nbToAppend, nbRead);
+        }
+        if (truncated) {
+            logger.warn("document id {} extracted text will be truncated to {} bytes", document.getId(), maxContentLength);
+        }
+        int end = content.length();
+        while (end > 0 && content.charAt(end - 1) <= ' ') end--;
+        return content.substring(0, end);
+    }
+
+    private static boolean isBlank(char[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] > ' ') return false;
+        }
+        return true;
+    }
+
     Map<String, Object> getDuplicateMap(TikaDocument document) {
         Map<String, Object> jsonDocument = new HashMap<>();
 
@@ -157,7 +540,106 @@ public class ElasticsearchSpewer extends Spewer implements Serializable {
         return this;
     }
 
+    /**
+     * the duplicate candidates are checked and added to the bulk on the bulk flush interval, so that
+     * documents are not held back when the candidates are added slowly.
+     */
+    private ScheduledExecutorService createCandidatesFlusher() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "es-duplicate-candidates-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                synchronized (duplicateCandidates) {
+                    confirmDuplicateCandidates();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("cannot flush the duplicate candidates", e);
+            }
+        }, esCfg.bulkFlushIntervalSeconds, esCfg.bulkFlushIntervalSeconds, SECONDS);
+        return executor;
+    }
+
+    private BulkProcessor createBulkProcessor() {
+        return BulkProcessor.builder((request, bulkListener) -> client.bulkAsync(request, RequestOptions.DEFAULT, bulkListener),
+                new BulkProcessor.Listener() {
+                    @Override
+                    public void beforeBulk(long executionId, BulkRequest request) {
+                        request.setRefreshPolicy(esCfg.refreshPolicy);
+                    }
+
+                    @Override
+                    public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+                        request.requests().stream().map(DocWriteRequest::index).distinct().forEach(searchCache::invalidate);
+                        logger.info("bulk #{} with {} document(s) added to elasticsearch in {}ms", executionId,
+                                request.numberOfActions(), response.getTook().millis());
+                        Map<String, String> routings = new HashMap<>();
+                        for (DocWriteRequest<?> itemRequest : request.requests()) {
+                            routings.put(itemRequest.id(), ofNullable(itemRequest.routing()).orElse(itemRequest.id()));
+                            bulkIds.remove(itemRequest.id());
+                        }
+                        List<Message> messages = new ArrayList<>(response.getItems().length);
+                        for (BulkItemResponse itemResponse : response.getItems()) {
+                            if (itemResponse.isFailed()) {
+                                logger.error("bulk #{} failed to index {} : {}", executionId,
+                                        itemResponse.getId(), itemResponse.getFailureMessage());
+                            } else if (!isPageId(itemResponse.getId())) {
+                                messages.add(extractNlpMessage(itemResponse.getId(), routings.get(itemResponse.getId())));
+                            }
+                        }
+                        publisher.publish(NLP, messages);
+                        for (int i = 0; i < response.getItems().length; i++) {
+                            bulkDone(request.requests().get(i), !response.getItems()[i].isFailed());
+                        }
+                    }
+
+                    @Override
+                    public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+                        request.requests().stream().map(DocWriteRequest::index).distinct().forEach(searchCache::invalidate);
+                        request.requests().forEach(itemRequest -> bulkIds.remove(itemRequest.id()));
+                        logger.error("bulk #{} with {} document(s) failed", executionId, request.numberOfActions(), failure);
+                        request.requests().forEach(itemRequest -> bulkDone(itemRequest, false));
+                    }
+                })
+                .setBulkActions(esCfg.bulkActions)
+                .setBulkSize(new ByteSizeValue(esCfg.bulkSize))
+                .setFlushInterval(TimeValue.timeValueSeconds(esCfg.bulkFlushIntervalSeconds))
+                .setConcurrentRequests(esCfg.bulkConcurrentRequests)
+                .setBackoffPolicy(BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(100), 5))
+                .build();
+    }
+
+    private void bulkDone(DocWriteRequest<?> request, boolean indexed) {
+        Path path = bulkPaths.remove(request);
+        if (path != null) {
+            pendingPaths.done(path, indexed);
+        }
+    }
+
+    private static class DuplicateCandidate {
+        final IndexRequest documentRequest;
+        final List<IndexRequest> pageRequests;
+        final TikaDocument document;
+
+        DuplicateCandidate(IndexRequest documentRequest, List<IndexRequest> pageRequests, TikaDocument document) {
+            this.documentRequest = documentRequest;
+            this.pageRequests = pageRequests;
+            this.document = document;
+        }
+    }
+
     int getMaxContentLength(PropertiesProvider propertiesProvider) {
         return (int) Math.min(HumanReadableSize.parse(propertiesProvider.get("maxContentLength").orElse("-1")), Integer.MAX_VALUE);
     }
+
+    private static class IngestProfile {
+        final Settings originalSettings;
+        int spewers = 1;
+
+        IngestProfile(Settings originalSettings) {
+            this.originalSettings = originalSettings;
+        }
+    }
 }
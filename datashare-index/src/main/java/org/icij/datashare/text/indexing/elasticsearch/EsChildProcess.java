@@ -0,0 +1,80 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.common.settings.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.ProcessBuilder.Redirect.INHERIT;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Runs the {@link EsEmbeddedServer} in a child JVM with its own heap, so that the search threads,
+ * write queues and caches of elasticsearch don't compete with the extraction and NLP threads of
+ * datashare. The child JVM has the classpath of datashare, its output goes to the datashare output,
+ * and it stops when datashare exits.
+ */
+public class EsChildProcess {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EsChildProcess.class);
+    private final List<String> command;
+    private Process process;
+
+    /**
+     * @param heapSize the heap of the child JVM (for example 2g), or null for the JVM default
+     */
+    public EsChildProcess(String clusterName, String homePath, String dataPath, String httpPort, Settings tuningSettings, String heapSize) {
+        this.command = command(clusterName, homePath, dataPath, httpPort, tuningSettings, heapSize);
+    }
+
+    public synchronized void start() throws IOException {
+        process = new ProcessBuilder(command).redirectOutput(INHERIT).redirectError(INHERIT).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "es-child-process-stop"));
+        LOGGER.info("elasticsearch child process started with {}", command);
+    }
+
+    /**
+     * closes the standard input of the child process so that it stops elasticsearch, and kills it
+     * if it is still running after 30s.
+     */
+    public synchronized void stop() {
+        if (process == null || !process.isAlive()) {
+            return;
+        }
+        try {
+            process.getOutputStream().close();
+            if (!process.waitFor(30, SECONDS)) {
+                LOGGER.warn("elasticsearch child process still running after 30s, killing it");
+                process.destroyForcibly();
+            }
+        } catch (IOException e) {
+            process.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        }
+    }
+
+    static List<String> command(String clusterName, String homePath, String dataPath, String httpPort, Settings tuningSettings, String heapSize) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (heapSize != null) {
+            command.add("-Xms" + heapSize);
+            command.add("-Xmx" + heapSize);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(EsEmbeddedServer.class.getName());
+        command.add(clusterName);
+        command.add(homePath);
+        command.add(dataPath);
+        command.add(httpPort);
+        for (String key : tuningSettings.keySet()) {
+            command.add(key + "=" + tuningSettings.get(key));
+        }
+        return command;
+    }
+}
@@ -10,21 +10,49 @@ import org.elasticsearch.node.Node;
 import org.elasticsearch.painless.PainlessPlugin;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.transport.Netty4Plugin;
+import org.icij.datashare.PropertiesProvider;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.*;
+
 /**
  * inspired by :
  * https://github.com/elastic/elasticsearch-hadoop/blob/fefcf8b191d287aca93a04144c67b803c6c81db5/mr/src/itest/java/org/elasticsearch/hadoop/EsEmbeddedServer.java
+ *
+ * The node shares the JVM of datashare, so its thread pools and memory can be limited with
+ * the tuning settings (see {@link #tuningSettings(PropertiesProvider)}), or it can be run in
+ * its own JVM with {@link EsChildProcess}.
  */
 public class EsEmbeddedServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EsEmbeddedServer.class);
+    static final Map<String, String> TUNING_SETTINGS = new LinkedHashMap<String, String>() {{
+        put(ES_SEARCH_THREADS_PROP, "thread_pool.search.size");
+        put(ES_WRITE_THREADS_PROP, "thread_pool.write.size");
+        put(ES_WRITE_QUEUE_SIZE_PROP, "thread_pool.write.queue_size");
+        put(ES_INDEXING_BUFFER_PROP, "indices.memory.index_buffer_size");
+        put(ES_FIELD_DATA_CACHE_PROP, "indices.fielddata.cache.size");
+        put(ES_QUERY_CACHE_PROP, "indices.queries.cache.size");
+    }};
     private final Node node;
+    private final long creationMillis;
 
     public EsEmbeddedServer(String clusterName, String homePath, String dataPath, String httpPort) {
+        this(clusterName, homePath, dataPath, httpPort, Settings.EMPTY);
+    }
+
+    /**
+     * @param tuningSettings elasticsearch settings added to the node settings
+     */
+    public EsEmbeddedServer(String clusterName, String homePath, String dataPath, String httpPort, Settings tuningSettings) {
         Settings settings = Settings.builder()
                 .put("transport.type", "netty4")
                 .put("http.type", "netty4")
@@ -32,12 +60,15 @@ public class EsEmbeddedServer {
                 .put("path.home", homePath)
                 .put("path.data", dataPath)
                 .put("http.port", httpPort)
-                .put("cluster.name", clusterName).build();
+                .put("cluster.name", clusterName)
+                .put(tuningSettings).build();
+        long before = currentTimeMillis();
         try {
             node = createNode(settings);
+            creationMillis = currentTimeMillis() - before;
         } catch (IllegalArgumentException iae) {
             if (iae.getMessage() != null && iae.getMessage().contains("Could not load codec")) {
-                LoggerFactory.getLogger(getClass()).error("Your index version on disk ({}) doesn't seem to have the same " +
+                LOGGER.error("Your index version on disk ({}) doesn't seem to have the same " +
                         "version as the embedded Elasticsearch engine ({}). Please migrate it with snapshots, " +
                         "or remove it then restart datashare.", dataPath, Version.CURRENT);
             }
@@ -45,18 +76,53 @@ public class EsEmbeddedServer {
         }
     }
 
+    /**
+     * @return the elasticsearch settings for the elasticsearch* tuning properties that are set
+     * (thread pools, indexing buffer, field data and query caches)
+     */
+    public static Settings tuningSettings(PropertiesProvider propertiesProvider) {
+        Settings.Builder builder = Settings.builder();
+        TUNING_SETTINGS.forEach((property, setting) -> propertiesProvider.get(property).ifPresent(value -> builder.put(setting, value)));
+        return builder.build();
+    }
+
     public void start() {
+        long before = currentTimeMillis();
         try {
             node.start();
         } catch (Exception e) {
             throw new RuntimeException("Encountered exception during embedded node startup", e);
         }
+        long startMillis = currentTimeMillis() - before;
+        LOGGER.info("embedded elasticsearch started in {}ms (node created in {}ms, started in {}ms)",
+                creationMillis + startMillis, creationMillis, startMillis);
     }
 
     public void stop() throws IOException {
         node.close();
     }
 
+    /**
+     * runs the server in its own JVM (see {@link EsChildProcess}). The arguments are the cluster name,
+     * home path, data path, http port and the tuning settings as key=value. The server is stopped
+     * when its standard input is closed, so it doesn't outlive datashare.
+     */
+    public static void main(String[] args) throws IOException {
+        Settings.Builder tuningSettings = Settings.builder();
+        for (int i = 4; i < args.length; i++) {
+            String[] setting = args[i].split("=", 2);
+            tuningSettings.put(setting[0], setting[1]);
+        }
+        EsEmbeddedServer server = new EsEmbeddedServer(args[0], args[1], args[2], args[3], tuningSettings.build());
+        server.start();
+        while (System.in.read() != -1) {
+            // waiting for datashare to exit
+        }
+        LOGGER.info("standard input closed, stopping elasticsearch");
+        server.stop();
+        System.exit(0);
+    }
+
     PluginConfigurableNode createNode(Settings settings) {
         return new PluginConfigurableNode(settings, asList(
                 Netty4Plugin.class,
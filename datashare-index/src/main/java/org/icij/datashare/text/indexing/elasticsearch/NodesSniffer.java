@@ -0,0 +1,134 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Optional.ofNullable;
+
+/**
+ * Periodically replaces the nodes of a rest client with the http nodes of the cluster (with their roles,
+ * so that the client node selector can skip the dedicated masters), and sniffs again when a node fails.
+ * The sniffs on failure are debounced: the failures of several requests lead to one sniff, at most
+ * every {@link #FAILURE_SNIFF_DELAY_MILLIS}.
+ *
+ * Dead nodes are retried by the rest client itself with an increasing backoff.
+ */
+class NodesSniffer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NodesSniffer.class);
+    static final long FAILURE_SNIFF_DELAY_MILLIS = 10_000;
+    private final String scheme;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "es-nodes-sniffer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean failureSniffScheduled = new AtomicBoolean(false);
+    private volatile long lastSniffMillis = 0;
+    private RestClient restClient;
+
+    NodesSniffer(String scheme, long intervalSeconds) {
+        this.scheme = scheme;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * the sniffer is created before the client so that it can be its failure listener
+     */
+    void start(RestClient restClient) {
+        this.restClient = restClient;
+        executor.scheduleWithFixedDelay(this::sniffSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    RestClient.FailureListener failureListener() {
+        return new RestClient.FailureListener() {
+            @Override
+            public void onFailure(Node node) {
+                if (restClient != null && !executor.isShutdown() && failureSniffScheduled.compareAndSet(false, true)) {
+                    long delay = Math.max(0, lastSniffMillis + FAILURE_SNIFF_DELAY_MILLIS - System.currentTimeMillis());
+                    logger.warn("elasticsearch node {} failed, sniffing cluster nodes in {}ms", node.getHost(), delay);
+                    executor.schedule(() -> {
+                        failureSniffScheduled.set(false);
+                        sniffSafely();
+                    }, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+        };
+    }
+
+    List<Node> sniff() throws IOException {
+        Request request = new Request("GET", "/_nodes/http");
+        request.addParameter("filter_path", "nodes.*.http.publish_address,nodes.*.name,nodes.*.version,nodes.*.roles");
+        lastSniffMillis = System.currentTimeMillis();
+        Response response = restClient.performRequest(request);
+        List<Node> nodes = parseNodes(response.getEntity().getContent(), scheme);
+        if (!nodes.isEmpty()) {
+            restClient.setNodes(nodes);
+        }
+        return nodes;
+    }
+
+    private void sniffSafely() {
+        if (!restClient.isRunning()) {
+            close();
+            return;
+        }
+        try {
+            logger.debug("sniffed elasticsearch nodes {}", sniff());
+        } catch (IOException | RuntimeException e) {
+            logger.error("cannot sniff elasticsearch nodes", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Node> parseNodes(InputStream json, String scheme) {
+        Map<String, Object> response = XContentHelper.convertToMap(JsonXContent.jsonXContent, json, false);
+        Map<String, Object> nodes = (Map<String, Object>) ofNullable(response.get("nodes")).orElse(emptyMap());
+        List<Node> result = new ArrayList<>(nodes.size());
+        for (Object value : nodes.values()) {
+            Map<String, Object> node = (Map<String, Object>) value;
+            Map<String, Object> http = (Map<String, Object>) node.get("http");
+            if (http != null && http.get("publish_address") != null) {
+                List<String> roles = (List<String>) node.get("roles");
+                result.add(new Node(parsePublishAddress((String) http.get("publish_address"), scheme), null,
+                        (String) node.get("name"), (String) node.get("version"),
+                        roles == null ? null : new Node.Roles(new TreeSet<>(roles)), null));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * publish address is either ip:port or hostname/ip:port
+     */
+    static HttpHost parsePublishAddress(String publishAddress, String scheme) {
+        int slash = publishAddress.indexOf('/');
+        int colon = publishAddress.lastIndexOf(':');
+        String host = slash > 0 ? publishAddress.substring(0, slash) : publishAddress.substring(slash + 1, colon);
+        return new HttpHost(host, Integer.parseInt(publishAddress.substring(colon + 1)), scheme);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
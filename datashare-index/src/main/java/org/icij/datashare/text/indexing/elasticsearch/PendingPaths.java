@@ -0,0 +1,85 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Counts the requests of each extracted file that are waiting in the bulk processor, to tell when
+ * all the documents of a file have been indexed.
+ */
+class PendingPaths {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Map<Path, Pending> pending = new HashMap<>();
+
+    synchronized void add(Path path) {
+        pending.computeIfAbsent(path, p -> new Pending()).requests++;
+    }
+
+    /**
+     * @param indexed false if the request has not been indexed
+     */
+    void done(Path path, boolean indexed) {
+        Runnable callback;
+        synchronized (this) {
+            Pending paths = pending.get(path);
+            if (paths == null) {
+                return;
+            }
+            paths.requests--;
+            paths.failed |= !indexed;
+            callback = resolve(path, paths);
+        }
+        callback.run();
+    }
+
+    /**
+     * @param callback run when all the requests of the path are done, or now if there is no request
+     * pending. It is given false if one of the requests has failed.
+     */
+    void whenIndexed(Path path, Consumer<Boolean> callback) {
+        Runnable toRun;
+        synchronized (this) {
+            Pending paths = pending.get(path);
+            if (paths == null) {
+                toRun = () -> callback.accept(true);
+            } else {
+                paths.callback = callback;
+                toRun = resolve(path, paths);
+            }
+        }
+        toRun.run();
+    }
+
+    synchronized int size() { return pending.size();}
+
+    /**
+     * a path without callback is removed once its requests are indexed (its extraction may not be finished,
+     * but the next requests will add it again), except if one has failed
+     */
+    private Runnable resolve(Path path, Pending paths) {
+        if (paths.requests > 0 || (paths.callback == null && paths.failed)) {
+            return () -> {};
+        }
+        pending.remove(path);
+        if (paths.callback == null) {
+            return () -> {};
+        }
+        if (paths.failed) {
+            logger.warn("{} has not been fully indexed", path);
+        }
+        Consumer<Boolean> callback = paths.callback;
+        boolean indexed = !paths.failed;
+        return () -> callback.accept(indexed);
+    }
+
+    private static class Pending {
+        int requests = 0;
+        boolean failed = false;
+        Consumer<Boolean> callback;
+    }
+}
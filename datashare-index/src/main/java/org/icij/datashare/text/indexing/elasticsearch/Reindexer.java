@@ -0,0 +1,154 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.inject.Inject;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.reindex.AbstractBulkByScrollRequest;
+import org.elasticsearch.index.reindex.ReindexRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.function.DoubleConsumer;
+
+import static java.lang.System.currentTimeMillis;
+import static org.icij.datashare.json.JsonObjectMapper.MAPPER;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.INGEST_SETTINGS;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.REFRESH_INTERVAL_SETTING;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.REPLICAS_SETTING;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.SHARDS_SETTING;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.TRANSLOG_DURABILITY_SETTING;
+
+/**
+ * Copies an index into a new version of it, created with the current settings and mapping
+ * (datashare_index_settings.json and datashare_index_mappings.json), then atomically switches
+ * the index alias to the new version and drops the previous one. Documents are copied by
+ * elasticsearch with a sliced _reindex, so a mapping change doesn't need a new extraction.
+ *
+ * Writes to the previous index are blocked during the copy, so that documents indexed meanwhile
+ * fail instead of being lost. An index created before aliases (the concrete index has the index
+ * name) is replaced by an alias to its first version.
+ */
+public class Reindexer {
+    static final String WRITE_BLOCK_SETTING = "index.blocks.write";
+    private static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final RestHighLevelClient client;
+    private final SearchCache searchCache;
+    private final long pollIntervalMillis;
+
+    @Inject
+    public Reindexer(RestHighLevelClient client, SearchCache searchCache) {
+        this(client, searchCache, DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    Reindexer(RestHighLevelClient client, SearchCache searchCache, long pollIntervalMillis) {
+        this.client = client;
+        this.searchCache = searchCache;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * @param slices number of slices copied in parallel, 0 for one slice per shard
+     * @param progress called with the rate of documents copied
+     * @return the name of the new version of the index
+     * @throws IllegalArgumentException if the index doesn't exist
+     */
+    public String reindex(String indexName, int slices, DoubleConsumer progress) throws IOException {
+        String previousIndex = ElasticsearchConfiguration.concreteIndex(client, indexName)
+                .orElseThrow(() -> new IllegalArgumentException("index " + indexName + " does not exist"));
+        Settings previousSettings = ElasticsearchConfiguration.indexSettings(client, previousIndex, SHARDS_SETTING, REPLICAS_SETTING);
+        String index = ElasticsearchConfiguration.createVersionedIndex(client, indexName,
+                ElasticsearchConfiguration.indexVersion(indexName, previousIndex) + 1,
+                Settings.builder().put(SHARDS_SETTING, previousSettings.get(SHARDS_SETTING)).put(INGEST_SETTINGS).build(), false);
+        logger.info("reindexing {} into {}", previousIndex, index);
+        long before = currentTimeMillis();
+        setWriteBlock(previousIndex, true);
+        try {
+            copy(previousIndex, index, slices, progress);
+            client.indices().putSettings(new UpdateSettingsRequest(index).settings(Settings.builder()
+                    .put(REPLICAS_SETTING, previousSettings.get(REPLICAS_SETTING))
+                    .putNull(REFRESH_INTERVAL_SETTING)
+                    .putNull(TRANSLOG_DURABILITY_SETTING)), RequestOptions.DEFAULT);
+            client.indices().refresh(new RefreshRequest(index), RequestOptions.DEFAULT);
+            ElasticsearchConfiguration.switchAlias(client, indexName, previousIndex, index);
+        } catch (IOException | RuntimeException e) {
+            logger.error("reindexing {} into {} failed, removing {}", previousIndex, index, index);
+            rollback(previousIndex, index);
+            throw e;
+        }
+        searchCache.invalidate(indexName);
+        progress.accept(1);
+        logger.info("{} reindexed into {} in {}ms", previousIndex, index, currentTimeMillis() - before);
+        return index;
+    }
+
+    private void copy(String source, String destination, int slices, DoubleConsumer progress) throws IOException {
+        ReindexRequest request = new ReindexRequest()
+                .setSourceIndices(source)
+                .setDestIndex(destination)
+                .setSlices(slices > 0 ? slices : AbstractBulkByScrollRequest.AUTO_SLICES);
+        String taskId = client.submitReindexTask(request, RequestOptions.DEFAULT).getTask();
+        JsonNode task;
+        do {
+            try {
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel(taskId);
+                throw new InterruptedIOException("reindex of " + source + " has been interrupted");
+            }
+            task = MAPPER.readTree(EntityUtils.toString(client.getLowLevelClient()
+                    .performRequest(new Request("GET", "/_tasks/" + taskId)).getEntity()));
+            JsonNode status = task.path("task").path("status");
+            long total = status.path("total").asLong();
+            if (total > 0) {
+                long copied = status.path("created").asLong() + status.path("updated").asLong();
+                progress.accept((double) copied / total);
+            }
+        } while (!task.path("completed").asBoolean());
+
+        if (task.has("error")) {
+            throw new IOException("reindex of " + source + " failed: " + task.get("error").path("reason").asText());
+        }
+        JsonNode failures = task.path("response").path("failures");
+        if (failures.size() > 0) {
+            throw new IOException("reindex of " + source + " failed with " + failures.size() + " failure(s), first is " + failures.get(0));
+        }
+    }
+
+    private void cancel(String taskId) {
+        try {
+            client.getLowLevelClient().performRequest(new Request("POST", "/_tasks/" + taskId + "/_cancel"));
+        } catch (IOException e) {
+            logger.error("cannot cancel reindex task " + taskId, e);
+        }
+    }
+
+    private void rollback(String previousIndex, String index) {
+        try {
+            setWriteBlock(previousIndex, false);
+        } catch (IOException | ElasticsearchException e) {
+            logger.error("cannot remove write block of " + previousIndex, e);
+        }
+        try {
+            client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        } catch (IOException | ElasticsearchException e) {
+            logger.error("cannot delete " + index, e);
+        }
+    }
+
+    private void setWriteBlock(String index, boolean block) throws IOException {
+        client.indices().putSettings(new UpdateSettingsRequest(index).settings(
+                block ? Settings.builder().put(WRITE_BLOCK_SETTING, true) : Settings.builder().putNull(WRITE_BLOCK_SETTING)), RequestOptions.DEFAULT);
+    }
+}
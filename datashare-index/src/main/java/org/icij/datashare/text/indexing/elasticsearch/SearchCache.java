@@ -0,0 +1,321 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.icij.datashare.HumanReadableSize;
+import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.time.DatashareTime;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.SEARCH_CACHE_SIZE_PROP;
+import static org.icij.datashare.text.indexing.elasticsearch.ElasticsearchConfiguration.SEARCH_COALESCING_PROP;
+
+/**
+ * Cache of the search responses of elasticsearch, for the requests that the web client sends
+ * again and again (facets, aggregations, counts). Responses are kept in a LRU map bounded by
+ * the searchCacheSize property (0 disables the cache).
+ *
+ * Each index has a generation that is incremented by the indexer and the spewer when they
+ * write to it (see {@link #invalidate(String)}): they must share the cache instance, which is
+ * a singleton of the injector. A cached response is only served if the
+ * generations of its indices haven't changed since the request was sent. As writes are only
+ * seen by searches after a refresh, responses are not cached right after a write.
+ *
+ * Writes made by other processes are not seen: the cache should only be enabled if the index
+ * is written by this datashare instance.
+ *
+ * With searchCoalescing, identical requests sent while the same request is running wait for
+ * its response instead of being sent to elasticsearch (with or without cache).
+ */
+@Singleton
+public class SearchCache {
+    static final long REFRESH_DELAY_MILLIS = 1000;
+    private static final ObjectMapper normalizer = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final Map<String, IndexWrites> indexWrites = new ConcurrentHashMap<>();
+    private final long maxSize;
+    private final boolean coalescing;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Response>> flights = new ConcurrentHashMap<>();
+    private long size = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    @Inject
+    public SearchCache(PropertiesProvider propertiesProvider) {
+        this(HumanReadableSize.parse(propertiesProvider.get(SEARCH_CACHE_SIZE_PROP).orElse("0")),
+                propertiesProvider.get(SEARCH_COALESCING_PROP).map(Boolean::parseBoolean).orElse(false));
+    }
+
+    SearchCache(long maxSize) {
+        this(maxSize, false);
+    }
+
+    SearchCache(long maxSize, boolean coalescing) {
+        this.maxSize = maxSize;
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * @return true if the responses are cached or the identical requests are coalesced
+     */
+    public boolean isEnabled() {
+        return maxSize > 0 || coalescing;
+    }
+
+    /**
+     * increments the generation of the index: the cached responses for this index become stale.
+     */
+    public void invalidate(String indexName) {
+        indexWrites.computeIfAbsent(indexName, i -> new IndexWrites()).write();
+    }
+
+    /**
+     * @param url the path of the request with its parameters
+     * @param body the json body of the request, it is normalized so that the order of the fields and the spaces don't matter
+     * @param indices the indices that are searched
+     * @param grantedIndices the indices granted to the user
+     * @return a key with the current generations of the indices
+     * @throws IllegalArgumentException if the body is not json
+     */
+    public Key key(String url, String body, List<String> indices, Collection<String> grantedIndices) {
+        String normalizedBody;
+        try {
+            normalizedBody = body == null || body.isEmpty() ? "" : normalizer.writeValueAsString(normalizer.readValue(body, Object.class));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot normalize request body", e);
+        }
+        List<String> sortedGrantedIndices = new ArrayList<>(grantedIndices);
+        sortedGrantedIndices.sort(String::compareTo);
+        long[] generations = indices.stream().mapToLong(this::generation).toArray();
+        return new Key(url + "\n" + normalizedBody + "\n" + sortedGrantedIndices, indices, generations);
+    }
+
+    /**
+     * @return the cached response if there is one, else the response of the same request if it
+     * is running (with coalescing), else the response returned by the loader.
+     */
+    public Response load(Key key, Loader loader) throws IOException {
+        Response cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (!coalescing) {
+            Response response = loader.load();
+            put(key, response.contentType, response.body);
+            return response;
+        }
+        CompletableFuture<Response> flight = new CompletableFuture<>();
+        CompletableFuture<Response> runningFlight = flights.putIfAbsent(key.flightId(), flight);
+        if (runningFlight != null) {
+            coalesced.incrementAndGet();
+            return await(runningFlight);
+        }
+        try {
+            Response response = loader.load();
+            put(key, response.contentType, response.body);
+            flight.complete(response);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key.flightId(), flight);
+        }
+    }
+
+    /**
+     * @return the cached response if its indices haven't been written since it has been cached, else null
+     */
+    public Response get(Key key) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.key.isCurrent()) {
+                hits.incrementAndGet();
+                return entry.response;
+            }
+            if (entry != null) {
+                remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * caches the response of the request sent with the key. It is not cached if the indices have been
+     * written since the key was created, or in the last refresh interval, or if it is bigger than 1/8 of the cache.
+     */
+    public void put(Key key, String contentType, byte[] body) {
+        if (maxSize <= 0 || body.length > maxSize / 8 || !key.isCurrent() || key.indices.stream().anyMatch(this::recentlyWritten)) {
+            return;
+        }
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, new Entry(key, new Response(contentType, body)));
+            size += body.length;
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (size > maxSize && eldest.hasNext()) {
+                size -= eldest.next().getValue().response.body.length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.get(), misses.get(), evictions.get(), coalesced.get(), entries.size(), size, maxSize);
+        }
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.response.body.length;
+        }
+    }
+
+    private static Response await(CompletableFuture<Response> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a coalesced request");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private long generation(String indexName) {
+        IndexWrites writes = indexWrites.get(indexName);
+        return writes == null ? 0 : writes.generation;
+    }
+
+    private boolean recentlyWritten(String indexName) {
+        IndexWrites writes = indexWrites.get(indexName);
+        return writes != null && DatashareTime.getInstance().currentTimeMillis() - writes.lastWrite < REFRESH_DELAY_MILLIS;
+    }
+
+    private static class IndexWrites {
+        private volatile long generation = 0;
+        private volatile long lastWrite = 0;
+
+        synchronized void write() {
+            lastWrite = DatashareTime.getInstance().currentTimeMillis();
+            generation++;
+        }
+    }
+
+    public class Key {
+        private final String key;
+        private final List<String> indices;
+        private final long[] generations;
+
+        private Key(String key, List<String> indices, long[] generations) {
+            this.key = key;
+            this.indices = indices;
+            this.generations = generations;
+        }
+
+        /**
+         * @return the key with the generations: requests sent after a write don't wait for the ones sent before
+         */
+        String flightId() {
+            return key + "\n" + Arrays.toString(generations);
+        }
+
+        boolean isCurrent() {
+            for (int i = 0; i < indices.size(); i++) {
+                if (generation(indices.get(i)) != generations[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return key.equals(((Key) o).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Response load() throws IOException;
+    }
+
+    public static class Response {
+        public final String contentType;
+        public final byte[] body;
+
+        public Response(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    private static class Entry {
+        final Key key;
+        final Response response;
+
+        Entry(Key key, Response response) {
+            this.key = key;
+            this.response = response;
+        }
+    }
+
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long coalesced;
+        public final int entries;
+        public final long size;
+        public final long max_size;
+
+        Stats(long hits, long misses, long evictions, long coalesced, int entries, long size, long maxSize) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.coalesced = coalesced;
+            this.entries = entries;
+            this.size = size;
+            this.max_size = maxSize;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.icij.datashare.Entity;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.icij.datashare.json.JsonObjectMapper.MAPPER;
+
+/**
+ * Binds the _source of elasticsearch documents to entities.
+ *
+ * The source is streamed from its bytes into a jackson token buffer and then into the entity,
+ * instead of being parsed into a map that is copied, written as a json string and read again.
+ * Source filtering (withSource/withoutSource) is done by elasticsearch, so the fields left
+ * out are not in the bytes at all.
+ */
+class SourceBinder {
+    private static final String ENTITY_PACKAGE = "org.icij.datashare.text.";
+    private static final Map<String, Optional<Class<? extends Entity>>> entityClasses = new ConcurrentHashMap<>();
+
+    /**
+     * @param fields added to the source, replacing the source fields with the same names (id, projectId...)
+     */
+    static <T extends Entity> T bind(BytesReference source, Class<T> entityClass, Map<String, String> fields) {
+        return read(copy(source, fields, null).buffer, entityClass);
+    }
+
+    /**
+     * @return the entity whose class is given by the type field of the source, or empty if there is no such entity
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Entity> Optional<T> bind(BytesReference source, String typeField, Map<String, String> fields) {
+        Copy copy = copy(source, fields, typeField);
+        return Optional.ofNullable(copy.type).flatMap(SourceBinder::entityClass).map(c -> (T) read(copy.buffer, c));
+    }
+
+    static Optional<Class<? extends Entity>> entityClass(String type) {
+        return entityClasses.computeIfAbsent(type, t -> {
+            try {
+                return Optional.of(Class.forName(ENTITY_PACKAGE + t).asSubclass(Entity.class));
+            } catch (ClassNotFoundException | ClassCastException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    private static <T extends Entity> T read(TokenBuffer buffer, Class<T> entityClass) {
+        try (JsonParser parser = buffer.asParser()) {
+            return MAPPER.readValue(parser, entityClass);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot deserialize source to " + entityClass.getSimpleName(), e);
+        }
+    }
+
+    private static Copy copy(BytesReference source, Map<String, String> fields, String typeField) {
+        Copy copy = new Copy();
+        try {
+            copy.buffer.writeStartObject();
+            if (source != null && source.length() > 0) {
+                BytesRef bytes = source.toBytesRef();
+                try (JsonParser parser = MAPPER.getFactory().createParser(bytes.bytes, bytes.offset, bytes.length)) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        throw new IllegalArgumentException("source is not a json object");
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.getCurrentName();
+                        if (fields.containsKey(name)) {
+                            parser.nextToken();
+                            parser.skipChildren();
+                            continue;
+                        }
+                        if (name.equals(typeField)) {
+                            copy.type = parser.nextToken() == JsonToken.VALUE_STRING ? parser.getText() : null;
+                            copy.buffer.writeFieldName(name);
+                        }
+                        copy.buffer.copyCurrentStructure(parser);
+                    }
+                }
+            }
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                copy.buffer.writeStringField(field.getKey(), field.getValue());
+            }
+            copy.buffer.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read source", e);
+        }
+        return copy;
+    }
+
+    private static class Copy {
+        final TokenBuffer buffer = new TokenBuffer(MAPPER, false);
+        String type;
+    }
+}
@@ -0,0 +1,185 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.admin.cluster.storedscripts.PutStoredScriptRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Arrays.stream;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+/**
+ * Painless scripts of the indexer stored in the cluster, so that they are compiled once and
+ * referenced by id in the requests instead of sending their source each time.
+ *
+ * Scripts are registered the first time they are used (or when an index is created). Their id
+ * contains a hash of their source, so a new version of a script doesn't reuse an old compiled one.
+ * If a script cannot be stored, it is sent inline, and storing it is retried after a backoff
+ * (doubled on each failure, from {@link #MIN_RETRY_DELAY_MILLIS} to {@link #MAX_RETRY_DELAY_MILLIS}).
+ * If a stored script is no longer found by the cluster (data directory reset, another cluster
+ * behind the same address, script deleted), the requests executed with {@link #execute} store it again.
+ */
+class StoredScripts {
+    private static final Logger logger = LoggerFactory.getLogger(StoredScripts.class);
+    static final long MIN_RETRY_DELAY_MILLIS = 1000;
+    static final long MAX_RETRY_DELAY_MILLIS = 5 * 60 * 1000;
+
+    enum Name {
+        TAG("tag.painless.java"),
+        UNTAG("untag.painless.java"),
+        NER_TAG("nerTag.painless.java"),
+        EXTRACTED_TEXT("extractedText.painless.java"),
+        SEARCH_OCCURRENCES("searchOccurrences.painless.java");
+
+        final String filename;
+
+        Name(String filename) { this.filename = filename;}
+
+        String source() {
+            try {
+                return ElasticsearchIndexer.getScriptStringFromFile(filename);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        String id() {
+            return "datashare-" + name().toLowerCase().replace('_', '-') + "-" + Integer.toHexString(source().hashCode());
+        }
+    }
+
+    private final RestHighLevelClient client;
+    private final long minRetryDelayMillis;
+    private final Map<Name, Attempt> attempts = new ConcurrentHashMap<>();
+
+    StoredScripts(RestHighLevelClient client) {
+        this(client, MIN_RETRY_DELAY_MILLIS);
+    }
+
+    StoredScripts(RestHighLevelClient client, long minRetryDelayMillis) {
+        this.client = client;
+        this.minRetryDelayMillis = minRetryDelayMillis;
+    }
+
+    Script script(Name name, Map<String, Object> params) {
+        if (isStored(name, false)) {
+            return new Script(ScriptType.STORED, null, name.id(), params);
+        }
+        return new Script(ScriptType.INLINE, "painless", name.source(), params);
+    }
+
+    /**
+     * executes a request with the script. If the script is stored but the cluster doesn't find it,
+     * it is stored again (or sent inline if it cannot be) and the request is executed again.
+     */
+    <T> T execute(Name name, Map<String, Object> params, ScriptRequest<T> request) throws IOException {
+        Script script = script(name, params);
+        try {
+            return request.execute(script);
+        } catch (ElasticsearchException e) {
+            if (script.getType() != ScriptType.STORED || !isNotFound(name, e)) {
+                throw e;
+            }
+            logger.warn("stored script {} not found, storing it again", name.id());
+            attempts.remove(name);
+            return request.execute(script(name, params));
+        }
+    }
+
+    /**
+     * @return true if the error is the script not found by the cluster
+     */
+    static boolean isNotFound(Name name, String errorMessage) {
+        return errorMessage != null && errorMessage.contains("resource_not_found_exception") && errorMessage.contains(name.id());
+    }
+
+    private static boolean isNotFound(Name name, Throwable error) {
+        // the reason can be in the causes, or in the body of the response exception for search requests
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (isNotFound(name, cause.toString()) || stream(cause.getSuppressed()).anyMatch(suppressed -> isNotFound(name, suppressed.toString()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * stores all the scripts
+     * @return true if they have all been stored
+     */
+    boolean storeAll() {
+        boolean allStored = true;
+        for (Name name : Name.values()) {
+            allStored &= isStored(name, true);
+        }
+        return allStored;
+    }
+
+    /**
+     * @param force if true, the script is stored again even if it has already been stored or is waiting for a retry
+     */
+    private boolean isStored(Name name, boolean force) {
+        Attempt attempt = attempts.get(name);
+        if (attempt != null && !force && (attempt.stored || System.currentTimeMillis() < attempt.nextAttemptMillis)) {
+            return attempt.stored;
+        }
+        // the script is stored outside of compute, that only publishes the result,
+        // so that other threads are not blocked during the request
+        boolean stored = store(name);
+        long delay = attempt == null || attempt.stored ? minRetryDelayMillis : Math.min(attempt.delayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+        return attempts.compute(name, (n, current) -> {
+            if (stored) {
+                return Attempt.STORED;
+            }
+            // another thread may have stored the script or recorded the failure meanwhile
+            return current != null && current != attempt ? current : new Attempt(delay);
+        }).stored;
+    }
+
+    boolean store(Name name) {
+        try {
+            BytesReference content = BytesReference.bytes(jsonBuilder().startObject().startObject("script")
+                    .field("lang", "painless")
+                    .field("source", name.source())
+                    .endObject().endObject());
+            client.putScript(new PutStoredScriptRequest().id(name.id()).content(content, XContentType.JSON), RequestOptions.DEFAULT);
+            logger.info("stored script {}", name.id());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("cannot store script {}, it will be sent inline", name.id(), e);
+            return false;
+        }
+    }
+
+    interface ScriptRequest<T> {
+        T execute(Script script) throws IOException;
+    }
+
+    private static class Attempt {
+        static final Attempt STORED = new Attempt(true, 0);
+        final boolean stored;
+        final long delayMillis;
+        final long nextAttemptMillis;
+
+        Attempt(long delayMillis) {
+            this(false, delayMillis);
+        }
+
+        private Attempt(boolean stored, long delayMillis) {
+            this.stored = stored;
+            this.delayMillis = delayMillis;
+            this.nextAttemptMillis = System.currentTimeMillis() + delayMillis;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.icij.datashare.com;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.synchronizedList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class BufferedPublisherTest {
+    private final Publisher publisher = Mockito.mock(Publisher.class);
+
+    @Test
+    public void test_publish_without_contention_is_synchronous() {
+        Message message = message("doc");
+
+        new BufferedPublisher(publisher).publish(Channel.NLP, message);
+
+        verify(publisher).publish(Channel.NLP, message);
+    }
+
+    @Test
+    public void test_publish_list_to_batch_publisher() {
+        BatchPublisher batchPublisher = Mockito.mock(BatchPublisher.class);
+        List<Message> messages = asList(message("doc1"), message("doc2"), message("doc3"));
+
+        new BufferedPublisher(batchPublisher, 2).publish(Channel.NLP, messages);
+
+        verify(batchPublisher).publish(Channel.NLP, messages.subList(0, 2));
+        verify(batchPublisher).publish(Channel.NLP, message("doc3"));
+        verifyNoMoreInteractions(batchPublisher);
+    }
+
+    @Test
+    public void test_publish_list_to_simple_publisher() {
+        new BufferedPublisher(publisher).publish(Channel.NLP, asList(message("doc1"), message("doc2")));
+
+        verify(publisher).publish(Channel.NLP, message("doc1"));
+        verify(publisher).publish(Channel.NLP, message("doc2"));
+    }
+
+    @Test
+    public void test_messages_published_during_a_flush_are_sent() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch published = new CountDownLatch(1);
+        List<Message> received = synchronizedList(new ArrayList<>());
+        BufferedPublisher bufferedPublisher = new BufferedPublisher((channel, message) -> {
+            if (received.isEmpty()) {
+                flushing.countDown();
+                try { published.await(2, SECONDS); } catch (InterruptedException e) { throw new RuntimeException(e);}
+            }
+            received.add(message);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        executor.submit(() -> bufferedPublisher.publish(Channel.NLP, message("doc1")));
+        flushing.await(2, SECONDS);
+        bufferedPublisher.publish(Channel.NLP, message("doc2"));
+        published.countDown();
+        executor.shutdown();
+        executor.awaitTermination(2, SECONDS);
+
+        assertThat(received).containsExactly(message("doc1"), message("doc2"));
+    }
+
+    private Message message(String docId) {
+        return new Message(Message.Type.EXTRACT_NLP, new Date(0)).add(Message.Field.DOC_ID, docId);
+    }
+}
@@ -0,0 +1,116 @@
+package org.icij.datashare.text.indexing;
+
+import org.icij.datashare.Entity;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.icij.datashare.text.DocumentBuilder.createDoc;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PrefetchingScrollTest {
+    private final Indexer.Searcher searcher = mock(Indexer.Searcher.class);
+
+    @Test
+    public void test_next_page() throws IOException {
+        when(searcher.scroll()).thenAnswer(a -> Stream.of(createDoc("doc1").build(), createDoc("doc2").build()))
+                .thenAnswer(a -> Stream.of(createDoc("doc3").build()))
+                .thenAnswer(a -> Stream.empty());
+
+        try (PrefetchingScroll scroll = new PrefetchingScroll(searcher)) {
+            assertThat(ids(scroll.nextPage())).containsExactly("doc1", "doc2");
+            assertThat(ids(scroll.nextPage())).containsExactly("doc3");
+            assertThat(scroll.nextPage()).isEmpty();
+            assertThat(scroll.nextPage()).isEmpty();
+        }
+        verify(searcher, times(3)).scroll();
+        verify(searcher).clearScroll();
+    }
+
+    @Test
+    public void test_stream_all_hits() throws IOException {
+        when(searcher.scroll()).thenAnswer(a -> Stream.of(createDoc("doc1").build(), createDoc("doc2").build()))
+                .thenAnswer(a -> Stream.of(createDoc("doc3").build()))
+                .thenAnswer(a -> Stream.empty());
+
+        try (Stream<? extends Entity> hits = new PrefetchingScroll(searcher).stream()) {
+            assertThat(hits.map(Entity::getId).collect(toList())).containsExactly("doc1", "doc2", "doc3");
+        }
+        verify(searcher).clearScroll();
+    }
+
+    @Test
+    public void test_stream_pages_and_total_hits() throws IOException {
+        when(searcher.scroll()).thenAnswer(a -> Stream.of(createDoc("doc1").build(), createDoc("doc2").build()))
+                .thenAnswer(a -> Stream.of(createDoc("doc3").build()))
+                .thenAnswer(a -> Stream.empty());
+        when(searcher.totalHits()).thenReturn(3L);
+
+        try (PrefetchingScroll scroll = new PrefetchingScroll(searcher)) {
+            assertThat(scroll.totalHits()).isEqualTo(3);
+            assertThat(scroll.pages().map(this::ids).collect(toList())).containsExactly(asList("doc1", "doc2"), singletonList("doc3"));
+        }
+        verify(searcher, times(3)).scroll();
+    }
+
+    @Test
+    public void test_sliced_scroll() throws IOException {
+        when(searcher.scroll(1, 3)).thenAnswer(a -> Stream.of(createDoc("doc1").build())).thenAnswer(a -> Stream.empty());
+
+        try (PrefetchingScroll scroll = new PrefetchingScroll(searcher, 1, 3)) {
+            assertThat(ids(scroll.nextPage())).containsExactly("doc1");
+            assertThat(scroll.nextPage()).isEmpty();
+        }
+    }
+
+    @Test
+    public void test_prefetch_is_bounded() throws Exception {
+        CountDownLatch scrolls = new CountDownLatch(3);
+        when(searcher.scroll()).thenAnswer(a -> {
+            scrolls.countDown();
+            return Stream.of(createDoc("doc").build());
+        });
+
+        try (PrefetchingScroll scroll = new PrefetchingScroll(searcher, 0, 0, 1)) {
+            assertThat(scroll.nextPage()).hasSize(1);
+            assertThat(scrolls.await(5, SECONDS)).isTrue();
+            Thread.sleep(100);
+        }
+        // one page read, one page in the buffer and one page waiting to be put in the buffer
+        verify(searcher, atMost(3)).scroll();
+        verify(searcher).clearScroll();
+    }
+
+    @Test(expected = IOException.class)
+    public void test_scroll_error() throws IOException {
+        when(searcher.scroll()).thenThrow(new IOException("scroll failed"));
+
+        try (PrefetchingScroll scroll = new PrefetchingScroll(searcher)) {
+            scroll.nextPage();
+        }
+    }
+
+    @Test
+    public void test_close_before_reading() throws IOException {
+        new PrefetchingScroll(searcher).close();
+
+        verify(searcher, times(0)).scroll();
+        verify(searcher).clearScroll();
+    }
+
+    private List<String> ids(List<? extends Entity> page) {
+        return page.stream().map(Entity::getId).collect(toList());
+    }
+}
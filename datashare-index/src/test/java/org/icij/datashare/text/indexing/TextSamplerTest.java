@@ -0,0 +1,22 @@
+package org.icij.datashare.text.indexing;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TextSamplerTest {
+    @Test
+    public void test_sample_short_text() {
+        assertThat(TextSampler.slices("short text", 10, 4)).containsExactly("short text");
+    }
+
+    @Test
+    public void test_sample_long_text() {
+        assertThat(TextSampler.slices("aaaabbbbccccdddd", 8, 4)).containsExactly("aa", "bb", "cc", "dd");
+    }
+
+    @Test
+    public void test_sample_long_text_not_divisible_by_slices() {
+        assertThat(TextSampler.slices("aaabbbcccddd", 8, 4)).containsExactly("aa", "bb", "cc", "dd");
+    }
+}
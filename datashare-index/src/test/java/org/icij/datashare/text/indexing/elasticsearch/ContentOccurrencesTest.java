@@ -0,0 +1,34 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ContentOccurrencesTest {
+    @Test
+    public void test_is_single_term() {
+        assertThat(ContentOccurrences.isSingleTerm("cont")).isTrue();
+        assertThat(ContentOccurrences.isSingleTerm("Été2020")).isTrue();
+        assertThat(ContentOccurrences.isSingleTerm("")).isFalse();
+        assertThat(ContentOccurrences.isSingleTerm("john doe")).isFalse();
+        assertThat(ContentOccurrences.isSingleTerm("a*")).isFalse();
+        assertThat(ContentOccurrences.isSingleTerm("中文")).isFalse();
+    }
+
+    @Test
+    public void test_offsets_without_match() {
+        assertThat(ContentOccurrences.offsets("match", 3, "cont")).isEmpty();
+    }
+
+    @Test
+    public void test_offsets_of_a_term() {
+        assertThat(ContentOccurrences.offsets("content", 5, "cont")).isEqualTo(asList(5));
+        assertThat(ContentOccurrences.offsets("reconcontent", 0, "cont")).isEqualTo(asList(5));
+    }
+
+    @Test
+    public void test_offsets_of_several_occurrences_in_a_term() {
+        assertThat(ContentOccurrences.offsets("contcontcon", 2, "cont")).isEqualTo(asList(2, 6));
+    }
+}
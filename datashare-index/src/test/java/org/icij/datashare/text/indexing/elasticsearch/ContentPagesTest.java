@@ -0,0 +1,86 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.icij.datashare.test.ElasticsearchRule;
+import org.icij.datashare.text.indexing.ExtractedText;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDIATE;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.icij.datashare.test.ElasticsearchRule.TEST_INDEX;
+
+public class ContentPagesTest {
+    @ClassRule
+    public static ElasticsearchRule es = new ElasticsearchRule();
+    private static final String CONTENT = "content with john doe";
+
+    @After
+    public void tearDown() throws IOException { es.removeAll();}
+
+    @Test
+    public void test_page_requests() {
+        List<IndexRequest> requests = ContentPages.pageRequests(TEST_INDEX, "type", "id", "root", CONTENT, 10);
+
+        assertThat(requests).hasSize(3);
+        assertThat(requests.get(0).id()).isEqualTo("id-page-0");
+        assertThat(requests.get(2).id()).isEqualTo("id-page-2");
+        assertThat(requests.get(2).routing()).isEqualTo("root");
+        assertThat(requests.get(2).sourceAsMap().get("contentPage")).isInstanceOf(Map.class);
+    }
+
+    @Test
+    public void test_page_requests_for_empty_content_or_disabled_pages() {
+        assertThat(ContentPages.pageRequests(TEST_INDEX, "type", "id", "id", "", 10)).hasSize(1);
+        assertThat(ContentPages.pageRequests(TEST_INDEX, "type", "id", "id", CONTENT, 0)).isEmpty();
+    }
+
+    @Test
+    public void test_is_page_id() {
+        assertThat(ContentPages.isPageId(ContentPages.pageId("id", 3))).isTrue();
+        assertThat(ContentPages.isPageId("id")).isFalse();
+    }
+
+    @Test
+    public void test_read_slices() throws Exception {
+        indexPages("id", 10);
+
+        assertThat(read(0, 10).content).isEqualTo("content wi");
+        assertThat(read(0, 10).maxOffset).isEqualTo(21);
+        assertThat(read(5, 12).content).isEqualTo("nt with john");
+        assertThat(read(20, 1).content).isEqualTo("e");
+        assertThat(read(21, 0).content).isEqualTo("");
+        assertThat(read(0, 21).content).isEqualTo(CONTENT);
+    }
+
+    @Test(expected = StringIndexOutOfBoundsException.class)
+    public void test_read_out_of_range() throws Exception {
+        indexPages("id", 10);
+        read(15, 10);
+    }
+
+    @Test
+    public void test_read_without_pages_or_with_other_page_size() throws Exception {
+        assertThat(read(0, 10)).isNull();
+
+        indexPages("id", 5);
+        assertThat(read(0, 10)).isNull();
+    }
+
+    private ExtractedText read(int offset, int limit) throws IOException {
+        return ContentPages.read(es.client, TEST_INDEX, "id", "id", offset, limit, 10);
+    }
+
+    private void indexPages(String id, int pageSize) throws IOException {
+        BulkRequest bulkRequest = new BulkRequest().setRefreshPolicy(IMMEDIATE);
+        ContentPages.pageRequests(TEST_INDEX, "type", id, id, CONTENT, pageSize).forEach(bulkRequest::add);
+        es.client.bulk(bulkRequest, RequestOptions.DEFAULT);
+    }
+}
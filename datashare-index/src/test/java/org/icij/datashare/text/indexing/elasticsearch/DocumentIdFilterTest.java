@@ -0,0 +1,53 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.icij.datashare.test.ElasticsearchRule;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDIATE;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.icij.datashare.test.ElasticsearchRule.TEST_INDEX;
+
+public class DocumentIdFilterTest {
+    @ClassRule
+    public static ElasticsearchRule es = new ElasticsearchRule();
+
+    @After
+    public void tearDown() throws IOException { es.removeAll();}
+
+    @Test
+    public void test_empty_filter() {
+        DocumentIdFilter filter = DocumentIdFilter.empty();
+
+        assertThat(filter.mightContain("id")).isFalse();
+        filter.put("id");
+        assertThat(filter.mightContain("id")).isTrue();
+    }
+
+    @Test
+    public void test_filter_from_index_contains_document_ids() throws Exception {
+        index("doc1", "Document");
+        index("doc2", "Document");
+        index("ne1", "NamedEntity");
+
+        DocumentIdFilter filter = DocumentIdFilter.fromIndex(es.client, TEST_INDEX, "type");
+
+        assertThat(filter.mightContain("doc1")).isTrue();
+        assertThat(filter.mightContain("doc2")).isTrue();
+        assertThat(filter.mightContain("ne1")).isFalse();
+        assertThat(filter.mightContain("unknown")).isFalse();
+    }
+
+    private void index(String id, String type) throws IOException {
+        es.client.index(new IndexRequest(TEST_INDEX).id(id).source(new HashMap<String, Object>() {{
+            put("type", type);
+            put("join", new HashMap<String, String>() {{ put("name", "Document");}});
+        }}).setRefreshPolicy(IMMEDIATE), RequestOptions.DEFAULT);
+    }
+}
@@ -1,6 +1,9 @@
 package org.icij.datashare.text.indexing.elasticsearch;
 
 import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.admin.cluster.storedscripts.DeleteStoredScriptRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.update.UpdateRequest;
@@ -26,6 +29,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.IntStream;
 
 import static java.lang.String.format;
 import static java.util.Arrays.asList;
@@ -51,7 +55,8 @@ import static org.junit.Assert.assertArrayEquals;
 public class ElasticsearchIndexerTest {
     @ClassRule
     public static ElasticsearchRule es = new ElasticsearchRule(TEST_INDEXES);
-    private final ElasticsearchIndexer indexer = new ElasticsearchIndexer(es.client, new PropertiesProvider()).withRefresh(IMMEDIATE);
+    private final SearchCache searchCache = new SearchCache(new PropertiesProvider());
+    private final ElasticsearchIndexer indexer = new ElasticsearchIndexer(es.client, new PropertiesProvider(), searchCache).withRefresh(IMMEDIATE);
 
     @After
     public void tearDown() throws Exception {
@@ -64,6 +69,36 @@ public class ElasticsearchIndexerTest {
         assertThat(doc).isNull();
     }
 
+    @Test
+    public void test_writes_invalidate_search_cache() throws IOException {
+        Document doc = createDoc("id").build();
+        SearchCache.Key beforeAdd = searchCache.key(TEST_INDEX + "/_search", "{}", singletonList(TEST_INDEX), singletonList(TEST_INDEX));
+        indexer.add(TEST_INDEX, doc);
+        SearchCache.Key beforeTag = searchCache.key(TEST_INDEX + "/_search", "{}", singletonList(TEST_INDEX), singletonList(TEST_INDEX));
+        indexer.tag(project(TEST_INDEX), doc.getId(), doc.getId(), tag("foo"));
+
+        assertThat(beforeAdd.isCurrent()).isFalse();
+        assertThat(beforeTag.isCurrent()).isFalse();
+        assertThat(searchCache.key(TEST_INDEX + "/_search", "{}", singletonList(TEST_INDEX), singletonList(TEST_INDEX)).isCurrent()).isTrue();
+    }
+
+    @Test
+    public void test_project_of_document_read_through_versioned_index_is_the_alias() throws IOException {
+        String versionedIndex = "test-versioned";
+        indexer.createIndex(versionedIndex, 1, 0);
+        try {
+            indexer.add(versionedIndex, createDoc("id").build());
+
+            Document document = indexer.get(versionedIndex, "id");
+            assertThat(document.getProject()).isEqualTo(project(versionedIndex));
+            List<? extends Entity> documents = indexer.search(singletonList(versionedIndex), Document.class).execute().collect(toList());
+            assertThat(documents).hasSize(1);
+            assertThat(((Document) documents.get(0)).getProject()).isEqualTo(project(versionedIndex));
+        } finally {
+            es.delete(versionedIndex);
+        }
+    }
+
     @Test
     public void test_bulk_add() throws IOException {
         assertThat(indexer.bulkAdd(TEST_INDEX, asList(createDoc("doc1").build(), createDoc("doc2").build()))).isTrue();
@@ -217,6 +252,27 @@ public class ElasticsearchIndexerTest {
         assertThat(indexer.tag(project(TEST_INDEX), doc.getId(), doc.getId(), tag("tag"))).isTrue();
     }
 
+    @Test
+    public void test_scripts_deleted_from_the_cluster_are_stored_again() throws IOException {
+        Document doc = new org.icij.datashare.text.Document("id", project("prj"), Paths.get("doc.txt"), "content of john doe", Language.FRENCH,
+                Charset.defaultCharset(), "application/pdf", new HashMap<>(), INDEXED, new HashSet<>(),123L);
+        indexer.add(TEST_INDEX, doc);
+        assertThat(indexer.tag(project(TEST_INDEX), doc.getId(), doc.getId(), tag("foo"))).isTrue();
+        indexer.getExtractedText(TEST_INDEX, doc.getId(), 0, 7);
+        indexer.searchTextOccurrences(TEST_INDEX, doc.getId(), "john doe", null);
+        indexer.bulkAdd(TEST_INDEX, CORENLP, emptyList(), doc);
+        for (StoredScripts.Name name : StoredScripts.Name.values()) {
+            es.client.deleteScript(new DeleteStoredScriptRequest(name.id()), RequestOptions.DEFAULT);
+        }
+
+        assertThat(indexer.tag(project(TEST_INDEX), doc.getId(), doc.getId(), tag("bar"))).isTrue();
+        assertThat(indexer.untag(project(TEST_INDEX), singletonList(doc.getId()), tag("bar"))).isTrue();
+        assertThat(indexer.getExtractedText(TEST_INDEX, doc.getId(), 0, 7).content).isEqualTo("content");
+        assertThat(indexer.searchTextOccurrences(TEST_INDEX, doc.getId(), "john doe", null).offsets).isEqualTo(new int[] {11});
+        assertThat(indexer.bulkAdd(TEST_INDEX, OPENNLP, emptyList(), doc)).isTrue();
+        assertThat(((Document) indexer.get(TEST_INDEX, doc.getId())).getNerTags()).containsOnly(CORENLP, OPENNLP);
+    }
+
     @Test(expected = ElasticsearchStatusException.class)
     public void test_tag_unknown_document() throws IOException {
         indexer.tag(project(TEST_INDEX), "unknown", "routing", tag("foo"), tag("bar"));
@@ -342,6 +398,84 @@ public class ElasticsearchIndexerTest {
         searcher.clearScroll();
     }
 
+    @Test
+    public void test_search_with_search_after() throws IOException {
+        for (int i = 0 ; i < 12; i++) {
+            indexer.add(TEST_INDEX, createDoc("id" + i).build());
+        }
+        ElasticsearchIndexer searchAfterIndexer = new ElasticsearchIndexer(es.client, new PropertiesProvider(new HashMap<String, String>() {{
+            put("searchAfter", "true");
+        }}));
+
+        Indexer.Searcher searcher = searchAfterIndexer.search(singletonList(TEST_INDEX), Document.class).limit(5);
+        assertThat(searcher.scroll().count()).isEqualTo(5);
+        assertThat(searcher.totalHits()).isEqualTo(12);
+        assertThat(searcher.scroll().count()).isEqualTo(5);
+        assertThat(searcher.scroll().count()).isEqualTo(2);
+        assertThat(searcher.scroll().count()).isEqualTo(0);
+
+        searcher.clearScroll();
+        assertThat(searcher.scroll().count()).isEqualTo(5);
+        searcher.clearScroll();
+    }
+
+    @Test
+    public void test_search_after_with_slices_reads_each_document_once() throws IOException {
+        String shardedIndex = "test-sharded";
+        ElasticsearchIndexer searchAfterIndexer = new ElasticsearchIndexer(es.client, new PropertiesProvider(new HashMap<String, String>() {{
+            put("searchAfter", "true");
+        }})).withRefresh(IMMEDIATE);
+        searchAfterIndexer.createIndex(shardedIndex, 3, 0);
+        try {
+            searchAfterIndexer.bulkAdd(shardedIndex, IntStream.range(0, 20).mapToObj(i -> createDoc("id" + i).build()).collect(toList()));
+
+            List<String> ids = new ArrayList<>();
+            long totalHits = 0;
+            for (int slice = 0; slice < 2; slice++) {
+                Indexer.Searcher searcher = searchAfterIndexer.search(singletonList(shardedIndex), Document.class).limit(3);
+                List<String> page;
+                do {
+                    page = searcher.scroll(slice, 2).map(Entity::getId).collect(toList());
+                    ids.addAll(page);
+                } while (!page.isEmpty());
+                totalHits += searcher.totalHits();
+                searcher.clearScroll();
+            }
+
+            assertThat(ids).hasSize(20);
+            assertThat(new HashSet<>(ids)).hasSize(20);
+            assertThat(totalHits).isEqualTo(20);
+        } finally {
+            es.delete(shardedIndex);
+        }
+    }
+
+    @Test
+    public void test_search_after_reads_several_indices() throws IOException {
+        String otherIndex = "test-datashare-other";
+        ElasticsearchIndexer searchAfterIndexer = new ElasticsearchIndexer(es.client, new PropertiesProvider(new HashMap<String, String>() {{
+            put("searchAfter", "true");
+        }})).withRefresh(IMMEDIATE);
+        searchAfterIndexer.createIndex(otherIndex, 1, 0);
+        try {
+            searchAfterIndexer.add(TEST_INDEX, createDoc("id1").build());
+            searchAfterIndexer.add(otherIndex, createDoc("id2").build());
+
+            Indexer.Searcher searcher = searchAfterIndexer.search(asList(TEST_INDEX, otherIndex), Document.class).limit(1);
+            List<String> ids = new ArrayList<>();
+            List<String> page;
+            do {
+                page = searcher.scroll().map(Entity::getId).collect(toList());
+                ids.addAll(page);
+            } while (!page.isEmpty());
+
+            assertThat(ids).containsOnly("id1", "id2");
+            assertThat(searcher.totalHits()).isEqualTo(2);
+        } finally {
+            es.delete(otherIndex);
+        }
+    }
+
     @Test
     public void test_bulk_update() throws IOException {
         Document doc = new org.icij.datashare.text.Document("id", project("prj"), Paths.get("doc.txt"), "content",
@@ -362,7 +496,7 @@ public class ElasticsearchIndexerTest {
     }
 
     @Test
-    public void test_delete_by_query() throws Exception {
+    public void test_delete_all() throws Exception {
         Document doc = new org.icij.datashare.text.Document("docId", project("prj"), Paths.get("doc.txt"), "content",
                 Language.FRENCH, Charset.defaultCharset(), "application/pdf", new HashMap<>(), INDEXED, new HashSet<>(), 4324L);
         indexer.add(TEST_INDEX, doc);
@@ -375,6 +509,29 @@ public class ElasticsearchIndexerTest {
         assertThat(documents.length).isEqualTo(0);
     }
 
+    @Test
+    public void test_delete_all_unknown_index() throws Exception {
+        assertThat(indexer.deleteAll("unknown-index")).isFalse();
+    }
+
+    @Test
+    public void test_delete_all_keeps_index_settings() throws Exception {
+        String shardedIndex = "test-delete-all";
+        indexer.createIndex(shardedIndex, 2, 0);
+        try {
+            indexer.add(shardedIndex, createDoc("id").build());
+
+            assertThat(indexer.deleteAll(shardedIndex)).isTrue();
+
+            GetSettingsResponse settings = es.client.indices().getSettings(new GetSettingsRequest().indices(shardedIndex), RequestOptions.DEFAULT);
+            assertThat(settings.getSetting(shardedIndex + "-v2", "index.number_of_shards")).isEqualTo("2");
+            assertThat((Document) indexer.get(shardedIndex, "id")).isNull();
+            assertThat(indexer.search(singletonList(shardedIndex), Document.class).execute().count()).isEqualTo(0);
+        } finally {
+            es.delete(shardedIndex);
+        }
+    }
+
     @Test
     public void test_query_like_js_front_finds_document_from_its_child_named_entity() throws Exception {
         Document doc = new org.icij.datashare.text.Document("id", project("prj"), Paths.get("doc.txt"), "content with john doe",
@@ -583,6 +740,78 @@ public class ElasticsearchIndexerTest {
         assertArrayEquals(actual.offsets, new int[]{3,11,23,31});
     }
     @Test
+    public void test_search_occurrences_inside_terms() throws Exception {
+        Document doc = new org.icij.datashare.text.Document("id", project("prj"), Paths.get("doc.txt"), "Reconcontent and contcont",
+                Language.ENGLISH, Charset.defaultCharset(), "text/plain", new HashMap<>(), INDEXED, new HashSet<>(), 25L);
+        indexer.add(TEST_INDEX, doc);
+
+        SearchedText actual = indexer.searchTextOccurrences(TEST_INDEX, "id", "cont", null);
+        assertThat(actual.offsets).isEqualTo(new int[]{5, 17, 21});
+        assertThat(actual.count).isEqualTo(3);
+    }
+    @Test
+    public void test_search_occurrences_without_match() throws Exception {
+        Document doc = new org.icij.datashare.text.Document("id", project("prj"), Paths.get("doc.txt"), "this content contains john doe",
+                Language.ENGLISH, Charset.defaultCharset(), "text/plain", new HashMap<>(), INDEXED, new HashSet<>(), 30L);
+        indexer.add(TEST_INDEX, doc);
+
+        SearchedText actual = indexer.searchTextOccurrences(TEST_INDEX, "id", "jane", null);
+        assertThat(actual.count).isEqualTo(0);
+        assertThat(actual.offsets).isEmpty();
+    }
+    @Test
+    public void test_search_occurrences_of_several_terms() throws Exception {
+        Document doc = new org.icij.datashare.text.Document("id", project("prj"), Paths.get("doc.txt"), "this content contains John Doe",
+                Language.ENGLISH, Charset.defaultCharset(), "text/plain", new HashMap<>(), INDEXED, new HashSet<>(), 30L);
+        indexer.add(TEST_INDEX, doc);
+
+        SearchedText actual = indexer.searchTextOccurrences(TEST_INDEX, "id", "john doe", null);
+        assertThat(actual.count).isEqualTo(1);
+        assertArrayEquals(actual.offsets, new int[]{22});
+    }
+    @Test
+    public void test_search_occurrences_in_one_of_several_translations() throws Exception {
+        Map<String, String> english = new HashMap<>();
+        english.put("content", "nothing to find here");
+        english.put("target_language", "ENGLISH");
+        Map<String, String> french = new HashMap<>();
+        french.put("content", "ce contenu contient du contenu");
+        french.put("target_language", "FRENCH");
+        Map<String, String> spanish = new HashMap<>();
+        spanish.put("content", "este contenido");
+        spanish.put("target_language", "SPANISH");
+        Document doc = new org.icij.datashare.text.Document("id", project("prj"), Paths.get("doc.txt"),
+                "this content contains content", asList(english, french, spanish),
+                Language.ENGLISH, Charset.defaultCharset(), "text/plain", new HashMap<>(), INDEXED, new HashSet<>(), 29L);
+        indexer.add(TEST_INDEX, doc);
+
+        assertArrayEquals(indexer.searchTextOccurrences(TEST_INDEX, "id", "cont", "FRENCH").offsets, new int[]{3, 11, 23});
+        assertArrayEquals(indexer.searchTextOccurrences(TEST_INDEX, "id", "cont", "SPANISH").offsets, new int[]{5});
+        assertThat(indexer.searchTextOccurrences(TEST_INDEX, "id", "cont", "ENGLISH").count).isEqualTo(0);
+    }
+    @Test
+    public void test_search_occurrences_in_the_first_of_several_translations() throws Exception {
+        Map<String, String> french = new HashMap<>();
+        french.put("content", "ce contenu contient du contenu");
+        french.put("target_language", "FRENCH");
+        Map<String, String> spanish = new HashMap<>();
+        spanish.put("content", "este contenido");
+        spanish.put("target_language", "SPANISH");
+        Document doc = new org.icij.datashare.text.Document("id", project("prj"), Paths.get("doc.txt"),
+                "this content contains content", asList(french, spanish),
+                Language.ENGLISH, Charset.defaultCharset(), "text/plain", new HashMap<>(), INDEXED, new HashSet<>(), 29L);
+        indexer.add(TEST_INDEX, doc);
+
+        SearchedText actual = indexer.searchTextOccurrences(TEST_INDEX, "id", "cont", "FRENCH");
+        assertArrayEquals(actual.offsets, new int[]{3, 11, 23});
+        assertThat(actual.targetLanguage).isEqualTo("FRENCH");
+        assertArrayEquals(indexer.searchTextOccurrences(TEST_INDEX, "id", "cont", "SPANISH").offsets, new int[]{5});
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void test_search_occurrences_of_unknown_document() throws Exception {
+        indexer.searchTextOccurrences(TEST_INDEX, "unknown", "cont", null);
+    }
+    @Test
     public void test_retrieve_script_from_resource_file() throws IOException {
         String filename= "extractedText.painless.java";
         String res= ElasticsearchIndexer.getScriptStringFromFile(filename);
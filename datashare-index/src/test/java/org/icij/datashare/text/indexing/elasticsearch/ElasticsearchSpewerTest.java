@@ -2,11 +2,14 @@ package org.icij.datashare.text.indexing.elasticsearch;
 
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.ParsingReader;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.indices.GetMappingsRequest;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.icij.datashare.HumanReadableSize;
@@ -27,6 +30,7 @@ import org.icij.extract.extractor.Extractor;
 import org.icij.extract.extractor.UpdatableDigester;
 import org.icij.spewer.FieldNames;
 import org.icij.task.Options;
+import org.junit.After;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -34,18 +38,22 @@ import org.mockito.Mockito;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 import static java.nio.file.Paths.get;
+import static java.util.Collections.nCopies;
 import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDIATE;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.MapAssert.entry;
 import static org.icij.datashare.test.ElasticsearchRule.TEST_INDEX;
+import static org.icij.datashare.text.indexing.TextSampler.DEFAULT_SAMPLE_LENGTH;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -61,6 +69,9 @@ public class ElasticsearchSpewerTest {
     private final ElasticsearchSpewer spewer = new ElasticsearchSpewer(es.client,
             text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider()).withRefresh(IMMEDIATE).withIndex("test-datashare");
 
+    @After
+    public void tearDown() throws IOException { es.removeAll();}
+
     @Test
     public void test_simple_write() throws Exception {
         final TikaDocument document = new DocumentFactory().withIdentifier(new PathIdentifier()).create(get("test-file.txt"));
@@ -175,6 +186,48 @@ public class ElasticsearchSpewerTest {
         assertThat(actualDocument2.getSourceAsMap()).includes(entry("type", "Duplicate"));
     }
 
+    @Test
+    public void test_duplicate_file_with_duplicate_filter() throws Exception {
+        ElasticsearchSpewer filterSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider(new HashMap<String, String>() {{
+                    put("duplicateFilter", "true");
+        }})).withRefresh(IMMEDIATE).withIndex("test-datashare");
+        filterSpewer.createIndex();
+        assertDuplicateIsIndexed(filterSpewer);
+    }
+
+    @Test
+    public void test_duplicate_file_with_bulk_indexing() throws Exception {
+        ElasticsearchSpewer bulkSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider(new HashMap<String, String>() {{
+                    put("duplicateFilter", "true");
+                    put("bulkIndexing", "true");
+        }})).withRefresh(IMMEDIATE).withIndex("test-datashare");
+        bulkSpewer.createIndex();
+        assertDuplicateIsIndexed(bulkSpewer);
+    }
+
+    private void assertDuplicateIsIndexed(ElasticsearchSpewer spewer) throws Exception {
+        DocumentFactory tikaFactory = new DocumentFactory().configure(Options.from(new HashMap<String, String>() {{
+            put("idDigestMethod", Document.HASHER.toString());
+        }}));
+        Extractor extractor = new Extractor(tikaFactory);
+        extractor.setDigester(new UpdatableDigester("project", Document.HASHER.toString()));
+        final TikaDocument document = extractor.extract(get(Objects.requireNonNull(getClass().getResource("/docs/doc.txt")).getPath()));
+        final TikaDocument document2 = extractor.extract(get(Objects.requireNonNull(getClass().getResource("/docs/doc-duplicate.txt")).getPath()));
+
+        spewer.write(document);
+        spewer.write(document2);
+        spewer.close();
+
+        GetResponse actualDocument = es.client.get(new GetRequest(TEST_INDEX, document.getId()),RequestOptions.DEFAULT);
+        GetResponse actualDocument2 = es.client.get(new GetRequest(TEST_INDEX, new Duplicate(document2.getPath(), document.getId()).getId()), RequestOptions.DEFAULT);
+        assertThat(actualDocument.isExists()).isTrue();
+        assertThat(actualDocument.getSourceAsMap()).includes(entry("type", "Document"), entry("path", document.getPath().toString()));
+        assertThat(actualDocument2.isExists()).isTrue();
+        assertThat(actualDocument2.getSourceAsMap()).includes(entry("type", "Duplicate"), entry("documentId", document.getId()));
+    }
+
     @Test
     public void test_truncated_content() throws Exception {
         ElasticsearchSpewer limitedContentSpewer = new ElasticsearchSpewer(es.client,
@@ -207,6 +260,226 @@ public class ElasticsearchSpewerTest {
         assertThat(documentFields.getSourceAsMap()).includes(entry("content", "this content is ok"));
     }
 
+    @Test
+    public void test_truncated_content_is_trimmed() throws Exception {
+        ElasticsearchSpewer limitedContentSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider(new HashMap<String, String>() {{
+                    put("maxContentLength", "20");
+        }})).withRefresh(IMMEDIATE).withIndex("test-datashare");
+        final TikaDocument document = new DocumentFactory().withIdentifier(new PathIdentifier()).create(get("fake-file.txt"));
+        document.setReader(new StringReader("\n  \n this content should be truncated"));
+
+        Map<String, Object> documentMap = limitedContentSpewer.getDocumentMap(document);
+
+        assertThat(documentMap).includes(entry("content", "this content should"), entry("contentTextLength", 19));
+    }
+
+    @Test
+    public void test_language_is_guessed_once_on_the_content() throws Exception {
+        List<String> guessedTexts = new ArrayList<>();
+        ElasticsearchSpewer sampleSpewer = new ElasticsearchSpewer(es.client, text -> {
+            guessedTexts.add(text);
+            return Language.ENGLISH;
+        }, new FieldNames(), publisher, new PropertiesProvider()).withIndex("test-datashare");
+        final TikaDocument document = new DocumentFactory().withIdentifier(new PathIdentifier()).create(get("big-file.txt"));
+        document.setReader(new StringReader(String.join("", nCopies(DEFAULT_SAMPLE_LENGTH, "word "))));
+
+        Map<String, Object> documentMap = sampleSpewer.getDocumentMap(document);
+
+        assertThat(documentMap).includes(entry("contentTextLength", DEFAULT_SAMPLE_LENGTH * 5 - 1));
+        assertThat(guessedTexts).hasSize(1);
+        assertThat(guessedTexts.get(0)).isEqualTo((String) documentMap.get("content"));
+    }
+
+    @Test
+    public void test_bulk_indexing_flushes_documents_on_close() throws Exception {
+        ElasticsearchSpewer bulkSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider(new HashMap<String, String>() {{
+                    put("bulkIndexing", "true");
+                    put("bulkIndexingActions", "10");
+        }})).withRefresh(IMMEDIATE).withIndex("test-datashare");
+        final TikaDocument document = new DocumentFactory().withIdentifier(new PathIdentifier()).create(get("bulk-file.txt"));
+        document.setReader(new ParsingReader(new ByteArrayInputStream("bulk content".getBytes())));
+
+        bulkSpewer.write(document);
+        assertThat(es.client.get(new GetRequest(TEST_INDEX, document.getId()), RequestOptions.DEFAULT).isExists()).isFalse();
+
+        bulkSpewer.close();
+
+        GetResponse documentFields = es.client.get(new GetRequest(TEST_INDEX, document.getId()), RequestOptions.DEFAULT);
+        assertThat(documentFields.isExists()).isTrue();
+        assertThat(documentFields.getSourceAsMap()).includes(entry("content", "bulk content"));
+        ArgumentCaptor<Message> argument = ArgumentCaptor.forClass(Message.class);
+        verify(publisher).publish(eq(Channel.NLP), argument.capture());
+        assertThat(argument.getValue().content).includes(entry(Field.DOC_ID, document.getId()), entry(Field.R_ID, document.getId()));
+    }
+
+    @Test
+    public void test_bulk_indexing_flushes_duplicate_candidates_on_flush_interval() throws Exception {
+        ElasticsearchSpewer bulkSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider(new HashMap<String, String>() {{
+                    put("bulkIndexing", "true");
+                    put("bulkIndexingActions", "10");
+                    put("bulkIndexingFlushIntervalSeconds", "1");
+        }})).withRefresh(IMMEDIATE).withIndex("test-datashare");
+        final TikaDocument document = new DocumentFactory().withIdentifier(new PathIdentifier()).create(get("bulk-file.txt"));
+        document.setReader(new ParsingReader(new ByteArrayInputStream("bulk content".getBytes())));
+
+        bulkSpewer.write(document);
+
+        boolean exists = false;
+        for (int i = 0; i < 50 && !exists; i++) {
+            Thread.sleep(100);
+            exists = es.client.get(new GetRequest(TEST_INDEX, document.getId()), RequestOptions.DEFAULT).isExists();
+        }
+        assertThat(exists).isTrue();
+        bulkSpewer.close();
+    }
+
+    @Test
+    public void test_bulk_indexing_acknowledges_path_when_indexed() throws Exception {
+        ElasticsearchSpewer bulkSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider(new HashMap<String, String>() {{
+                    put("bulkIndexing", "true");
+                    put("bulkIndexingActions", "10");
+        }})).withRefresh(IMMEDIATE).withIndex("test-datashare");
+        final TikaDocument document = new DocumentFactory().withIdentifier(new PathIdentifier()).create(get("bulk-file.txt"));
+        document.setReader(new ParsingReader(new ByteArrayInputStream("bulk content".getBytes())));
+        List<Path> indexed = new ArrayList<>();
+
+        bulkSpewer.write(document);
+        bulkSpewer.whenIndexed(document.getPath(), ok -> indexed.add(document.getPath()));
+        assertThat(indexed).isEmpty();
+
+        bulkSpewer.close();
+
+        assertThat(indexed).containsOnly(get("bulk-file.txt"));
+    }
+
+    @Test
+    public void test_acknowledges_path_right_away_without_bulk_indexing() throws Exception {
+        final TikaDocument document = new DocumentFactory().withIdentifier(new PathIdentifier()).create(get("doc.txt"));
+        document.setReader(new ParsingReader(new ByteArrayInputStream("content".getBytes())));
+        List<Path> indexed = new ArrayList<>();
+
+        spewer.write(document);
+        spewer.whenIndexed(document.getPath(), ok -> indexed.add(document.getPath()));
+
+        assertThat(indexed).containsOnly(get("doc.txt"));
+    }
+
+    @Test
+    public void test_bulk_indexing_flushes_when_bulk_actions_is_reached() throws Exception {
+        ElasticsearchSpewer bulkSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider(new HashMap<String, String>() {{
+                    put("duplicateFilter", "true");
+                    put("bulkIndexing", "true");
+                    put("bulkIndexingActions", "2");
+                    put("bulkIndexingConcurrentRequests", "0");
+        }})).withRefresh(IMMEDIATE).withIndex("test-datashare");
+        bulkSpewer.createIndex();
+        Path path = get(Objects.requireNonNull(getClass().getResource("/docs/embedded_doc.eml")).getPath());
+        final TikaDocument document = new Extractor().extract(path);
+
+        bulkSpewer.write(document);
+
+        verify(publisher, times(2)).publish(eq(Channel.NLP), any(Message.class));
+        bulkSpewer.close();
+    }
+
+    @Test
+    public void test_content_pages_are_read_by_the_indexer() throws Exception {
+        PropertiesProvider propertiesProvider = new PropertiesProvider(new HashMap<String, String>() {{
+            put("contentPageSize", "8");
+        }});
+        ElasticsearchSpewer pageSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, propertiesProvider).withRefresh(IMMEDIATE).withIndex(TEST_INDEX);
+        final TikaDocument document = new DocumentFactory().withIdentifier(new PathIdentifier()).create(get("page-file.txt"));
+        document.setReader(new ParsingReader(new ByteArrayInputStream("this content is stored in pages".getBytes())));
+
+        pageSpewer.write(document);
+
+        ElasticsearchIndexer indexer = new ElasticsearchIndexer(es.client, propertiesProvider);
+        assertThat(indexer.getExtractedText(TEST_INDEX, document.getId(), 5, 15).content).isEqualTo("content is stor");
+        assertThat(indexer.getExtractedText(TEST_INDEX, document.getId(), 5, 15).maxOffset).isEqualTo(31);
+        assertThat(es.client.get(new GetRequest(TEST_INDEX, document.getId() + "-page-3").routing(document.getId()), RequestOptions.DEFAULT).isExists()).isTrue();
+        verify(publisher, times(1)).publish(eq(Channel.NLP), any(Message.class));
+    }
+
+    @Test
+    public void test_ingest_settings_are_applied_and_restored() throws Exception {
+        ElasticsearchSpewer ingestSpewer = new ElasticsearchSpewer(es.client,
+                text -> Language.ENGLISH, new FieldNames(), publisher, new PropertiesProvider(new HashMap<String, String>() {{
+                    put("ingestSettings", "true");
+                    put("ingestForceMergeSegments", "1");
+        }})).withIndex(TEST_INDEX);
+        Settings before = getIndexSettings();
+
+        ingestSpewer.applyIngestSettings();
+        assertThat(getIndexSettings().get("index.refresh_interval")).isEqualTo("-1");
+        assertThat(getIndexSettings().get("index.number_of_replicas")).isEqualTo("0");
+        assertThat(getIndexSettings().get("index.translog.durability")).isEqualTo("async");
+
+        ingestSpewer.restoreIndexSettings();
+        Settings after = getIndexSettings();
+        assertThat(after.get("index.refresh_interval")).isEqualTo(before.get("index.refresh_interval"));
+        assertThat(after.get("index.number_of_replicas")).isEqualTo(before.get("index.number_of_replicas"));
+        assertThat(after.get("index.translog.durability")).isEqualTo(before.get("index.translog.durability"));
+    }
+
+    @Test
+    public void test_ingest_settings_are_restored_by_the_last_spewer() throws Exception {
+        PropertiesProvider propertiesProvider = new PropertiesProvider(new HashMap<String, String>() {{
+            put("ingestSettings", "true");
+        }});
+        ElasticsearchSpewer ingestSpewer1 = new ElasticsearchSpewer(es.client, text -> Language.ENGLISH, new FieldNames(), publisher, propertiesProvider).withIndex(TEST_INDEX);
+        ElasticsearchSpewer ingestSpewer2 = new ElasticsearchSpewer(es.client, text -> Language.ENGLISH, new FieldNames(), publisher, propertiesProvider).withIndex(TEST_INDEX);
+        Settings before = getIndexSettings();
+
+        ingestSpewer1.applyIngestSettings();
+        ingestSpewer2.applyIngestSettings();
+        ingestSpewer1.restoreIndexSettings();
+        assertThat(getIndexSettings().get("index.refresh_interval")).isEqualTo("-1");
+
+        ingestSpewer2.restoreIndexSettings();
+        assertThat(getIndexSettings().get("index.refresh_interval")).isEqualTo(before.get("index.refresh_interval"));
+    }
+
+    @Test
+    public void test_ingest_settings_are_restored_after_a_lost_ingestion() throws Exception {
+        PropertiesProvider propertiesProvider = new PropertiesProvider(new HashMap<String, String>() {{
+            put("ingestSettings", "true");
+        }});
+        Settings before = getIndexSettings();
+        new ElasticsearchSpewer(es.client, text -> Language.ENGLISH, new FieldNames(), publisher, propertiesProvider).withIndex(TEST_INDEX).applyIngestSettings();
+        ElasticsearchSpewer.clearIngestProfiles(); // the process is killed without restoring the settings
+
+        ElasticsearchSpewer ingestSpewer = new ElasticsearchSpewer(es.client, text -> Language.ENGLISH, new FieldNames(), publisher, propertiesProvider).withIndex(TEST_INDEX);
+        ingestSpewer.applyIngestSettings();
+        assertThat(getIndexSettings().get("index.refresh_interval")).isEqualTo("-1");
+        ingestSpewer.restoreIndexSettings();
+
+        Settings after = getIndexSettings();
+        assertThat(after.get("index.refresh_interval")).isEqualTo(before.get("index.refresh_interval"));
+        assertThat(after.get("index.number_of_replicas")).isEqualTo(before.get("index.number_of_replicas"));
+        assertThat(after.get("index.translog.durability")).isEqualTo(before.get("index.translog.durability"));
+        assertThat(es.client.indices().getMapping(new GetMappingsRequest().indices(TEST_INDEX), RequestOptions.DEFAULT)
+                .mappings().get(TEST_INDEX).getSourceAsMap().get("_meta")).isEqualTo(new HashMap<>());
+    }
+
+    @Test
+    public void test_ingest_settings_disabled() throws Exception {
+        Settings before = getIndexSettings();
+
+        spewer.applyIngestSettings();
+
+        assertThat(getIndexSettings()).isEqualTo(before);
+    }
+
+    private Settings getIndexSettings() throws IOException {
+        return es.client.indices().getSettings(new GetSettingsRequest().indices(TEST_INDEX), RequestOptions.DEFAULT).getIndexToSettings().get(TEST_INDEX);
+    }
+
     @Test
     public void test_get_max_content_length_is_limited_to_2G() {
         assertThat(spewer.getMaxContentLength(new PropertiesProvider(new HashMap<String, String>() {{ put("maxContentLength", "20");}})))
@@ -0,0 +1,29 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class EsChildProcessTest {
+    @Test
+    public void test_command() {
+        List<String> command = EsChildProcess.command("datashare", "/home/path", "/data/path", "9200",
+                Settings.builder().put("thread_pool.search.size", 4).build(), "2g");
+
+        assertThat(command.get(0)).endsWith("java");
+        assertThat(command).contains("-Xms2g", "-Xmx2g", "-cp", System.getProperty("java.class.path"));
+        assertThat(command.subList(command.size() - 6, command.size())).containsExactly(
+                EsEmbeddedServer.class.getName(), "datashare", "/home/path", "/data/path", "9200", "thread_pool.search.size=4");
+    }
+
+    @Test
+    public void test_command_without_heap_size() {
+        List<String> command = EsChildProcess.command("datashare", "/home/path", "/data/path", "9200", Settings.EMPTY, null);
+
+        assertThat(command).excludes("-Xms2g", "-Xmx2g");
+        assertThat(command.get(command.size() - 1)).isEqualTo("9200");
+    }
+}
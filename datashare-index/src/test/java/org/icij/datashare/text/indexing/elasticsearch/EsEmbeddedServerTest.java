@@ -2,10 +2,14 @@ package org.icij.datashare.text.indexing.elasticsearch;
 
 import ch.qos.logback.classic.Level;
 import org.elasticsearch.common.settings.Settings;
+import org.icij.datashare.PropertiesProvider;
 import org.icij.datashare.test.LogbackCapturingRule;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.Fail.fail;
 
@@ -42,4 +46,36 @@ public class EsEmbeddedServerTest {
         }
     }
 
+    @Test
+    public void test_tuning_settings() {
+        Settings settings = EsEmbeddedServer.tuningSettings(new PropertiesProvider(new HashMap<String, String>() {{
+            put("elasticsearchSearchThreads", "4");
+            put("elasticsearchWriteQueueSize", "500");
+            put("elasticsearchIndexingBuffer", "256mb");
+            put("elasticsearchQueryCacheSize", "5%");
+        }}));
+
+        assertThat(settings.get("thread_pool.search.size")).isEqualTo("4");
+        assertThat(settings.get("thread_pool.write.queue_size")).isEqualTo("500");
+        assertThat(settings.get("indices.memory.index_buffer_size")).isEqualTo("256mb");
+        assertThat(settings.get("indices.queries.cache.size")).isEqualTo("5%");
+        assertThat(settings.get("thread_pool.write.size")).isNull();
+        assertThat(EsEmbeddedServer.tuningSettings(new PropertiesProvider()).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void test_node_settings_with_tuning_settings() {
+        AtomicReference<Settings> nodeSettings = new AtomicReference<>();
+        new EsEmbeddedServer("name", "home/path", "data/path", "9876", Settings.builder().put("thread_pool.search.size", 2).build()) {
+            @Override
+            EsEmbeddedServer.PluginConfigurableNode createNode(Settings settings) {
+                nodeSettings.set(settings);
+                return null;
+            }
+        };
+
+        assertThat(nodeSettings.get().get("thread_pool.search.size")).isEqualTo("2");
+        assertThat(nodeSettings.get().get("cluster.name")).isEqualTo("name");
+        assertThat(nodeSettings.get().get("http.port")).isEqualTo("9876");
+    }
 }
@@ -0,0 +1,61 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.file.Paths.get;
+import static java.util.Collections.singletonMap;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PendingPathsTest {
+    private final PendingPaths pendingPaths = new PendingPaths();
+    private final Map<Path, Boolean> indexed = new HashMap<>();
+
+    @Test
+    public void test_path_without_pending_requests_is_acknowledged_right_away() {
+        pendingPaths.whenIndexed(get("file"), ok -> indexed.put(get("file"), ok));
+
+        assertThat(indexed).isEqualTo(singletonMap(get("file"), true));
+    }
+
+    @Test
+    public void test_path_is_acknowledged_when_its_requests_are_indexed() {
+        pendingPaths.add(get("file"));
+        pendingPaths.add(get("file"));
+        pendingPaths.whenIndexed(get("file"), ok -> indexed.put(get("file"), ok));
+
+        pendingPaths.done(get("file"), true);
+        assertThat(indexed).isEmpty();
+        pendingPaths.done(get("file"), true);
+
+        assertThat(indexed).isEqualTo(singletonMap(get("file"), true));
+        assertThat(pendingPaths.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_path_indexed_before_the_end_of_its_extraction() {
+        pendingPaths.add(get("file"));
+        pendingPaths.done(get("file"), true);
+        assertThat(pendingPaths.size()).isEqualTo(0);
+
+        pendingPaths.whenIndexed(get("file"), ok -> indexed.put(get("file"), ok));
+
+        assertThat(indexed).isEqualTo(singletonMap(get("file"), true));
+    }
+
+    @Test
+    public void test_path_with_failed_request_is_acknowledged_as_failed() {
+        pendingPaths.add(get("file"));
+        pendingPaths.add(get("file"));
+        pendingPaths.done(get("file"), false);
+        pendingPaths.done(get("file"), true);
+
+        pendingPaths.whenIndexed(get("file"), ok -> indexed.put(get("file"), ok));
+
+        assertThat(indexed).isEqualTo(singletonMap(get("file"), false));
+        assertThat(pendingPaths.size()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,95 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.test.ElasticsearchRule;
+import org.icij.datashare.text.Document;
+import org.icij.datashare.text.Language;
+import org.icij.datashare.text.NamedEntity;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDIATE;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.icij.datashare.text.DocumentBuilder.createDoc;
+import static org.icij.datashare.text.NamedEntity.Category.PERSON;
+import static org.icij.datashare.text.NamedEntity.create;
+import static org.icij.datashare.text.nlp.Pipeline.Type.CORENLP;
+
+public class ReindexerTest {
+    private static final String INDEX = "test-reindex";
+    @Rule public ElasticsearchRule es = new ElasticsearchRule(new String[]{INDEX});
+    private final ElasticsearchIndexer indexer = new ElasticsearchIndexer(es.client, new PropertiesProvider()).withRefresh(IMMEDIATE);
+    private final Reindexer reindexer = new Reindexer(es.client, new SearchCache(0), 10);
+
+    @Test
+    public void test_reindex_index_created_before_aliases() throws Exception {
+        Document doc = createDoc("docId").build();
+        indexer.add(INDEX, doc);
+        indexer.add(INDEX, create(PERSON, "John Doe", singletonList(12L), doc.getId(), doc.getId(), CORENLP, Language.ENGLISH));
+        List<Double> progress = new ArrayList<>();
+
+        assertThat(reindexer.reindex(INDEX, 2, progress::add)).isEqualTo("test-reindex-v1");
+
+        assertThat(ElasticsearchConfiguration.concreteIndex(es.client, INDEX).get()).isEqualTo("test-reindex-v1");
+        assertThat(indexer.search(singletonList(INDEX), Document.class).execute().count()).isEqualTo(1);
+        assertThat(indexer.search(singletonList(INDEX), NamedEntity.class).execute().count()).isEqualTo(1);
+        assertThat(((Document) indexer.get(INDEX, doc.getId())).getId()).isEqualTo("docId");
+        assertThat(progress.get(progress.size() - 1)).isEqualTo(1.0);
+    }
+
+    @Test
+    public void test_reindex_versioned_index() throws Exception {
+        indexer.add(INDEX, createDoc("docId").build());
+        reindexer.reindex(INDEX, 0, p -> {});
+
+        assertThat(reindexer.reindex(INDEX, 0, p -> {})).isEqualTo("test-reindex-v2");
+
+        assertThat(ElasticsearchConfiguration.concreteIndex(es.client, INDEX).get()).isEqualTo("test-reindex-v2");
+        assertThat(es.client.indices().exists(new GetIndexRequest("test-reindex-v1"), RequestOptions.DEFAULT)).isFalse();
+        assertThat(indexer.search(singletonList(INDEX), Document.class).execute().count()).isEqualTo(1);
+        Settings settings = es.client.indices().getSettings(new GetSettingsRequest().indices(INDEX), RequestOptions.DEFAULT).getIndexToSettings().get("test-reindex-v2");
+        assertThat(settings.get("index.number_of_replicas")).isEqualTo("1");
+        assertThat(settings.get("index.refresh_interval")).isNull();
+        assertThat(settings.get(Reindexer.WRITE_BLOCK_SETTING)).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_reindex_unknown_index() throws Exception {
+        reindexer.reindex("unknown-index", 0, p -> {});
+    }
+
+    @Test
+    public void test_reindex_failure_keeps_previous_index() throws Exception {
+        String unmappedIndex = "test-reindex-unmapped";
+        es.client.indices().create(new CreateIndexRequest(unmappedIndex), RequestOptions.DEFAULT);
+        try {
+            Request put = new Request("PUT", unmappedIndex + "/_doc/docId?refresh=true");
+            put.setJsonEntity("{\"contentLength\": \"not a number\"}");
+            es.client.getLowLevelClient().performRequest(put);
+
+            try {
+                reindexer.reindex(unmappedIndex, 0, p -> {});
+            } catch (IOException e) {
+                assertThat(e.getMessage()).contains("failure");
+                assertThat(ElasticsearchConfiguration.concreteIndex(es.client, unmappedIndex).get()).isEqualTo(unmappedIndex);
+                assertThat(es.client.indices().exists(new GetIndexRequest(unmappedIndex + "-v1"), RequestOptions.DEFAULT)).isFalse();
+                indexer.add(unmappedIndex, createDoc("otherId").build());
+                return;
+            }
+            throw new AssertionError("reindex should have failed");
+        } finally {
+            es.delete(unmappedIndex);
+        }
+    }
+}
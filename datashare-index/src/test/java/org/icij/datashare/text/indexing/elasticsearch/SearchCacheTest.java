@@ -0,0 +1,249 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.icij.datashare.PropertiesProvider;
+import org.icij.datashare.test.DatashareTimeRule;
+import org.icij.datashare.time.DatashareTime;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SearchCacheTest {
+    @Rule public DatashareTimeRule time = new DatashareTimeRule("2021-06-30T12:00:00Z");
+    private final SearchCache cache = new SearchCache(1024);
+
+    @Test
+    public void test_disabled_by_default() {
+        SearchCache disabled = new SearchCache(new PropertiesProvider());
+        SearchCache.Key key = disabled.key("idx/_search", "{}", singletonList("idx"), singletonList("idx"));
+        disabled.put(key, "application/json", "response".getBytes());
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.get(key)).isNull();
+    }
+
+    @Test
+    public void test_enabled_with_size() {
+        assertThat(new SearchCache(new PropertiesProvider(new HashMap<String, String>() {{
+            put("searchCacheSize", "16M");
+        }})).stats().max_size).isEqualTo(16 * 1024 * 1024);
+    }
+
+    @Test
+    public void test_get_cached_response() {
+        cache.put(cache.key("idx1/_search", "{\"size\":0}", singletonList("idx1"), singletonList("idx1")), "application/json", "response".getBytes());
+
+        SearchCache.Response response = cache.get(cache.key("idx1/_search", "{\"size\":0}", singletonList("idx1"), singletonList("idx1")));
+        assertThat(response.contentType).isEqualTo("application/json");
+        assertThat(new String(response.body)).isEqualTo("response");
+        assertThat(cache.get(cache.key("idx1/_count", "{\"size\":0}", singletonList("idx1"), singletonList("idx1")))).isNull();
+        assertThat(cache.stats().hits).isEqualTo(1);
+        assertThat(cache.stats().misses).isEqualTo(1);
+        assertThat(cache.stats().entries).isEqualTo(1);
+        assertThat(cache.stats().size).isEqualTo(8);
+    }
+
+    @Test
+    public void test_key_with_normalized_body() {
+        cache.put(cache.key("idx2/_search", "{\"size\": 0, \"aggs\": {\"a\": {\"terms\": {\"field\": \"tags\"}}}}", singletonList("idx2"), singletonList("idx2")),
+                "application/json", "response".getBytes());
+
+        assertThat(cache.get(cache.key("idx2/_search", "{\"aggs\":{\"a\":{\"terms\":{\"field\":\"tags\"}}},\"size\":0}", singletonList("idx2"), singletonList("idx2")))).isNotNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_key_with_invalid_body() {
+        cache.key("idx2/_search", "{\"size\":", singletonList("idx2"), singletonList("idx2"));
+    }
+
+    @Test
+    public void test_key_with_granted_indices() {
+        cache.put(cache.key("idx3/_search", "{}", singletonList("idx3"), asList("idx3", "other")), "application/json", "response".getBytes());
+
+        assertThat(cache.get(cache.key("idx3/_search", "{}", singletonList("idx3"), asList("other", "idx3")))).isNotNull();
+        assertThat(cache.get(cache.key("idx3/_search", "{}", singletonList("idx3"), singletonList("idx3")))).isNull();
+    }
+
+    @Test
+    public void test_invalidate_index() {
+        cache.put(cache.key("idx4,idx5/_search", "{}", asList("idx4", "idx5"), asList("idx4", "idx5")), "application/json", "response".getBytes());
+        cache.put(cache.key("idx5/_search", "{}", singletonList("idx5"), asList("idx4", "idx5")), "application/json", "response".getBytes());
+
+        cache.invalidate("idx4");
+
+        assertThat(cache.get(cache.key("idx4,idx5/_search", "{}", asList("idx4", "idx5"), asList("idx4", "idx5")))).isNull();
+        assertThat(cache.get(cache.key("idx5/_search", "{}", singletonList("idx5"), asList("idx4", "idx5")))).isNotNull();
+        assertThat(cache.stats().entries).isEqualTo(1);
+    }
+
+    @Test
+    public void test_response_not_cached_if_index_written_during_request() {
+        SearchCache.Key key = cache.key("idx6/_search", "{}", singletonList("idx6"), singletonList("idx6"));
+        cache.invalidate("idx6");
+        DatashareTime.getInstance().addMilliseconds(2000);
+
+        cache.put(key, "application/json", "response".getBytes());
+
+        assertThat(cache.stats().entries).isEqualTo(0);
+    }
+
+    @Test
+    public void test_response_not_cached_before_index_refresh() {
+        cache.invalidate("idx7");
+        cache.put(cache.key("idx7/_search", "{}", singletonList("idx7"), singletonList("idx7")), "application/json", "response".getBytes());
+        assertThat(cache.stats().entries).isEqualTo(0);
+
+        DatashareTime.getInstance().addMilliseconds((int) SearchCache.REFRESH_DELAY_MILLIS);
+        cache.put(cache.key("idx7/_search", "{}", singletonList("idx7"), singletonList("idx7")), "application/json", "response".getBytes());
+        assertThat(cache.stats().entries).isEqualTo(1);
+    }
+
+    @Test
+    public void test_least_recently_used_responses_are_evicted() {
+        byte[] response = new byte[100];
+        for (int i = 0; i < 10; i++) {
+            cache.put(cache.key("idx8/_search", "{\"from\":" + i + "}", singletonList("idx8"), singletonList("idx8")), "application/json", response);
+        }
+        assertThat(cache.get(cache.key("idx8/_search", "{\"from\":0}", singletonList("idx8"), singletonList("idx8")))).isNotNull();
+
+        cache.put(cache.key("idx8/_search", "{\"from\":10}", singletonList("idx8"), singletonList("idx8")), "application/json", response);
+
+        assertThat(cache.stats().entries).isEqualTo(10);
+        assertThat(cache.stats().evictions).isEqualTo(1);
+        assertThat(cache.get(cache.key("idx8/_search", "{\"from\":0}", singletonList("idx8"), singletonList("idx8")))).isNotNull();
+        assertThat(cache.get(cache.key("idx8/_search", "{\"from\":1}", singletonList("idx8"), singletonList("idx8")))).isNull();
+    }
+
+    @Test
+    public void test_big_responses_are_not_cached() {
+        cache.put(cache.key("idx9/_search", "{}", singletonList("idx9"), singletonList("idx9")), "application/json", new byte[129]);
+
+        assertThat(cache.stats().entries).isEqualTo(0);
+    }
+
+    @Test
+    public void test_load_caches_response() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        SearchCache.Loader loader = () -> new SearchCache.Response("application/json", ("response" + loads.incrementAndGet()).getBytes());
+
+        cache.load(cache.key("idx10/_search", "{}", singletonList("idx10"), singletonList("idx10")), loader);
+        SearchCache.Response response = cache.load(cache.key("idx10/_search", "{}", singletonList("idx10"), singletonList("idx10")), loader);
+
+        assertThat(new String(response.body)).isEqualTo("response1");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_identical_running_requests_are_coalesced() throws Exception {
+        SearchCache coalescing = new SearchCache(0, true);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        SearchCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return new SearchCache.Response("application/json", "response".getBytes());
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SearchCache.Response> leader = executor.submit(() -> coalescing.load(coalescing.key("idx11/_search", "{}", singletonList("idx11"), singletonList("idx11")), loader));
+            assertThat(leaderStarted.await(5, SECONDS)).isTrue();
+            Future<SearchCache.Response> follower = executor.submit(() -> coalescing.load(coalescing.key("idx11/_search", "{}", singletonList("idx11"), singletonList("idx11")), loader));
+            waitForCoalesced(coalescing, 1);
+            release.countDown();
+
+            assertThat(new String(leader.get(5, SECONDS).body)).isEqualTo("response");
+            assertThat(follower.get(5, SECONDS)).isSameAs(leader.get());
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(coalescing.stats().entries).isEqualTo(0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_coalesced_requests_get_the_error() throws Exception {
+        SearchCache coalescing = new SearchCache(0, true);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SearchCache.Loader loader = () -> {
+            leaderStarted.countDown();
+            await(release);
+            throw new IOException("search failed");
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            executor.submit(() -> coalescing.load(coalescing.key("idx12/_search", "{}", singletonList("idx12"), singletonList("idx12")), loader));
+            assertThat(leaderStarted.await(5, SECONDS)).isTrue();
+            Future<SearchCache.Response> follower = executor.submit(() -> coalescing.load(coalescing.key("idx12/_search", "{}", singletonList("idx12"), singletonList("idx12")), loader));
+            waitForCoalesced(coalescing, 1);
+            release.countDown();
+
+            follower.get(5, SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(IOException.class);
+            assertThat(e.getCause().getMessage()).isEqualTo("search failed");
+            return;
+        } finally {
+            executor.shutdownNow();
+        }
+        throw new AssertionError("follower should have failed");
+    }
+
+    @Test
+    public void test_requests_sent_after_a_write_are_not_coalesced_with_requests_sent_before() throws Exception {
+        SearchCache coalescing = new SearchCache(0, true);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SearchCache.Response> before = executor.submit(() -> coalescing.load(coalescing.key("idx13/_search", "{}", singletonList("idx13"), singletonList("idx13")), () -> {
+                loads.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return new SearchCache.Response("application/json", "before".getBytes());
+            }));
+            assertThat(leaderStarted.await(5, SECONDS)).isTrue();
+            coalescing.invalidate("idx13");
+
+            SearchCache.Response after = coalescing.load(coalescing.key("idx13/_search", "{}", singletonList("idx13"), singletonList("idx13")),
+                    () -> new SearchCache.Response("application/json", ("after" + loads.incrementAndGet()).getBytes()));
+            release.countDown();
+
+            assertThat(new String(after.body)).isEqualTo("after2");
+            assertThat(new String(before.get(5, SECONDS).body)).isEqualTo("before");
+            assertThat(coalescing.stats().coalesced).isEqualTo(0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void waitForCoalesced(SearchCache cache, long coalesced) throws InterruptedException {
+        for (int i = 0; i < 500 && cache.stats().coalesced < coalesced; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.stats().coalesced).isEqualTo(coalesced);
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await(5, SECONDS);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.icij.datashare.Entity;
+import org.icij.datashare.text.Document;
+import org.icij.datashare.text.NamedEntity;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SourceBinderTest {
+    private static final String DOCUMENT_SOURCE = "{\"type\":\"Document\",\"path\":\"/path/to/doc.txt\",\"dirname\":\"/path/to\"," +
+            "\"content\":\"some content\",\"language\":\"ENGLISH\",\"contentType\":\"text/plain\",\"status\":\"INDEXED\"," +
+            "\"nerTags\":[\"CORENLP\"],\"tags\":[\"foo\",\"bar\"],\"metadata\":{\"tika_metadata_author\":\"john\"}," +
+            "\"extractionLevel\":0,\"contentLength\":12,\"rootDocument\":\"source_root\"}";
+
+    @Test
+    public void test_bind_document() {
+        Document document = SourceBinder.bind(new BytesArray(DOCUMENT_SOURCE), Document.class, fields("docId", "prj"));
+
+        assertThat(document.getId()).isEqualTo("docId");
+        assertThat(document.getProject().getId()).isEqualTo("prj");
+        assertThat(document.getContent()).isEqualTo("some content");
+        assertThat(document.getPath().toString()).isEqualTo("/path/to/doc.txt");
+        assertThat(document.getMetadata().get("tika_metadata_author")).isEqualTo("john");
+        assertThat(document.getTags()).hasSize(2);
+        assertThat(document.getContentLength()).isEqualTo(12L);
+    }
+
+    @Test
+    public void test_bind_fields_replace_source_fields() {
+        Map<String, String> fields = fields("docId", "prj");
+        fields.put("rootDocument", "routing_root");
+
+        Document document = SourceBinder.bind(new BytesArray(DOCUMENT_SOURCE), Document.class, fields);
+
+        assertThat(document.getRootDocument()).isEqualTo("routing_root");
+    }
+
+    @Test
+    public void test_bind_with_type_field() {
+        Optional<Entity> entity = SourceBinder.bind(new BytesArray(DOCUMENT_SOURCE), "type", fields("docId", "prj"));
+
+        assertThat(entity.isPresent()).isTrue();
+        assertThat(entity.get()).isInstanceOf(Document.class);
+    }
+
+    @Test
+    public void test_bind_named_entity() {
+        String source = "{\"type\":\"NamedEntity\",\"mention\":\"John Doe\",\"mentionNorm\":\"john doe\",\"category\":\"PERSON\"," +
+                "\"documentId\":\"docId\",\"rootDocument\":\"docId\",\"offsets\":[12,34],\"extractor\":\"CORENLP\",\"extractorLanguage\":\"ENGLISH\",\"isHidden\":false}";
+
+        Optional<Entity> entity = SourceBinder.bind(new BytesArray(source), "type", fields("neId", "prj"));
+
+        assertThat(entity.get()).isInstanceOf(NamedEntity.class);
+        assertThat(((NamedEntity) entity.get()).getMention()).isEqualTo("John Doe");
+        assertThat(((NamedEntity) entity.get()).getOffsets()).containsOnly(12L, 34L);
+    }
+
+    @Test
+    public void test_bind_with_unknown_type() {
+        assertThat(SourceBinder.bind(new BytesArray("{\"type\":\"Unknown\"}"), "type", fields("id", "prj")).isPresent()).isFalse();
+        assertThat(SourceBinder.bind(new BytesArray("{\"foo\":\"bar\"}"), "type", fields("id", "prj")).isPresent()).isFalse();
+    }
+
+    @Test
+    public void test_entity_class_is_cached() {
+        assertThat(SourceBinder.entityClass("Document").get()).isSameAs(Document.class);
+        assertThat(SourceBinder.entityClass("Document")).isSameAs(SourceBinder.entityClass("Document"));
+        assertThat(SourceBinder.entityClass("String").isPresent()).isFalse();
+    }
+
+    private static Map<String, String> fields(String id, String projectId) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("id", id);
+        fields.put("projectId", projectId);
+        return fields;
+    }
+}
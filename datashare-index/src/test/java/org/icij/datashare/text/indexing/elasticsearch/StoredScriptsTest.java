@@ -0,0 +1,75 @@
+package org.icij.datashare.text.indexing.elasticsearch;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.admin.cluster.storedscripts.GetStoredScriptRequest;
+import org.elasticsearch.action.admin.cluster.storedscripts.GetStoredScriptResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.icij.datashare.test.ElasticsearchRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StoredScriptsTest {
+    @ClassRule
+    public static ElasticsearchRule es = new ElasticsearchRule();
+
+    @Test
+    public void test_store_all() throws IOException {
+        assertThat(new StoredScripts(es.client).storeAll()).isTrue();
+
+        for (StoredScripts.Name name : StoredScripts.Name.values()) {
+            GetStoredScriptResponse response = es.client.getScript(new GetStoredScriptRequest(name.id()), RequestOptions.DEFAULT);
+            assertThat(response.getSource().getSource()).isEqualTo(name.source());
+        }
+    }
+
+    @Test
+    public void test_script_is_referenced_by_id() {
+        Script script = new StoredScripts(es.client).script(StoredScripts.Name.TAG, singletonMap("tags", "foo"));
+
+        assertThat(script.getType()).isEqualTo(ScriptType.STORED);
+        assertThat(script.getIdOrCode()).isEqualTo(StoredScripts.Name.TAG.id());
+        assertThat(script.getParams()).isEqualTo(singletonMap("tags", "foo"));
+    }
+
+    @Test
+    public void test_script_is_inline_when_it_cannot_be_stored() throws IOException {
+        try (RestHighLevelClient unreachable = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", 1)))) {
+            Script script = new StoredScripts(unreachable).script(StoredScripts.Name.NER_TAG, emptyMap());
+
+            assertThat(script.getType()).isEqualTo(ScriptType.INLINE);
+            assertThat(script.getIdOrCode()).isEqualTo(StoredScripts.Name.NER_TAG.source());
+        }
+    }
+
+    @Test
+    public void test_script_is_stored_again_after_the_retry_delay() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        StoredScripts storedScripts = new StoredScripts(es.client, 100) {
+            @Override
+            boolean store(Name name) {
+                return attempts.incrementAndGet() > 1 && super.store(name);
+            }
+        };
+
+        assertThat(storedScripts.script(StoredScripts.Name.TAG, emptyMap()).getType()).isEqualTo(ScriptType.INLINE);
+        assertThat(storedScripts.script(StoredScripts.Name.TAG, emptyMap()).getType()).isEqualTo(ScriptType.INLINE);
+        assertThat(attempts.get()).isEqualTo(1);
+
+        Thread.sleep(150);
+
+        assertThat(storedScripts.script(StoredScripts.Name.TAG, emptyMap()).getType()).isEqualTo(ScriptType.STORED);
+        assertThat(storedScripts.script(StoredScripts.Name.TAG, emptyMap()).getType()).isEqualTo(ScriptType.STORED);
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+}